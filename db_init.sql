@@ -1,4 +1,12 @@
 DROP TABLE IF EXISTS sys_data_audit_log;
+DROP TABLE IF EXISTS sys_data_audit_stats;
+DROP TABLE IF EXISTS sys_data_audit_table;
+DROP TABLE IF EXISTS sys_data_audit_table_seed;
+DROP TABLE IF EXISTS sys_data_audit_load_offset;
+DROP TABLE IF EXISTS sys_data_audit_heartbeat;
+DROP TABLE IF EXISTS sys_data_audit_snapshot;
+DROP TABLE IF EXISTS sys_data_audit_compaction;
+DROP TABLE IF EXISTS sys_data_audit_schema_version;
 -- DROP TABLE IF EXISTS test_user;
 -- DROP TABLE IF EXISTS test_record;
 DROP DATABASE IF EXISTS sys_audit_db;
@@ -11,13 +19,91 @@ CREATE TABLE sys_data_audit_log (
     id BIGINT PRIMARY KEY AUTO_INCREMENT,
     table_name VARCHAR(100) NOT NULL,
     operation_type VARCHAR(20) NOT NULL,
---     primary_key_name VARCHAR(50),
---     primary_key_value VARCHAR(100),
+    primary_key_name VARCHAR(100),
+    primary_key_value VARCHAR(255),
     old_value TEXT,
     new_value TEXT,
     operator VARCHAR(100),
     operate_time DATETIME NOT NULL,
-    remark VARCHAR(500)
+    row_sequence BIGINT,
+    changed_columns JSON,
+    remark VARCHAR(500),
+    KEY idx_audit_row_sequence (table_name, primary_key_value, row_sequence),
+    KEY idx_audit_row_time (table_name, primary_key_value, operate_time),
+    KEY idx_audit_table_time (table_name, operate_time),
+    KEY idx_audit_operator_time (operator, operate_time),
+    -- 多值索引（MySQL 8.0.17+），每个变更列一个索引项
+    KEY idx_audit_changed_column (table_name, (CAST(changed_columns AS CHAR(64) ARRAY)), operate_time)
+);
+
+-- 按分钟聚合的审计统计，由 AuditStatsCollector 定期累加
+CREATE TABLE sys_data_audit_stats (
+    bucket_time DATETIME NOT NULL,
+    table_name VARCHAR(100) NOT NULL,
+    operation_type VARCHAR(20) NOT NULL,
+    operator VARCHAR(100) NOT NULL,
+    change_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_time, table_name, operation_type, operator),
+    KEY idx_stats_table_time (table_name, bucket_time)
+);
+
+-- 已审计表注册表，由 AuditedTableRegistry 维护
+CREATE TABLE sys_data_audit_table (
+    table_name VARCHAR(100) PRIMARY KEY,
+    first_seen DATETIME NOT NULL,
+    last_seen DATETIME NOT NULL,
+    record_count BIGINT NOT NULL DEFAULT 0
+);
+
+-- 注册表已从历史审计日志回填的标记，只有一行
+CREATE TABLE sys_data_audit_table_seed (
+    id TINYINT PRIMARY KEY,
+    seeded_at DATETIME NOT NULL
+);
+
+-- 批量导入（LOAD DATA）已导入的落盘文件，与导入在同一事务提交，防止重复导入
+CREATE TABLE sys_data_audit_load_offset (
+    file_name VARCHAR(255) PRIMARY KEY,
+    loaded_bytes BIGINT NOT NULL,
+    record_count INT NOT NULL,
+    loaded_at DATETIME NOT NULL
+);
+
+-- 主库心跳，由 ReplicaLagMonitor 定期写入，只读副本上的值用于估算复制延迟
+CREATE TABLE sys_data_audit_heartbeat (
+    id TINYINT PRIMARY KEY,
+    beat_time DATETIME(3) NOT NULL
+);
+
+-- 镜像位置数组引用的表结构版本，由 AuditSchemaRegistry 登记，column_names 为按列下标排列的列名 JSON 数组
+CREATE TABLE sys_data_audit_schema_version (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    table_name VARCHAR(100) NOT NULL,
+    columns_hash CHAR(32) NOT NULL,
+    column_names TEXT NOT NULL,
+    created_at DATETIME NOT NULL,
+    UNIQUE KEY uk_schema_version (table_name, columns_hash)
+);
+
+-- 长变更链的周期快照，由 AuditSnapshotCompactor 写入，分片时与该行的审计日志位于同一分片
+CREATE TABLE sys_data_audit_snapshot (
+    table_name VARCHAR(100) NOT NULL,
+    primary_key_value VARCHAR(255) NOT NULL,
+    period_start DATETIME NOT NULL,
+    period_end DATETIME NOT NULL,
+    state MEDIUMTEXT,
+    change_count BIGINT NOT NULL,
+    first_log_id BIGINT,
+    last_log_id BIGINT,
+    last_operate_time DATETIME,
+    PRIMARY KEY (table_name, primary_key_value, period_start)
+);
+
+-- 各表快照压缩已完成到的时间
+CREATE TABLE sys_data_audit_compaction (
+    table_name VARCHAR(100) PRIMARY KEY,
+    compacted_until DATETIME NOT NULL,
+    updated_at DATETIME NOT NULL
 );
 
 -- CREATE TABLE test_user (
@@ -0,0 +1,546 @@
+package com.duan.archive;
+
+import com.duan.entity.DataAuditLog;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 不可变的列式归档段文件
+ * <p>
+ * 文件布局：各列数据块（分别 deflate 压缩）+ 元数据区 + 定长尾部。
+ * 元数据：行数、id 与操作时间的最小/最大值、表名和（表名, 主键值）的布隆过滤器、各列块的偏移和长度，打开时常驻内存。
+ * 尾部：metaOffset(long) metaLength(int) magic(int)
+ * <p>
+ * 列编码：id 为递增差值，操作时间（UTC 微秒）和行序号为 zigzag 差值，表名、操作类型等取值少的列为字典编码，
+ * 主键值、镜像等为长度前缀的字符串。查询先只解码过滤用到的列，有命中时才解码其余列，且只构造命中行的值
+ */
+class ArchiveSegment implements Closeable {
+    private static final int MAGIC = 0x41415243;  // "AARC"
+    private static final int FOOTER_SIZE = 8 + 4 + 4;
+
+    enum Column {
+        ID, OPERATE_TIME, TABLE_NAME, OPERATION_TYPE, PRIMARY_KEY_NAME, PRIMARY_KEY_VALUE,
+        OLD_VALUE, NEW_VALUE, OPERATOR, ROW_SEQUENCE, REMARK
+    }
+
+    private static final Set<Column> DICTIONARY_COLUMNS =
+            EnumSet.of(Column.TABLE_NAME, Column.OPERATION_TYPE, Column.PRIMARY_KEY_NAME, Column.OPERATOR);
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int rowCount;
+    private final long minId;
+    private final long maxId;
+    private final long minTime;
+    private final long maxTime;
+    private final BloomFilter tableBloom;
+    private final BloomFilter rowBloom;
+    private final long[] columnOffsets;
+    private final int[] columnLengths;
+    private final int[] columnRawLengths;
+    private final long fileSize;
+
+    private ArchiveSegment(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+
+        ByteBuffer footer = readFully(fileSize - FOOTER_SIZE, FOOTER_SIZE);
+        long metaOffset = footer.getLong();
+        int metaLength = footer.getInt();
+        if (footer.getInt() != MAGIC) {
+            channel.close();
+            throw new IOException("Corrupted archive segment: " + path);
+        }
+
+        ByteBuffer meta = readFully(metaOffset, metaLength);
+        this.rowCount = meta.getInt();
+        this.minId = meta.getLong();
+        this.maxId = meta.getLong();
+        this.minTime = meta.getLong();
+        this.maxTime = meta.getLong();
+        this.tableBloom = BloomFilter.read(meta);
+        this.rowBloom = BloomFilter.read(meta);
+        int columnCount = meta.getInt();
+        this.columnOffsets = new long[columnCount];
+        this.columnLengths = new int[columnCount];
+        this.columnRawLengths = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnOffsets[i] = meta.getLong();
+            columnLengths[i] = meta.getInt();
+            columnRawLengths[i] = meta.getInt();
+        }
+    }
+
+    static ArchiveSegment open(Path path) throws IOException {
+        return new ArchiveSegment(path);
+    }
+
+    /**
+     * 将按 id 升序的审计日志写成段文件，先写临时文件并刷盘，再原子重命名
+     */
+    static ArchiveSegment write(Path path, List<DataAuditLog> logs) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        BloomFilter tableBloom = BloomFilter.forKeys(64);
+        BloomFilter rowBloom = BloomFilter.forKeys(logs.size());
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (DataAuditLog log : logs) {
+            tableBloom.add(log.getTableName());
+            rowBloom.add(rowKey(log.getTableName(), log.getPrimaryKeyValue()));
+            long time = toMicros(log.getOperateTime());
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+
+        Column[] columns = Column.values();
+        long[] offsets = new long[columns.length];
+        int[] lengths = new int[columns.length];
+        int[] rawLengths = new int[columns.length];
+        try (FileOutputStream fileOut = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024))) {
+            long position = 0;
+            Deflater deflater = new Deflater();
+            try {
+                for (Column column : columns) {
+                    byte[] raw = encode(column, logs);
+                    byte[] compressed = deflate(deflater, raw);
+                    out.write(compressed);
+                    offsets[column.ordinal()] = position;
+                    lengths[column.ordinal()] = compressed.length;
+                    rawLengths[column.ordinal()] = raw.length;
+                    position += compressed.length;
+                }
+            } finally {
+                deflater.end();
+            }
+
+            ByteArrayOutputStream metaBytes = new ByteArrayOutputStream();
+            DataOutputStream meta = new DataOutputStream(metaBytes);
+            meta.writeInt(logs.size());
+            meta.writeLong(logs.get(0).getId());
+            meta.writeLong(logs.get(logs.size() - 1).getId());
+            meta.writeLong(minTime);
+            meta.writeLong(maxTime);
+            tableBloom.writeTo(meta);
+            rowBloom.writeTo(meta);
+            meta.writeInt(columns.length);
+            for (int i = 0; i < columns.length; i++) {
+                meta.writeLong(offsets[i]);
+                meta.writeInt(lengths[i]);
+                meta.writeInt(rawLengths[i]);
+            }
+            meta.flush();
+
+            metaBytes.writeTo(out);
+            out.writeLong(position);
+            out.writeInt(metaBytes.size());
+            out.writeInt(MAGIC);
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return open(path);
+    }
+
+    /**
+     * 根据统计信息和布隆过滤器判断段内是否可能有该表在时间范围内的记录
+     */
+    boolean mayContain(String tableName, LocalDateTime startTime, LocalDateTime endTime) {
+        return toMicros(startTime) <= maxTime && toMicros(endTime) >= minTime && tableBloom.mightContain(tableName);
+    }
+
+    boolean mayContainRow(String tableName, String primaryKeyValue) {
+        return rowBloom.mightContain(rowKey(tableName, primaryKeyValue));
+    }
+
+    boolean mayContainId(long id) {
+        return id >= minId && id <= maxId;
+    }
+
+    /**
+     * 表在时间范围内的记录数，只解码表名和操作时间两列
+     */
+    int count(String tableName, LocalDateTime startTime, LocalDateTime endTime) throws IOException {
+        return matchTableAndTime(tableName, startTime, endTime).cardinality();
+    }
+
+    List<DataAuditLog> findByTableNameAndTimeRange(String tableName, LocalDateTime startTime, LocalDateTime endTime)
+            throws IOException {
+        return materialize(matchTableAndTime(tableName, startTime, endTime));
+    }
+
+    List<DataAuditLog> findByTableNameAndPrimaryKey(String tableName, String primaryKeyValue) throws IOException {
+        BitSet matches = new BitSet(rowCount);
+        String[] tables = decodeStrings(Column.TABLE_NAME, null);
+        String[] keys = null;
+        for (int i = 0; i < rowCount; i++) {
+            if (tableName.equals(tables[i])) {
+                if (keys == null) {
+                    keys = decodeStrings(Column.PRIMARY_KEY_VALUE, null);
+                }
+                if (primaryKeyValue.equals(keys[i])) {
+                    matches.set(i);
+                }
+            }
+        }
+        return materialize(matches);
+    }
+
+    List<DataAuditLog> findAllById(Set<Long> ids) throws IOException {
+        long[] rowIds = decodeLongs(Column.ID);
+        BitSet matches = new BitSet(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            if (ids.contains(rowIds[i])) {
+                matches.set(i);
+            }
+        }
+        return materialize(matches);
+    }
+
+    /**
+     * 段内全部记录的 id，用于归档后清理热表
+     */
+    long[] ids() throws IOException {
+        return decodeLongs(Column.ID);
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    long getFileSize() {
+        return fileSize;
+    }
+
+    long getMaxId() {
+        return maxId;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private BitSet matchTableAndTime(String tableName, LocalDateTime startTime, LocalDateTime endTime)
+            throws IOException {
+        BitSet matches = new BitSet(rowCount);
+        String[] tables = decodeStrings(Column.TABLE_NAME, null);
+        long[] times = null;
+        long start = toMicros(startTime);
+        long end = toMicros(endTime);
+        for (int i = 0; i < rowCount; i++) {
+            if (!tableName.equals(tables[i])) {
+                continue;
+            }
+            if (times == null) {
+                times = decodeLongs(Column.OPERATE_TIME);
+            }
+            if (times[i] >= start && times[i] <= end) {
+                matches.set(i);
+            }
+        }
+        return matches;
+    }
+
+    private List<DataAuditLog> materialize(BitSet matches) throws IOException {
+        if (matches.isEmpty()) {
+            return new ArrayList<>();
+        }
+        long[] ids = decodeLongs(Column.ID);
+        long[] times = decodeLongs(Column.OPERATE_TIME);
+        Long[] sequences = decodeNullableLongs(Column.ROW_SEQUENCE);
+        Map<Column, String[]> strings = new EnumMap<>(Column.class);
+        for (Column column : List.of(Column.TABLE_NAME, Column.OPERATION_TYPE, Column.PRIMARY_KEY_NAME,
+                Column.PRIMARY_KEY_VALUE, Column.OLD_VALUE, Column.NEW_VALUE, Column.OPERATOR, Column.REMARK)) {
+            strings.put(column, decodeStrings(column, matches));
+        }
+
+        List<DataAuditLog> logs = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            DataAuditLog log = new DataAuditLog();
+            log.setId(ids[i]);
+            log.setOperateTime(fromMicros(times[i]));
+            log.setRowSequence(sequences[i]);
+            log.setTableName(strings.get(Column.TABLE_NAME)[i]);
+            log.setOperationType(strings.get(Column.OPERATION_TYPE)[i]);
+            log.setPrimaryKeyName(strings.get(Column.PRIMARY_KEY_NAME)[i]);
+            log.setPrimaryKeyValue(strings.get(Column.PRIMARY_KEY_VALUE)[i]);
+            log.setOldValue(strings.get(Column.OLD_VALUE)[i]);
+            log.setNewValue(strings.get(Column.NEW_VALUE)[i]);
+            log.setOperator(strings.get(Column.OPERATOR)[i]);
+            log.setRemark(strings.get(Column.REMARK)[i]);
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    private static byte[] encode(Column column, List<DataAuditLog> logs) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        switch (column) {
+            case ID -> {
+                long previous = 0;
+                for (DataAuditLog log : logs) {
+                    writeVarLong(out, log.getId() - previous);
+                    previous = log.getId();
+                }
+            }
+            case OPERATE_TIME -> {
+                long previous = 0;
+                for (DataAuditLog log : logs) {
+                    long time = toMicros(log.getOperateTime());
+                    writeVarLong(out, zigzag(time - previous));
+                    previous = time;
+                }
+            }
+            case ROW_SEQUENCE -> {
+                long previous = 0;
+                for (DataAuditLog log : logs) {
+                    Long sequence = log.getRowSequence();
+                    if (sequence == null) {
+                        writeVarLong(out, 0);
+                    } else {
+                        writeVarLong(out, zigzag(sequence - previous) + 1);
+                        previous = sequence;
+                    }
+                }
+            }
+            default -> {
+                List<String> values = new ArrayList<>(logs.size());
+                for (DataAuditLog log : logs) {
+                    values.add(stringValue(column, log));
+                }
+                if (DICTIONARY_COLUMNS.contains(column)) {
+                    writeDictionary(out, values);
+                } else {
+                    for (String value : values) {
+                        writeString(out, value);
+                    }
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static String stringValue(Column column, DataAuditLog log) {
+        return switch (column) {
+            case TABLE_NAME -> log.getTableName();
+            case OPERATION_TYPE -> log.getOperationType();
+            case PRIMARY_KEY_NAME -> log.getPrimaryKeyName();
+            case PRIMARY_KEY_VALUE -> log.getPrimaryKeyValue();
+            case OLD_VALUE -> log.getOldValue();
+            case NEW_VALUE -> log.getNewValue();
+            case OPERATOR -> log.getOperator();
+            case REMARK -> log.getRemark();
+            default -> throw new IllegalArgumentException(column.name());
+        };
+    }
+
+    /**
+     * 字典：distinctCount(varint) 各取值；随后每行一个编码(varint)，0 表示 NULL，其余为字典下标 + 1
+     */
+    private static void writeDictionary(OutputStream out, List<String> values) throws IOException {
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        for (String value : values) {
+            if (value != null) {
+                codes.putIfAbsent(value, codes.size() + 1);
+            }
+        }
+        writeVarLong(out, codes.size());
+        for (String value : codes.keySet()) {
+            writeString(out, value);
+        }
+        for (String value : values) {
+            writeVarLong(out, value != null ? codes.get(value) : 0);
+        }
+    }
+
+    private long[] decodeLongs(Column column) throws IOException {
+        ByteBuffer buffer = readColumn(column);
+        long[] values = new long[rowCount];
+        long previous = 0;
+        for (int i = 0; i < rowCount; i++) {
+            long value = readVarLong(buffer);
+            previous = column == Column.ID ? previous + value : previous + unzigzag(value);
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    private Long[] decodeNullableLongs(Column column) throws IOException {
+        ByteBuffer buffer = readColumn(column);
+        Long[] values = new Long[rowCount];
+        long previous = 0;
+        for (int i = 0; i < rowCount; i++) {
+            long value = readVarLong(buffer);
+            if (value != 0) {
+                previous += unzigzag(value - 1);
+                values[i] = previous;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @param wanted 只构造这些行的值，为 null 时全部构造
+     */
+    private String[] decodeStrings(Column column, BitSet wanted) throws IOException {
+        ByteBuffer buffer = readColumn(column);
+        String[] values = new String[rowCount];
+        if (DICTIONARY_COLUMNS.contains(column)) {
+            String[] dictionary = new String[(int) readVarLong(buffer)];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(buffer);
+            }
+            for (int i = 0; i < rowCount; i++) {
+                int code = (int) readVarLong(buffer);
+                values[i] = code == 0 ? null : dictionary[code - 1];
+            }
+            return values;
+        }
+        for (int i = 0; i < rowCount; i++) {
+            int length = (int) readVarLong(buffer);
+            if (length == 0) {
+                continue;
+            }
+            if (wanted == null || wanted.get(i)) {
+                values[i] = new String(buffer.array(), buffer.position(), length - 1, StandardCharsets.UTF_8);
+            }
+            buffer.position(buffer.position() + length - 1);
+        }
+        return values;
+    }
+
+    private ByteBuffer readColumn(Column column) throws IOException {
+        int index = column.ordinal();
+        ByteBuffer compressed = readFully(columnOffsets[index], columnLengths[index]);
+        byte[] raw = new byte[columnRawLengths[index]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), 0, compressed.limit());
+            int read = 0;
+            while (read < raw.length) {
+                int n = inflater.inflate(raw, read, raw.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != raw.length) {
+                throw new EOFException("Truncated column " + column + " in archive segment: " + path);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted column " + column + " in archive segment: " + path, e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of archive segment: " + path);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        byte[] chunk = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    static String rowKey(String tableName, String primaryKeyValue) {
+        return tableName + '\u0000' + primaryKeyValue;
+    }
+
+    static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 长度 + 1 (varint) 后接 UTF-8 内容，0 表示 NULL
+     */
+    private static void writeString(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = (int) readVarLong(buffer);
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length - 1, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length - 1);
+        return value;
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
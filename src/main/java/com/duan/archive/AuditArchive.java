@@ -0,0 +1,275 @@
+package com.duan.archive;
+
+import com.duan.config.AuditConfig;
+import com.duan.entity.DataAuditLog;
+import com.duan.metrics.ArchiveMetrics;
+import com.duan.reader.AuditLogReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 审计日志冷归档
+ * <p>
+ * 后台任务把操作时间超过保留天数的记录按 id 顺序分批写成本地列式段文件，写入成功后从热表删除。
+ * 删除完成前段文件旁有 .pending 标记，重启时据此补做删除，记录不会同时留在热表和归档中。
+ * 查询先用段的时间范围和布隆过滤器排除不可能命中的段，只读取剩下的段
+ */
+@Slf4j
+public class AuditArchive {
+    private static final String SEGMENT_PREFIX = "archive-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String PENDING_SUFFIX = ".pending";
+    private static final String COLUMNS = "id, table_name, operation_type, primary_key_name, primary_key_value, " +
+            "old_value, new_value, operator, operate_time, row_sequence, remark";
+    private static final RowMapper<DataAuditLog> ROW_MAPPER = BeanPropertyRowMapper.newInstance(DataAuditLog.class);
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    private final AuditConfig auditConfig;
+    private final List<JdbcTemplate> stores;
+    private final Path directory;
+    private volatile List<ArchiveSegment> segments = Collections.emptyList();
+    private final Object archiveLock = new Object();
+    private final AtomicLong segmentsScanned = new AtomicLong();
+    private final AtomicLong segmentsSkipped = new AtomicLong();
+
+    /**
+     * @param stores 存放 sys_data_audit_log 的库，分片时每个分片一个
+     */
+    public AuditArchive(AuditConfig auditConfig, List<JdbcTemplate> stores) {
+        this.auditConfig = auditConfig;
+        this.stores = stores;
+        this.directory = Paths.get(auditConfig.getArchive().getDirectory());
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        List<ArchiveSegment> loaded = new ArrayList<>();
+        List<Path> pending = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(PENDING_SUFFIX)) {
+                    pending.add(file);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        loaded.add(ArchiveSegment.open(file));
+                    } catch (IOException e) {
+                        log.error("Skip corrupted archive segment: {}", file, e);
+                    }
+                }
+            }
+        }
+        loaded.sort(Comparator.comparingLong(ArchiveSegment::getMaxId));
+        segments = List.copyOf(loaded);
+
+        for (Path marker : pending) {
+            Path segmentPath = segmentPathOf(marker);
+            Optional<ArchiveSegment> segment = loaded.stream()
+                    .filter(s -> s.getPath().equals(segmentPath))
+                    .findFirst();
+            if (segment.isPresent()) {
+                // 段已写好但热表删除没有完成
+                deleteArchived(storeOf(segmentPath), segment.get().ids());
+            }
+            Files.deleteIfExists(marker);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${audit.archive.interval-ms:3600000}")
+    public void archive() {
+        AuditConfig.Archive config = auditConfig.getArchive();
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(config.getRetentionDays());
+        synchronized (archiveLock) {
+            for (int store = 0; store < stores.size(); store++) {
+                try {
+                    int archived;
+                    do {
+                        List<DataAuditLog> logs = stores.get(store).query(
+                                "SELECT " + COLUMNS + " FROM sys_data_audit_log WHERE operate_time < ? ORDER BY id LIMIT ?",
+                                ROW_MAPPER, Timestamp.valueOf(cutoff), config.getSegmentSize());
+                        archived = logs.size();
+                        if (archived > 0) {
+                            archiveBatch(store, logs);
+                        }
+                    } while (archived == config.getSegmentSize());
+                } catch (Exception e) {
+                    log.error("Archive audit logs of store {} failed", store, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 立即归档指定的记录（如快照压缩后的原始记录），记录须来自同一个库
+     */
+    public void archiveLogs(int store, List<DataAuditLog> logs) throws IOException {
+        List<DataAuditLog> sorted = new ArrayList<>(logs);
+        sorted.sort(Comparator.comparing(DataAuditLog::getId));
+        int segmentSize = auditConfig.getArchive().getSegmentSize();
+        synchronized (archiveLock) {
+            for (int from = 0; from < sorted.size(); from += segmentSize) {
+                archiveBatch(store, sorted.subList(from, Math.min(sorted.size(), from + segmentSize)));
+            }
+        }
+    }
+
+    private void archiveBatch(int store, List<DataAuditLog> logs) throws IOException {
+        long minId = logs.get(0).getId();
+        long maxId = logs.get(logs.size() - 1).getId();
+        Path path = directory.resolve(String.format("%s%d-%020d-%020d%s", SEGMENT_PREFIX, store, minId, maxId,
+                SEGMENT_SUFFIX));
+        Path marker = path.resolveSibling(path.getFileName() + PENDING_SUFFIX);
+        Files.createFile(marker);
+
+        ArchiveSegment segment = ArchiveSegment.write(path, logs);
+        List<ArchiveSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        segments = List.copyOf(updated);
+
+        deleteArchived(store, logs.stream().mapToLong(DataAuditLog::getId).toArray());
+        Files.delete(marker);
+        log.info("Archived {} audit logs (id {} - {}) to {}", logs.size(), minId, maxId, path.getFileName());
+    }
+
+    private void deleteArchived(int store, long[] ids) {
+        for (int from = 0; from < ids.length; from += DELETE_CHUNK_SIZE) {
+            long[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + DELETE_CHUNK_SIZE));
+            String placeholders = Arrays.stream(chunk).mapToObj(id -> "?").collect(Collectors.joining(","));
+            stores.get(store).update("DELETE FROM sys_data_audit_log WHERE id IN (" + placeholders + ")",
+                    Arrays.stream(chunk).boxed().toArray());
+        }
+    }
+
+    /**
+     * 归档中是否可能有该表在时间范围内的记录，只检查段的统计信息和布隆过滤器
+     */
+    public boolean mayContain(String tableName, LocalDateTime startTime, LocalDateTime endTime) {
+        return segments.stream().anyMatch(s -> s.mayContain(tableName, startTime, endTime));
+    }
+
+    /**
+     * 表在时间范围内按操作时间、id 倒序的前 limit 条
+     */
+    public List<DataAuditLog> findByTableNameAndTimeRange(String tableName,
+                                                          LocalDateTime startTime,
+                                                          LocalDateTime endTime,
+                                                          int limit) {
+        List<DataAuditLog> logs = scan(s -> s.mayContain(tableName, startTime, endTime),
+                s -> s.findByTableNameAndTimeRange(tableName, startTime, endTime));
+        return latest(logs, limit);
+    }
+
+    public long countByTableNameAndTimeRange(String tableName, LocalDateTime startTime, LocalDateTime endTime) {
+        long count = 0;
+        for (ArchiveSegment segment : prune(s -> s.mayContain(tableName, startTime, endTime))) {
+            try {
+                count += segment.count(tableName, startTime, endTime);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return count;
+    }
+
+    public List<DataAuditLog> findByTableNameAndPrimaryKey(String tableName, String primaryKeyValue, int limit) {
+        List<DataAuditLog> logs = scan(s -> s.mayContainRow(tableName, primaryKeyValue),
+                s -> s.findByTableNameAndPrimaryKey(tableName, primaryKeyValue));
+        return latest(logs, limit);
+    }
+
+    public List<DataAuditLog> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Long> wanted = new HashSet<>(ids);
+        return scan(s -> wanted.stream().anyMatch(s::mayContainId), s -> s.findAllById(wanted));
+    }
+
+    public ArchiveMetrics getMetrics() {
+        List<ArchiveSegment> current = segments;
+        ArchiveMetrics metrics = new ArchiveMetrics();
+        metrics.setSegments(current.size());
+        metrics.setRecords(current.stream().mapToLong(ArchiveSegment::getRowCount).sum());
+        metrics.setBytes(current.stream().mapToLong(ArchiveSegment::getFileSize).sum());
+        metrics.setSegmentsScanned(segmentsScanned.get());
+        metrics.setSegmentsSkipped(segmentsSkipped.get());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ArchiveSegment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Close archive segment {} failed", segment.getPath(), e);
+            }
+        }
+    }
+
+    private List<ArchiveSegment> prune(Predicate<ArchiveSegment> mayMatch) {
+        List<ArchiveSegment> current = segments;
+        List<ArchiveSegment> candidates = new ArrayList<>();
+        for (ArchiveSegment segment : current) {
+            if (mayMatch.test(segment)) {
+                candidates.add(segment);
+            }
+        }
+        segmentsScanned.addAndGet(candidates.size());
+        segmentsSkipped.addAndGet(current.size() - candidates.size());
+        return candidates;
+    }
+
+    private List<DataAuditLog> scan(Predicate<ArchiveSegment> mayMatch, SegmentQuery query) {
+        List<DataAuditLog> logs = new ArrayList<>();
+        for (ArchiveSegment segment : prune(mayMatch)) {
+            try {
+                logs.addAll(query.apply(segment));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Read archive segment " + segment.getPath() + " failed", e);
+            }
+        }
+        return logs;
+    }
+
+    private static List<DataAuditLog> latest(List<DataAuditLog> logs, int limit) {
+        logs.sort(AuditLogReader.LATEST_FIRST);
+        return logs.size() > limit ? new ArrayList<>(logs.subList(0, limit)) : logs;
+    }
+
+    private static Path segmentPathOf(Path marker) {
+        String name = marker.getFileName().toString();
+        return marker.resolveSibling(name.substring(0, name.length() - PENDING_SUFFIX.length()));
+    }
+
+    private static int storeOf(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.indexOf('-', SEGMENT_PREFIX.length())));
+    }
+
+    @FunctionalInterface
+    private interface SegmentQuery {
+        List<DataAuditLog> apply(ArchiveSegment segment) throws IOException;
+    }
+}
@@ -2,6 +2,7 @@ package com.duan.aspect;
 
 import com.duan.config.AuditConfig;
 import com.duan.enums.OperationType;
+import com.duan.row.Row;
 import com.duan.service.TransactionAwareEnhancedAuditService;
 import com.duan.utils.EnhancedSQLParser;
 import com.duan.utils.SQLInfo;
@@ -12,8 +13,6 @@ import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
-
 @Slf4j
 @Aspect
 @Component
@@ -42,7 +41,7 @@ public class JdbcTemplateAuditAspect {
         if (sqlInfo.getOperationType() == OperationType.UPDATE ||
                 sqlInfo.getOperationType() == OperationType.DELETE) {
             try {
-                Map<String, Object> beforeData = transactionAwareEnhancedAuditService.getBeforeData(sqlInfo);
+                Row beforeData = transactionAwareEnhancedAuditService.getBeforeData(sqlInfo);
                 sqlInfo.setOldData(beforeData);
             } catch (Exception e) {
                 log.error("Get before data failed", e);
@@ -56,7 +55,7 @@ public class JdbcTemplateAuditAspect {
         if (sqlInfo.getOperationType() == OperationType.INSERT ||
                 sqlInfo.getOperationType() == OperationType.UPDATE) {
             try {
-                Map<String, Object> afterData = transactionAwareEnhancedAuditService.getAfterData(sqlInfo);
+                Row afterData = transactionAwareEnhancedAuditService.getAfterData(sqlInfo);
                 sqlInfo.setNewData(afterData);
             } catch (Exception e) {
                 log.error("Get after data failed", e);
@@ -1,9 +1,11 @@
 package com.duan.aspect;
 
 import com.duan.config.AuditConfig;
+import com.duan.enums.AuditFidelity;
+import com.duan.enums.JpaCaptureMode;
 import com.duan.enums.OperationType;
-import com.duan.metadata.ColumnMetadata;
-import com.duan.metadata.TableMetadataProvider;
+import com.duan.metadata.EntityDescriptor;
+import com.duan.metadata.EntityDescriptorRegistry;
 import com.duan.service.TransactionAwareEnhancedAuditService;
 import com.duan.utils.SQLInfo;
 import lombok.RequiredArgsConstructor;
@@ -11,15 +13,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.Hibernate;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 
-import javax.persistence.Column;
-import javax.persistence.Id;
-import javax.persistence.Table;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.util.HashMap;
 import java.util.Map;
 
 @Slf4j
@@ -29,13 +25,13 @@ import java.util.Map;
 public class JpaAuditAspect {
     private final TransactionAwareEnhancedAuditService transactionAwareEnhancedAuditService;
     private final AuditConfig auditConfig;
-    private final TableMetadataProvider metadataProvider;
+    private final EntityDescriptorRegistry entityDescriptorRegistry;
 
     @Around("execution(* javax.persistence.EntityManager.persist(..)) || " +
             "execution(* javax.persistence.EntityManager.merge(..)) || " +
             "execution(* javax.persistence.EntityManager.remove(..))")
     public Object aroundEntityManager(ProceedingJoinPoint point) throws Throwable {
-        if (!auditConfig.isEnabled()) {
+        if (!auditConfig.isEnabled() || auditConfig.getJpaCaptureMode() != JpaCaptureMode.ASPECT) {
             return point.proceed();
         }
 
@@ -44,11 +40,14 @@ public class JpaAuditAspect {
             return point.proceed();
         }
 
-        Object entity = args[0];
-        String methodName = point.getSignature().getName();
-        String tableName = getTableName(entity);
+        EntityDescriptor descriptor = entityDescriptorRegistry.getDescriptor(args[0]);
+        if (descriptor == null) {
+            return point.proceed();
+        }
 
-        Map<String, ColumnMetadata> tableMetadata = metadataProvider.getTableMetadata(tableName);
+        Object entity = Hibernate.unproxy(args[0]);
+        String methodName = point.getSignature().getName();
+        String tableName = descriptor.getTableName();
 
         // 获取实体信息
         SQLInfo sqlInfo = new SQLInfo();
@@ -58,36 +57,52 @@ public class JpaAuditAspect {
         switch (methodName) {
             case "persist":
                 sqlInfo.setOperationType(OperationType.INSERT);
-                sqlInfo.setNewData(getEntityData(entity));
                 break;
             case "merge":
                 sqlInfo.setOperationType(OperationType.UPDATE);
-                Map<String, Object> primaryKeyData = getPrimaryKeyData(entity, tableMetadata);
-                if (!primaryKeyData.isEmpty()) {
-                    sqlInfo.setOldData(metadataProvider.getCompleteRowData(tableName, primaryKeyData));
-                }
                 break;
             case "remove":
                 sqlInfo.setOperationType(OperationType.DELETE);
-                primaryKeyData = getPrimaryKeyData(entity, tableMetadata);
-                if (!primaryKeyData.isEmpty()) {
-                    sqlInfo.setOldData(metadataProvider.getCompleteRowData(tableName, primaryKeyData));
-                }
                 break;
         }
 
+        // 前镜像采集失败只影响审计内容，不能阻断业务操作
+        try {
+            switch (methodName) {
+                case "persist":
+                    sqlInfo.setNewData(descriptor.toRow(descriptor.snapshot(entity)));
+                    break;
+                case "merge":
+                case "remove":
+                    Map<String, Object> primaryKeyData = descriptor.primaryKey(entity);
+                    if (!primaryKeyData.isEmpty()) {
+                        sqlInfo.setOldData(transactionAwareEnhancedAuditService.getRowData(tableName, primaryKeyData));
+                    }
+                    break;
+            }
+        } catch (Exception e) {
+            log.error("Capture before image of {} failed", tableName, e);
+        }
+
         // 执行原始操作
         Object result = point.proceed();
 
-        // 获取新数据
-        if (methodName.equals("persist") || methodName.equals("merge")) {
-            Map<String, Object> newPrimaryKeyData = getPrimaryKeyData(entity, tableMetadata);
-            if (!newPrimaryKeyData.isEmpty()) {
-                sqlInfo.setNewData(metadataProvider.getCompleteRowData(tableName, newPrimaryKeyData));
+        try {
+            // 获取新数据，merge 返回的托管实体上才有生成的主键
+            if (methodName.equals("persist") || methodName.equals("merge")) {
+                Object managed = methodName.equals("merge") && result != null ? result : entity;
+                Map<String, Object> newPrimaryKeyData = descriptor.primaryKey(managed);
+                // 降级时 persist 直接使用实体快照作为后镜像，不再回表；
+                // 持久化之后重新取快照，带上生成的主键和 @PrePersist 等回调填充的值
+                boolean snapshotOnly = methodName.equals("persist")
+                        && transactionAwareEnhancedAuditService.fidelity(tableName) == AuditFidelity.DIFF;
+                if (snapshotOnly) {
+                    sqlInfo.setNewData(descriptor.toRow(descriptor.snapshot(entity)));
+                } else if (!newPrimaryKeyData.isEmpty()) {
+                    sqlInfo.setNewData(transactionAwareEnhancedAuditService.getRowData(tableName, newPrimaryKeyData));
+                }
             }
-        }
 
-        try {
             // 记录审计日志
             transactionAwareEnhancedAuditService.saveAuditLog(sqlInfo);
         } catch (Exception e) {
@@ -96,61 +111,4 @@ public class JpaAuditAspect {
 
         return result;
     }
-
-    private String getTableName(Object entity) {
-        Table table = entity.getClass().getAnnotation(Table.class);
-        if (table != null && StringUtils.hasText(table.name())) {
-            return table.name();
-        }
-        return entity.getClass().getSimpleName().toLowerCase();
-    }
-
-    private Map<String, Object> getEntityData(Object entity) {
-        Map<String, Object> data = new HashMap<>();
-        for (Field field : entity.getClass().getDeclaredFields()) {
-            if (Modifier.isStatic(field.getModifiers()) ||
-                    Modifier.isTransient(field.getModifiers())) {
-                continue;
-            }
-
-            field.setAccessible(true);
-            try {
-                Column column = field.getAnnotation(Column.class);
-                String columnName = (column != null && StringUtils.hasText(column.name()))
-                        ? column.name()
-                        : field.getName();
-
-                data.put(columnName, field.get(entity));
-            } catch (Exception e) {
-                log.error("Get field value failed", e);
-            }
-        }
-        return data;
-    }
-
-    private Map<String, Object> getPrimaryKeyData(Object entity, Map<String, ColumnMetadata> metadata) {
-        Map<String, Object> primaryKeyData = new HashMap<>();
-
-        for (Field field : entity.getClass().getDeclaredFields()) {
-            if (field.isAnnotationPresent(Id.class)) {
-                field.setAccessible(true);
-                try {
-                    Column column = field.getAnnotation(Column.class);
-                    String columnName = (column != null && StringUtils.hasText(column.name()))
-                            ? column.name()
-                            : field.getName();
-
-                    Object value = field.get(entity);
-                    if (value != null) {
-                        primaryKeyData.put(columnName, value);
-                    }
-                } catch (Exception e) {
-                    log.error("Get primary key value failed", e);
-                }
-            }
-        }
-
-        return primaryKeyData;
-    }
-
 }
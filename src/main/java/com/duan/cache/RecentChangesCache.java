@@ -0,0 +1,98 @@
+package com.duan.cache;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.event.AuditLogListener;
+import com.duan.metrics.RecentCacheMetrics;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 最近落库的审计日志缓存：每张表、每个操作人各一个定长缓冲区，在落库回调中写入，
+ * “最近 N 条”和最近时间窗口内的查询不访问数据库。缓存不足以完整回答时返回 null，由调用方回落到数据库
+ */
+public class RecentChangesCache implements AuditLogListener {
+    private final int capacity;
+    private final int maxKeys;
+    private final Map<String, RecentLogBuffer> byTable = new ConcurrentHashMap<>();
+    private final Map<String, RecentLogBuffer> byOperator = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public RecentChangesCache(int capacity, int maxKeys) {
+        this.capacity = capacity;
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public void onAuditLogsCommitted(List<DataAuditLog> logs) {
+        for (DataAuditLog log : logs) {
+            if (log.getTableName() != null) {
+                RecentLogBuffer buffer = bufferOf(byTable, log.getTableName());
+                if (buffer != null) {
+                    buffer.add(log);
+                }
+            }
+            if (log.getOperator() != null) {
+                RecentLogBuffer buffer = bufferOf(byOperator, log.getOperator());
+                if (buffer != null) {
+                    buffer.add(log);
+                }
+            }
+        }
+    }
+
+    /**
+     * 表最近的 limit 条，从新到旧
+     */
+    public List<DataAuditLog> findRecentByTableName(String tableName, int limit) {
+        return count(latest(byTable.get(tableName), limit));
+    }
+
+    /**
+     * 操作人最近的 limit 条，从新到旧
+     */
+    public List<DataAuditLog> findRecentByOperator(String operator, int limit) {
+        return count(latest(byOperator.get(operator), limit));
+    }
+
+    /**
+     * 表在时间范围内的全部记录，从新到旧
+     */
+    public List<DataAuditLog> findByTableNameAndTimeRange(String tableName,
+                                                          LocalDateTime startTime,
+                                                          LocalDateTime endTime) {
+        RecentLogBuffer buffer = byTable.get(tableName);
+        return count(buffer != null ? buffer.between(startTime, endTime) : null);
+    }
+
+    public RecentCacheMetrics getMetrics() {
+        RecentCacheMetrics metrics = new RecentCacheMetrics();
+        metrics.setTables(byTable.size());
+        metrics.setOperators(byOperator.size());
+        metrics.setHits(hits.sum());
+        metrics.setMisses(misses.sum());
+        return metrics;
+    }
+
+    private RecentLogBuffer bufferOf(Map<String, RecentLogBuffer> buffers, String key) {
+        RecentLogBuffer buffer = buffers.get(key);
+        if (buffer != null || byTable.size() + byOperator.size() >= maxKeys) {
+            return buffer;
+        }
+        // 缓冲区从创建时刻开始才是完整的
+        return buffers.computeIfAbsent(key, k -> new RecentLogBuffer(capacity, LocalDateTime.now()));
+    }
+
+    private static List<DataAuditLog> latest(RecentLogBuffer buffer, int limit) {
+        return buffer != null ? buffer.latest(limit) : null;
+    }
+
+    private List<DataAuditLog> count(List<DataAuditLog> logs) {
+        (logs != null ? hits : misses).increment();
+        return logs;
+    }
+}
@@ -0,0 +1,115 @@
+package com.duan.cache;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.reader.AuditLogReader;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一张表或一个操作人最近的审计日志，定长环形数组，按操作时间、id 从旧到新排列，写满后淘汰最旧的
+ * <p>
+ * coveredAfter 之后的记录全部在缓冲区中：初始为创建时间，每淘汰或拒收一条记录就推进到该记录的操作时间
+ */
+final class RecentLogBuffer {
+    private final DataAuditLog[] elements;
+    private int head;
+    private int size;
+    private LocalDateTime coveredAfter;
+
+    RecentLogBuffer(int capacity, LocalDateTime createdAt) {
+        this.elements = new DataAuditLog[capacity];
+        this.coveredAfter = createdAt;
+    }
+
+    synchronized void add(DataAuditLog log) {
+        LocalDateTime time = log.getOperateTime();
+        if (time == null || !time.isAfter(coveredAfter)) {
+            return;
+        }
+        if (log.getId() == null) {
+            // 无法排序的记录不缓存，之前的时间范围不再完整
+            coveredAfter = time;
+            return;
+        }
+        if (size == elements.length) {
+            // 比最旧的还旧，不再保留
+            if (isOlder(log, get(0))) {
+                coveredAfter = time;
+                return;
+            }
+            coveredAfter = max(coveredAfter, get(0).getOperateTime());
+            elements[head] = null;
+            head = (head + 1) % elements.length;
+            size--;
+        }
+        // 提交顺序与操作时间基本一致，从最新一端向前找插入位置
+        int position = size;
+        while (position > 0 && isOlder(log, get(position - 1))) {
+            position--;
+        }
+        for (int i = size; i > position; i--) {
+            elements[index(i)] = get(i - 1);
+        }
+        elements[index(position)] = log;
+        size++;
+    }
+
+    /**
+     * 最新的 limit 条（从新到旧），缓冲区不足 limit 条时返回 null
+     */
+    synchronized List<DataAuditLog> latest(int limit) {
+        if (size < limit) {
+            return null;
+        }
+        List<DataAuditLog> logs = new ArrayList<>(limit);
+        for (int i = size - 1; i >= size - limit; i--) {
+            logs.add(get(i));
+        }
+        return logs;
+    }
+
+    /**
+     * 时间范围内的全部记录（从新到旧），范围超出已覆盖的部分时返回 null
+     */
+    synchronized List<DataAuditLog> between(LocalDateTime startTime, LocalDateTime endTime) {
+        if (!startTime.isAfter(coveredAfter)) {
+            return null;
+        }
+        List<DataAuditLog> logs = new ArrayList<>();
+        for (int i = size - 1; i >= 0; i--) {
+            LocalDateTime time = get(i).getOperateTime();
+            if (time.isBefore(startTime)) {
+                break;
+            }
+            if (!time.isAfter(endTime)) {
+                logs.add(get(i));
+            }
+        }
+        return logs;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private DataAuditLog get(int position) {
+        return elements[index(position)];
+    }
+
+    private int index(int position) {
+        return (head + position) % elements.length;
+    }
+
+    /**
+     * 按操作时间、id 比较，a 是否比 b 更旧
+     */
+    private static boolean isOlder(DataAuditLog a, DataAuditLog b) {
+        return AuditLogReader.LATEST_FIRST.compare(a, b) > 0;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
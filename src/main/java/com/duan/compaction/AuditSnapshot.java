@@ -0,0 +1,21 @@
+package com.duan.compaction;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一行数据在一个周期结束时的状态，由该周期内的审计日志依次合并得到
+ */
+@Data
+public class AuditSnapshot {
+    private String tableName;
+    private String primaryKeyValue;
+    private LocalDateTime periodStart;      // 周期起点（含）
+    private LocalDateTime periodEnd;        // 周期终点（不含）
+    private String state;                   // 周期结束时的行数据(JSON)，行已删除时为 null
+    private long changeCount;               // 周期内的变更次数
+    private Long firstLogId;                // 周期内第一条审计日志的 id
+    private Long lastLogId;                 // 周期内最后一条审计日志的 id
+    private LocalDateTime lastOperateTime;  // 周期内最后一次变更的时间
+}
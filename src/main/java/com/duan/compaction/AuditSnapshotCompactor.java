@@ -0,0 +1,383 @@
+package com.duan.compaction;
+
+import com.duan.archive.AuditArchive;
+import com.duan.config.AuditConfig;
+import com.duan.config.AuditDataSources;
+import com.duan.entity.DataAuditLog;
+import com.duan.enums.CompactionRawPolicy;
+import com.duan.enums.StatsGranularity;
+import com.duan.registry.AuditedTableRegistry;
+import com.duan.shard.AuditShardRouter;
+import com.duan.utils.AuditLogImages;
+import com.duan.utils.JsonUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 长变更链的周期快照压缩
+ * <p>
+ * 后台任务对操作时间早于 min-age-days 的审计日志，找出本次范围内变更次数不少于 min-chain-length 的行，
+ * 从该行上一个快照的状态开始依次合并后镜像，每个周期（如每天）写一条快照：周期结束时的行数据和变更次数。
+ * 快照与该行的审计日志存放在同一个库，原始记录按 raw-policy 保留、同事务删除或移入冷归档。
+ * 多张表并行压缩，每次只读取一批记录并在批次之间停顿，限制对数据库的压力
+ */
+@Slf4j
+public class AuditSnapshotCompactor {
+    private static final String LOG_COLUMNS = "id, table_name, operation_type, primary_key_name, primary_key_value, " +
+            "old_value, new_value, changed_columns, operator, operate_time, row_sequence, remark";
+    private static final String FOLD_COLUMNS = "id, operation_type, new_value, changed_columns, operate_time";
+    private static final String SNAPSHOT_COLUMNS = "table_name, primary_key_value, period_start, period_end, state, " +
+            "change_count, first_log_id, last_log_id, last_operate_time";
+    private static final RowMapper<DataAuditLog> LOG_MAPPER = BeanPropertyRowMapper.newInstance(DataAuditLog.class);
+    private static final RowMapper<AuditSnapshot> SNAPSHOT_MAPPER = BeanPropertyRowMapper.newInstance(AuditSnapshot.class);
+    private static final TypeReference<LinkedHashMap<String, Object>> STATE_TYPE = new TypeReference<>() {
+    };
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    private final AuditConfig auditConfig;
+    private final AuditedTableRegistry auditedTableRegistry;
+    private final AuditShardRouter router;
+    private final AuditArchive archive;
+    private final AuditLogImages auditLogImages;
+    private final List<JdbcTemplate> stores;
+    private final List<TransactionTemplate> transactions;
+    private final JdbcTemplate watermarkStore;
+    private final boolean sharded;
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private final ExecutorService executor;
+
+    /**
+     * @param archive 冷归档，未开启时为 null
+     */
+    public AuditSnapshotCompactor(AuditConfig auditConfig,
+                                  AuditedTableRegistry auditedTableRegistry,
+                                  AuditDataSources auditDataSources,
+                                  AuditShardRouter router,
+                                  AuditArchive archive,
+                                  AuditLogImages auditLogImages) {
+        this.auditConfig = auditConfig;
+        this.auditLogImages = auditLogImages;
+        this.auditedTableRegistry = auditedTableRegistry;
+        this.router = router;
+        this.archive = archive;
+        this.sharded = auditDataSources.getShardCount() > 0;
+        this.stores = sharded
+                ? auditDataSources.getShardJdbcTemplates()
+                : List.of(auditDataSources.getWriteJdbcTemplate());
+        this.transactions = sharded
+                ? auditDataSources.getShardTransactionTemplates()
+                : List.of(auditDataSources.getWriteTransactionTemplate());
+        this.watermarkStore = auditDataSources.getWriteJdbcTemplate();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, auditConfig.getCompaction().getParallelism()), r -> {
+            Thread thread = new Thread(r, "audit-compaction-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (auditConfig.getCompaction().getRawPolicy() == CompactionRawPolicy.ARCHIVE && archive == null) {
+            log.warn("audit.compaction.raw-policy is ARCHIVE but audit.archive is disabled, compacted logs are kept");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${audit.compaction.interval-ms:3600000}")
+    public void compact() {
+        AuditConfig.Compaction config = auditConfig.getCompaction();
+        // 只压缩完整的周期
+        LocalDateTime cutoff = config.getPeriod().truncate(LocalDateTime.now().minusDays(config.getMinAgeDays()));
+        List<Callable<Void>> tasks = auditedTableRegistry.getAuditedTableNames().stream()
+                .map(tableName -> (Callable<Void>) () -> {
+                    compactTable(tableName, cutoff);
+                    return null;
+                })
+                .toList();
+        try {
+            executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 行在时间范围内的快照，按周期先后排序
+     */
+    public List<AuditSnapshot> findSnapshots(String tableName,
+                                             String primaryKeyValue,
+                                             LocalDateTime startTime,
+                                             LocalDateTime endTime) {
+        List<AuditSnapshot> snapshots = new ArrayList<>();
+        for (int store : storesOf(tableName)) {
+            snapshots.addAll(stores.get(store).query("SELECT " + SNAPSHOT_COLUMNS + " FROM sys_data_audit_snapshot " +
+                            "WHERE table_name = ? AND primary_key_value = ? AND period_end > ? AND period_start <= ? " +
+                            "ORDER BY period_start",
+                    SNAPSHOT_MAPPER, tableName, primaryKeyValue, Timestamp.valueOf(startTime), Timestamp.valueOf(endTime)));
+        }
+        snapshots.sort(Comparator.comparing(AuditSnapshot::getPeriodStart));
+        return snapshots;
+    }
+
+    /**
+     * 行在指定时间之前（周期终点不晚于该时间）的最后一个快照，没有时返回 null
+     */
+    public AuditSnapshot findLatestSnapshot(String tableName, String primaryKeyValue, LocalDateTime time) {
+        AuditSnapshot latest = null;
+        for (int store : storesOf(tableName)) {
+            List<AuditSnapshot> found = stores.get(store).query("SELECT " + SNAPSHOT_COLUMNS +
+                            " FROM sys_data_audit_snapshot WHERE table_name = ? AND primary_key_value = ? " +
+                            "AND period_end <= ? ORDER BY period_start DESC LIMIT 1",
+                    SNAPSHOT_MAPPER, tableName, primaryKeyValue, Timestamp.valueOf(time));
+            if (!found.isEmpty() && (latest == null || found.get(0).getPeriodStart().isAfter(latest.getPeriodStart()))) {
+                latest = found.get(0);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 多行在指定时间之前的最后一个快照，没有快照的行不在结果中
+     */
+    public Map<String, AuditSnapshot> findLatestSnapshots(String tableName,
+                                                          Collection<String> primaryKeyValues,
+                                                          LocalDateTime time) {
+        Map<String, AuditSnapshot> latest = new HashMap<>();
+        if (primaryKeyValues.isEmpty()) {
+            return latest;
+        }
+        String placeholders = primaryKeyValues.stream().map(k -> "?").collect(Collectors.joining(","));
+        List<Object> args = new ArrayList<>();
+        args.add(tableName);
+        args.addAll(primaryKeyValues);
+        args.add(Timestamp.valueOf(time));
+        args.add(tableName);
+        args.add(Timestamp.valueOf(time));
+        for (int store : storesOf(tableName)) {
+            List<AuditSnapshot> found = stores.get(store).query("SELECT " + SNAPSHOT_COLUMNS +
+                            " FROM sys_data_audit_snapshot s JOIN (SELECT primary_key_value AS pk, MAX(period_start) AS ps" +
+                            " FROM sys_data_audit_snapshot WHERE table_name = ? AND primary_key_value IN (" + placeholders +
+                            ") AND period_end <= ? GROUP BY primary_key_value) m" +
+                            " ON s.primary_key_value = m.pk AND s.period_start = m.ps WHERE s.table_name = ?",
+                    SNAPSHOT_MAPPER, args.toArray());
+            for (AuditSnapshot snapshot : found) {
+                latest.merge(snapshot.getPrimaryKeyValue(), snapshot,
+                        (a, b) -> a.getPeriodStart().isAfter(b.getPeriodStart()) ? a : b);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 快照中的行数据，行已删除时返回 null
+     */
+    public static Map<String, Object> stateOf(AuditSnapshot snapshot) {
+        return snapshot.getState() != null ? JsonUtils.fromJson(snapshot.getState(), STATE_TYPE) : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void compactTable(String tableName, LocalDateTime cutoff) {
+        try {
+            LocalDateTime from = watermarkOf(tableName);
+            if (!from.isBefore(cutoff)) {
+                return;
+            }
+            int rows = 0;
+            for (int store : storesOf(tableName)) {
+                List<DataAuditLog> toArchive = new ArrayList<>();
+                for (String primaryKeyValue : longChains(store, tableName, from, cutoff)) {
+                    compactRow(store, tableName, primaryKeyValue, cutoff, toArchive);
+                    rows++;
+                }
+                if (!toArchive.isEmpty()) {
+                    archive.archiveLogs(store, toArchive);
+                }
+            }
+            watermarkStore.update("INSERT INTO sys_data_audit_compaction (table_name, compacted_until, updated_at) " +
+                            "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE compacted_until = VALUES(compacted_until), " +
+                            "updated_at = VALUES(updated_at)",
+                    tableName, Timestamp.valueOf(cutoff), Timestamp.valueOf(LocalDateTime.now()));
+            if (rows > 0) {
+                log.info("Compacted {} rows of table {} up to {}", rows, tableName, cutoff);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 水位不前进，下次重试
+            log.error("Compact audit logs of table {} failed", tableName, e);
+        }
+    }
+
+    private LocalDateTime watermarkOf(String tableName) {
+        List<LocalDateTime> found = watermarkStore.query(
+                "SELECT compacted_until FROM sys_data_audit_compaction WHERE table_name = ?",
+                (rs, rowNum) -> rs.getTimestamp(1).toLocalDateTime(), tableName);
+        return found.isEmpty() ? EPOCH : found.get(0);
+    }
+
+    private List<String> longChains(int store, String tableName, LocalDateTime from, LocalDateTime cutoff) {
+        return stores.get(store).queryForList("SELECT primary_key_value FROM sys_data_audit_log " +
+                        "WHERE table_name = ? AND primary_key_value IS NOT NULL AND operate_time >= ? AND operate_time < ? " +
+                        "GROUP BY primary_key_value HAVING COUNT(*) >= ?",
+                String.class, tableName, Timestamp.valueOf(from), Timestamp.valueOf(cutoff),
+                auditConfig.getCompaction().getMinChainLength());
+    }
+
+    /**
+     * 从该行上一个快照的周期终点开始，按操作时间、id 顺序分批读取原始记录并逐个周期写出快照
+     */
+    private void compactRow(int store,
+                            String tableName,
+                            String primaryKeyValue,
+                            LocalDateTime cutoff,
+                            List<DataAuditLog> toArchive) throws InterruptedException, IOException {
+        AuditConfig.Compaction config = auditConfig.getCompaction();
+        CompactionRawPolicy policy = rawPolicy();
+        StatsGranularity granularity = config.getPeriod();
+        String columns = policy == CompactionRawPolicy.ARCHIVE ? LOG_COLUMNS : FOLD_COLUMNS;
+
+        AuditSnapshot previous = latestSnapshot(store, tableName, primaryKeyValue);
+        Map<String, Object> state = previous != null ? stateOf(previous) : null;
+        LocalDateTime afterTime = previous != null ? previous.getPeriodEnd() : EPOCH;
+        long afterId = Long.MIN_VALUE;
+
+        AuditSnapshot period = null;
+        List<DataAuditLog> periodLogs = new ArrayList<>();
+        List<DataAuditLog> batch;
+        do {
+            batch = stores.get(store).query("SELECT " + columns + " FROM sys_data_audit_log " +
+                            "WHERE table_name = ? AND primary_key_value = ? AND operate_time < ? " +
+                            "AND (operate_time > ? OR (operate_time = ? AND id > ?)) ORDER BY operate_time, id LIMIT ?",
+                    LOG_MAPPER, tableName, primaryKeyValue, Timestamp.valueOf(cutoff),
+                    Timestamp.valueOf(afterTime), Timestamp.valueOf(afterTime), afterId, config.getBatchSize());
+            for (DataAuditLog auditLog : batch) {
+                LocalDateTime periodStart = granularity.truncate(auditLog.getOperateTime());
+                if (period != null && !period.getPeriodStart().equals(periodStart)) {
+                    closePeriod(store, period, state, periodLogs, policy, toArchive);
+                    period = null;
+                    periodLogs = new ArrayList<>();
+                }
+                if (period == null) {
+                    period = new AuditSnapshot();
+                    period.setTableName(tableName);
+                    period.setPrimaryKeyValue(primaryKeyValue);
+                    period.setPeriodStart(periodStart);
+                    period.setPeriodEnd(granularity.next(periodStart));
+                    period.setFirstLogId(auditLog.getId());
+                }
+                state = auditLogImages.replay(state, auditLog);
+                period.setChangeCount(period.getChangeCount() + 1);
+                period.setLastLogId(auditLog.getId());
+                period.setLastOperateTime(auditLog.getOperateTime());
+                periodLogs.add(auditLog);
+            }
+            if (!batch.isEmpty()) {
+                DataAuditLog last = batch.get(batch.size() - 1);
+                afterTime = last.getOperateTime();
+                afterId = last.getId();
+            }
+            if (config.getBatchPauseMs() > 0) {
+                Thread.sleep(config.getBatchPauseMs());
+            }
+        } while (batch.size() == config.getBatchSize());
+
+        if (period != null) {
+            closePeriod(store, period, state, periodLogs, policy, toArchive);
+        }
+    }
+
+    private void closePeriod(int store,
+                             AuditSnapshot period,
+                             Map<String, Object> state,
+                             List<DataAuditLog> periodLogs,
+                             CompactionRawPolicy policy,
+                             List<DataAuditLog> toArchive) throws IOException {
+        period.setState(state != null ? JsonUtils.toJson(state) : null);
+        JdbcTemplate jdbcTemplate = stores.get(store);
+        transactions.get(store).executeWithoutResult(status -> {
+            upsertSnapshot(jdbcTemplate, period);
+            if (policy == CompactionRawPolicy.DELETE) {
+                deleteLogs(jdbcTemplate, periodLogs);
+            }
+        });
+        if (policy == CompactionRawPolicy.ARCHIVE) {
+            toArchive.addAll(periodLogs);
+            if (toArchive.size() >= auditConfig.getArchive().getSegmentSize()) {
+                archive.archiveLogs(store, toArchive);
+                toArchive.clear();
+            }
+        }
+    }
+
+    private static void upsertSnapshot(JdbcTemplate jdbcTemplate, AuditSnapshot snapshot) {
+        jdbcTemplate.update("""
+                        INSERT INTO sys_data_audit_snapshot
+                            (table_name, primary_key_value, period_start, period_end, state,
+                             change_count, first_log_id, last_log_id, last_operate_time)
+                        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                        ON DUPLICATE KEY UPDATE period_end = VALUES(period_end), state = VALUES(state),
+                            change_count = VALUES(change_count), first_log_id = VALUES(first_log_id),
+                            last_log_id = VALUES(last_log_id), last_operate_time = VALUES(last_operate_time)
+                        """,
+                snapshot.getTableName(), snapshot.getPrimaryKeyValue(),
+                Timestamp.valueOf(snapshot.getPeriodStart()), Timestamp.valueOf(snapshot.getPeriodEnd()),
+                snapshot.getState(), snapshot.getChangeCount(), snapshot.getFirstLogId(), snapshot.getLastLogId(),
+                Timestamp.valueOf(snapshot.getLastOperateTime()));
+    }
+
+    private static void deleteLogs(JdbcTemplate jdbcTemplate, List<DataAuditLog> logs) {
+        for (int from = 0; from < logs.size(); from += DELETE_CHUNK_SIZE) {
+            List<DataAuditLog> chunk = logs.subList(from, Math.min(logs.size(), from + DELETE_CHUNK_SIZE));
+            String placeholders = chunk.stream().map(l -> "?").collect(Collectors.joining(","));
+            jdbcTemplate.update("DELETE FROM sys_data_audit_log WHERE id IN (" + placeholders + ")",
+                    chunk.stream().map(DataAuditLog::getId).toArray());
+        }
+    }
+
+    private AuditSnapshot latestSnapshot(int store, String tableName, String primaryKeyValue) {
+        List<AuditSnapshot> found = stores.get(store).query("SELECT " + SNAPSHOT_COLUMNS +
+                        " FROM sys_data_audit_snapshot WHERE table_name = ? AND primary_key_value = ? " +
+                        "ORDER BY period_start DESC LIMIT 1",
+                SNAPSHOT_MAPPER, tableName, primaryKeyValue);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    private CompactionRawPolicy rawPolicy() {
+        CompactionRawPolicy policy = auditConfig.getCompaction().getRawPolicy();
+        return policy == CompactionRawPolicy.ARCHIVE && archive == null ? CompactionRawPolicy.KEEP : policy;
+    }
+
+    private List<Integer> storesOf(String tableName) {
+        if (sharded) {
+            OptionalInt shard = router.routeTable(tableName, stores.size());
+            if (shard.isPresent()) {
+                return List.of(shard.getAsInt());
+            }
+        }
+        return IntStream.range(0, stores.size()).boxed().toList();
+    }
+}
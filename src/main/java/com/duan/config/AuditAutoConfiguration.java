@@ -1,12 +1,51 @@
 package com.duan.config;
 
+import com.duan.archive.AuditArchive;
 import com.duan.aspect.JdbcTemplateAuditAspect;
 import com.duan.aspect.JpaAuditAspect;
+import com.duan.cache.RecentChangesCache;
+import com.duan.compaction.AuditSnapshotCompactor;
+import com.duan.event.AuditEventBus;
+import com.duan.event.AuditLogListener;
+import com.duan.id.AuditIdGenerator;
+import com.duan.id.TimeOrderedIdGenerator;
+import com.duan.image.ExternalContentStore;
+import com.duan.image.LargeColumnPolicies;
+import com.duan.image.LocalExternalContentStore;
+import com.duan.index.AuditValueIndex;
+import com.duan.listener.HibernateAuditEventListener;
+import com.duan.metadata.EntityDescriptorRegistry;
 import com.duan.metadata.MySqlTableMetadataProvider;
 import com.duan.metadata.TableMetadataProvider;
+import com.duan.overload.AuditOverloadController;
+import com.duan.reader.ArchiveAwareAuditLogReader;
+import com.duan.reader.AuditLogReader;
+import com.duan.reader.CachingAuditLogReader;
+import com.duan.reader.ReplicaRoutingAuditLogReader;
+import com.duan.reader.RepositoryAuditLogReader;
+import com.duan.reader.ShardedAuditLogReader;
+import com.duan.reconcile.AuditReconciler;
+import com.duan.reconstruct.AuditStateReconstructor;
+import com.duan.registry.AuditedTableRegistry;
+import com.duan.replica.ReplicaLagMonitor;
+import com.duan.repository.AuditStatsRepository;
+import com.duan.repository.AuditedTableRepository;
 import com.duan.repository.DataAuditLogRepository;
+import com.duan.schema.AuditSchemaRegistry;
 import com.duan.service.TransactionAwareEnhancedAuditService;
+import com.duan.shard.AuditShardRouter;
+import com.duan.shard.TableNameShardRouter;
+import com.duan.stats.AuditStatsCollector;
+import com.duan.utils.AuditLogImages;
 import com.duan.utils.EnhancedSQLParser;
+import com.duan.writer.AuditLogSpool;
+import com.duan.writer.AuditLogWriter;
+import com.duan.writer.BulkLoadAuditLogWriter;
+import com.duan.writer.JdbcAuditLogWriter;
+import com.duan.writer.JpaAuditLogWriter;
+import com.duan.writer.PartitionedAuditLogWriter;
+import com.duan.writer.ShardedAuditLogWriter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -18,13 +57,23 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 @Configuration
 //@EnableAsync
 @EnableCaching
+@EnableScheduling
 @EnableTransactionManagement
 @EnableConfigurationProperties(AuditConfig.class)
 @ConditionalOnProperty(prefix = "audit", name = "enabled", havingValue = "true", matchIfMissing = true)
@@ -33,16 +82,231 @@ public class AuditAutoConfiguration {
     public CacheManager cacheManager() {
         SimpleCacheManager cacheManager = new SimpleCacheManager();
         cacheManager.setCaches(Arrays.asList(
-                new ConcurrentMapCache("tableMetadata")
+                new ConcurrentMapCache("tableMetadata"),
+                new ConcurrentMapCache("tableUpdateDerivable")
         ));
         return cacheManager;
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public TableMetadataProvider tableMetadataProvider(JdbcTemplate jdbcTemplate,
-                                                       CacheManager cacheManager) {
-        return new MySqlTableMetadataProvider(jdbcTemplate, cacheManager);
+    public AuditDataSources auditDataSources(AuditConfig auditConfig, DataSource dataSource) throws SQLException {
+        return new AuditDataSources(auditConfig, dataSource);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditShardRouter auditShardRouter() {
+        return new TableNameShardRouter();
+    }
+
+    /**
+     * 配置了分片库时按路由写入各分片；配置了独立的审计写数据源时通过 JDBC 批量写入；否则沿用 JPA 写入业务数据源。
+     * 开启分区写入后由多个写入线程并行写入；开启批量导入后，在以上写入方式外再包一层落盘 + LOAD DATA 导入
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditLogWriter auditLogWriter(AuditConfig auditConfig,
+                                         AuditDataSources auditDataSources,
+                                         EntityManagerFactory entityManagerFactory,
+                                         PlatformTransactionManager transactionManager,
+                                         AuditShardRouter auditShardRouter,
+                                         AuditIdGenerator auditIdGenerator) {
+        AuditLogWriter writer = baseAuditLogWriter(auditDataSources, entityManagerFactory,
+                transactionManager, auditShardRouter);
+        AuditConfig.WriteLanes writeLanes = auditConfig.getWriteLanes();
+        if (writeLanes.isEnabled()) {
+            int lanes = writeLanes.getLanes() > 0 ? writeLanes.getLanes() : Runtime.getRuntime().availableProcessors();
+            writer = new PartitionedAuditLogWriter(writer, lanes, writeLanes.getQueueCapacity(),
+                    writeLanes.getMaxBatchSize(), writeLanes.getSequenceCacheSize());
+        }
+        AuditConfig.BulkLoad bulkLoad = auditConfig.getBulkLoad();
+        if (!bulkLoad.isEnabled()) {
+            return writer;
+        }
+
+        Path directory = Paths.get(bulkLoad.getDirectory());
+        List<AuditLogSpool> spools = new ArrayList<>();
+        if (auditDataSources.getShardCount() > 0) {
+            for (int i = 0; i < auditDataSources.getShardCount(); i++) {
+                spools.add(new AuditLogSpool("shard-" + i, directory.resolve("shard-" + i),
+                        bulkLoad.getMaxFileBytes(), bulkLoad.getMaxFileAgeMs(),
+                        auditDataSources.getShardJdbcTemplates().get(i),
+                        auditDataSources.getShardTransactionTemplates().get(i)));
+            }
+        } else {
+            spools.add(new AuditLogSpool("default", directory,
+                    bulkLoad.getMaxFileBytes(), bulkLoad.getMaxFileAgeMs(),
+                    auditDataSources.getWriteJdbcTemplate(), auditDataSources.getWriteTransactionTemplate()));
+        }
+        return new BulkLoadAuditLogWriter(writer, bulkLoad.getTables(), auditIdGenerator, spools, auditShardRouter);
+    }
+
+    /**
+     * 审计日志在创建时就由本地分配 id，写入时不需要等待数据库回填自增 id
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditIdGenerator auditIdGenerator(AuditConfig auditConfig) {
+        AuditConfig.IdGenerator idGenerator = auditConfig.getIdGenerator();
+        return new TimeOrderedIdGenerator(idGenerator.getNodeId(), idGenerator.getNodeBits(),
+                idGenerator.getMaxClockBackwardMs());
+    }
+
+    /**
+     * 表结构版本注册表，关闭位置数组写入后仍用于读取已有的位置数组镜像
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditSchemaRegistry auditSchemaRegistry(AuditDataSources auditDataSources) {
+        return new AuditSchemaRegistry(auditDataSources.getWriteJdbcTemplate());
+    }
+
+    /**
+     * 审计日志镜像的读取，位置数组形式的镜像按本上下文的表结构版本注册表还原列名
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditLogImages auditLogImages(AuditSchemaRegistry auditSchemaRegistry) {
+        return new AuditLogImages(auditSchemaRegistry::columnsOf);
+    }
+
+    private AuditLogWriter baseAuditLogWriter(AuditDataSources auditDataSources,
+                                              EntityManagerFactory entityManagerFactory,
+                                              PlatformTransactionManager transactionManager,
+                                              AuditShardRouter auditShardRouter) {
+        if (auditDataSources.getShardCount() > 0) {
+            List<AuditLogWriter> shardWriters = new ArrayList<>();
+            for (int i = 0; i < auditDataSources.getShardCount(); i++) {
+                shardWriters.add(new JdbcAuditLogWriter(auditDataSources.getShardJdbcTemplates().get(i),
+                        auditDataSources.getShardTransactionTemplates().get(i)));
+            }
+            return new ShardedAuditLogWriter(shardWriters, auditShardRouter);
+        }
+        if (auditDataSources.hasDedicatedWritePool()) {
+            return new JdbcAuditLogWriter(auditDataSources.getWriteJdbcTemplate(),
+                    auditDataSources.getWriteTransactionTemplate());
+        }
+        return new JpaAuditLogWriter(entityManagerFactory, transactionManager);
+    }
+
+    /**
+     * 分片时并行查询各分片；配置了独立的审计写入库时查询该库（与写入、状态重建同一个库）；
+     * 否则通过 JPA 查询主库。配置了只读副本时优先读副本，外层依次是冷归档归并和最近记录缓存
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditLogReader auditLogReader(AuditDataSources auditDataSources,
+                                         DataAuditLogRepository dataAuditLogRepository,
+                                         AuditShardRouter auditShardRouter,
+                                         ObjectProvider<ReplicaLagMonitor> replicaLagMonitor,
+                                         ObjectProvider<AuditArchive> auditArchive,
+                                         ObjectProvider<RecentChangesCache> recentChangesCache) {
+        AuditLogReader reader;
+        if (auditDataSources.getShardCount() > 0) {
+            reader = new ShardedAuditLogReader(auditDataSources.getShardJdbcTemplates(), auditShardRouter);
+        } else if (auditDataSources.hasDedicatedWritePool()) {
+            // 单个库时 ShardedAuditLogReader 就是普通的 JDBC 查询
+            reader = new ShardedAuditLogReader(List.of(auditDataSources.getWriteJdbcTemplate()), auditShardRouter);
+        } else {
+            reader = new RepositoryAuditLogReader(dataAuditLogRepository);
+        }
+        ReplicaLagMonitor monitor = replicaLagMonitor.getIfAvailable();
+        if (monitor != null) {
+            // 单个库时 ShardedAuditLogReader 就是普通的 JDBC 查询
+            AuditLogReader replica = new ShardedAuditLogReader(
+                    List.of(auditDataSources.getReplicaJdbcTemplate()), auditShardRouter);
+            reader = new ReplicaRoutingAuditLogReader(reader, replica, monitor);
+        }
+        AuditArchive archive = auditArchive.getIfAvailable();
+        if (archive != null) {
+            reader = new ArchiveAwareAuditLogReader(reader, archive);
+        }
+        RecentChangesCache cache = recentChangesCache.getIfAvailable();
+        return cache != null ? new CachingAuditLogReader(reader, cache) : reader;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit.datasource.replica", name = "url")
+    public ReplicaLagMonitor replicaLagMonitor(AuditConfig auditConfig, AuditDataSources auditDataSources) {
+        return new ReplicaLagMonitor(auditDataSources.getWriteJdbcTemplate(),
+                auditDataSources.getReplicaJdbcTemplate(), auditConfig.getReplica().getMaxLagMs());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit.recent-cache", name = "enabled", havingValue = "true")
+    public RecentChangesCache recentChangesCache(AuditConfig auditConfig) {
+        AuditConfig.RecentCache recentCache = auditConfig.getRecentCache();
+        return new RecentChangesCache(recentCache.getCapacity(), recentCache.getMaxKeys());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit.archive", name = "enabled", havingValue = "true")
+    public AuditArchive auditArchive(AuditConfig auditConfig, AuditDataSources auditDataSources) {
+        List<JdbcTemplate> stores = auditDataSources.getShardCount() > 0
+                ? auditDataSources.getShardJdbcTemplates()
+                : List.of(auditDataSources.getWriteJdbcTemplate());
+        return new AuditArchive(auditConfig, stores);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit.compaction", name = "enabled", havingValue = "true")
+    public AuditSnapshotCompactor auditSnapshotCompactor(AuditConfig auditConfig,
+                                                         AuditedTableRegistry auditedTableRegistry,
+                                                         AuditDataSources auditDataSources,
+                                                         AuditShardRouter auditShardRouter,
+                                                         ObjectProvider<AuditArchive> auditArchive,
+                                                         AuditLogImages auditLogImages) {
+        return new AuditSnapshotCompactor(auditConfig, auditedTableRegistry, auditDataSources, auditShardRouter,
+                auditArchive.getIfAvailable(), auditLogImages);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditStateReconstructor auditStateReconstructor(AuditConfig auditConfig,
+                                                           AuditDataSources auditDataSources,
+                                                           AuditShardRouter auditShardRouter,
+                                                           ObjectProvider<AuditSnapshotCompactor> auditSnapshotCompactor,
+                                                           AuditLogImages auditLogImages) {
+        return new AuditStateReconstructor(auditConfig, auditDataSources, auditShardRouter,
+                auditSnapshotCompactor.getIfAvailable(), auditLogImages);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit.reconciliation", name = "enabled", havingValue = "true")
+    public AuditReconciler auditReconciler(AuditConfig auditConfig,
+                                           AuditedTableRegistry auditedTableRegistry,
+                                           TableMetadataProvider tableMetadataProvider,
+                                           AuditStateReconstructor auditStateReconstructor,
+                                           AuditDataSources auditDataSources) {
+        return new AuditReconciler(auditConfig, auditedTableRegistry, tableMetadataProvider,
+                auditStateReconstructor, auditDataSources);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public TableMetadataProvider tableMetadataProvider(AuditDataSources auditDataSources,
+                                                       CacheManager cacheManager,
+                                                       LargeColumnPolicies largeColumnPolicies) {
+        return new MySqlTableMetadataProvider(auditDataSources, cacheManager, largeColumnPolicies);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ExternalContentStore externalContentStore(AuditConfig auditConfig) {
+        return new LocalExternalContentStore(Paths.get(auditConfig.getLargeColumns().getExternalDirectory()));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public LargeColumnPolicies largeColumnPolicies(AuditConfig auditConfig,
+                                                   ExternalContentStore externalContentStore) {
+        return new LargeColumnPolicies(auditConfig, externalContentStore);
     }
 
     @Bean
@@ -65,15 +329,41 @@ public class AuditAutoConfiguration {
     public TransactionAwareEnhancedAuditService transactionAwareEnhancedAuditService(
             AuditConfig auditConfig,
             DataAuditLogRepository dataAuditLogRepository,
-            JdbcTemplate jdbcTemplate,
+            AuditDataSources auditDataSources,
             TableMetadataProvider metadataProvider,
-            ApplicationEventPublisher eventPublisher) {
+            LargeColumnPolicies largeColumnPolicies,
+            AuditSchemaRegistry auditSchemaRegistry,
+            AuditLogImages auditLogImages,
+            AuditEventBus auditEventBus,
+            AuditLogWriter auditLogWriter,
+            AuditOverloadController auditOverloadController,
+            AuditIdGenerator auditIdGenerator) {
         return new TransactionAwareEnhancedAuditService(
                 auditConfig,
                 dataAuditLogRepository,
-                jdbcTemplate,
+                auditDataSources.getImageJdbcTemplate(),
+                auditIdGenerator,
                 metadataProvider,
-                eventPublisher);
+                largeColumnPolicies,
+                auditSchemaRegistry,
+                auditLogImages,
+                auditEventBus,
+                auditLogWriter,
+                auditOverloadController);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditOverloadController auditOverloadController(AuditConfig auditConfig) {
+        return new AuditOverloadController(auditConfig);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditEventBus auditEventBus(List<AuditLogListener> listeners,
+                                       ApplicationEventPublisher eventPublisher,
+                                       AuditConfig auditConfig) {
+        return new AuditEventBus(listeners, eventPublisher, auditConfig.getStream().getApplicationEventBufferSize());
     }
 
     @Bean
@@ -88,8 +378,58 @@ public class AuditAutoConfiguration {
     @ConditionalOnMissingBean
     public JpaAuditAspect jpaAuditAspect(TransactionAwareEnhancedAuditService transactionAwareEnhancedAuditService,
                                          AuditConfig auditConfig,
-                                         TableMetadataProvider tableMetadataProvider) {
-        return new JpaAuditAspect(transactionAwareEnhancedAuditService, auditConfig, tableMetadataProvider);
+                                         EntityDescriptorRegistry entityDescriptorRegistry) {
+        return new JpaAuditAspect(transactionAwareEnhancedAuditService, auditConfig, entityDescriptorRegistry);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public HibernateAuditEventListener hibernateAuditEventListener(
+            TransactionAwareEnhancedAuditService transactionAwareEnhancedAuditService,
+            AuditConfig auditConfig,
+            EntityManagerFactory entityManagerFactory) {
+        return new HibernateAuditEventListener(transactionAwareEnhancedAuditService, auditConfig, entityManagerFactory);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public EntityDescriptorRegistry entityDescriptorRegistry(EntityManagerFactory entityManagerFactory) {
+        return new EntityDescriptorRegistry(entityManagerFactory);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditStatsRepository auditStatsRepository(AuditDataSources auditDataSources) {
+        return new AuditStatsRepository(auditDataSources);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditStatsCollector auditStatsCollector(AuditConfig auditConfig,
+                                                   AuditStatsRepository auditStatsRepository) {
+        return new AuditStatsCollector(auditConfig, auditStatsRepository);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditedTableRepository auditedTableRepository(AuditDataSources auditDataSources) {
+        return new AuditedTableRepository(auditDataSources);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuditedTableRegistry auditedTableRegistry(AuditedTableRepository auditedTableRepository) {
+        return new AuditedTableRegistry(auditedTableRepository);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "audit.value-index", name = "enabled", havingValue = "true")
+    public AuditValueIndex auditValueIndex(AuditConfig auditConfig,
+                                           AuditLogReader auditLogReader,
+                                           AuditIdGenerator auditIdGenerator,
+                                           AuditLogImages auditLogImages) {
+        return new AuditValueIndex(auditConfig, auditLogReader, auditIdGenerator, auditLogImages);
     }
 
 //    @Bean
@@ -1,9 +1,15 @@
 package com.duan.config;
 
+import com.duan.enums.AuditFidelity;
+import com.duan.enums.CompactionRawPolicy;
+import com.duan.enums.JpaCaptureMode;
+import com.duan.enums.LargeColumnPolicy;
+import com.duan.enums.StatsGranularity;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -17,4 +23,181 @@ public class AuditConfig {
     private Map<String, List<String>> includeColumns;
     private int maxRetries = 3;
     private boolean async = true;
+    private List<String> coalesceTables;    // 同一事务内对同一行的多次变更合并为一条净变更
+    private JpaCaptureMode jpaCaptureMode = JpaCaptureMode.ASPECT;
+    private boolean positionalImages = false;   // 镜像按表结构版本存成位置数组，不重复存列名（改变存储格式，需显式开启）
+    private long metadataRefreshIntervalMs = 60000;  // 检查已缓存表结构是否变化（ALTER TABLE）的间隔
+    private Stats stats = new Stats();
+    private TableRegistry tableRegistry = new TableRegistry();
+    private ValueIndex valueIndex = new ValueIndex();
+    private Datasource datasource = new Datasource();
+    private Stream stream = new Stream();
+    private BulkLoad bulkLoad = new BulkLoad();
+    private LargeColumns largeColumns = new LargeColumns();
+    private Overload overload = new Overload();
+    private WriteLanes writeLanes = new WriteLanes();
+    private Archive archive = new Archive();
+    private Compaction compaction = new Compaction();
+    private Reconstruction reconstruction = new Reconstruction();
+    private Reconciliation reconciliation = new Reconciliation();
+    private RecentCache recentCache = new RecentCache();
+    private Replica replica = new Replica();
+    private IdGenerator idGenerator = new IdGenerator();
+
+    @Data
+    public static class Stats {
+        private boolean enabled = true;
+        private long flushIntervalMs = 60000;  // 内存计数刷入汇总表的间隔
+    }
+
+    @Data
+    public static class TableRegistry {
+        private long flushIntervalMs = 30000;  // 内存增量合并到注册表的间隔
+    }
+
+    @Data
+    public static class ValueIndex {
+        private boolean enabled = false;
+        private String directory = "audit-value-index";     // 段文件所在的本地目录
+        private Map<String, List<String>> columns;          // 每张表需要索引的列，未配置时索引全部列
+        private int maxValueLength = 256;                   // 超过该长度的值不进入索引
+        private int memtableMaxPostings = 200000;           // 内存索引达到该条目数后刷成段文件
+        private int maxSegments = 8;                        // 段数量超过该值时触发合并
+        private long mergeIntervalMs = 60000;
+        private boolean catchUpOnStartup = true;            // 启动时补录最新段之后的审计日志
+        private long catchUpLagMs = 300000;                 // 补录从最新段之前这段时间生成的 id 开始，覆盖晚提交的事务
+        private int maxPendingFlushes = 2;                  // 补录时等待刷盘的内存索引超过该数量就暂停读取
+    }
+
+    @Data
+    public static class Stream {
+        private int bufferSize = 1024;                  // 每个实时订阅者的缓冲区大小
+        private int maxSubscribers = 64;
+        private long sseTimeoutMs = 0;                  // SSE 连接超时时间，0 表示不超时
+        private int applicationEventBufferSize = 10000; // Spring 审计事件异步发布的缓冲区大小
+    }
+
+    @Data
+    public static class BulkLoad {
+        private boolean enabled = false;
+        private List<String> tables;                        // 走批量导入的表，未配置时全部表
+        private String directory = "audit-bulk-load";       // 落盘文件所在的本地目录
+        private long maxFileBytes = 64 * 1024 * 1024;       // 文件超过该大小后封存等待导入
+        private long maxFileAgeMs = 5000;                   // 文件创建超过该时长后封存等待导入
+        private long loadIntervalMs = 1000;
+    }
+
+    @Data
+    public static class LargeColumns {
+        private int maxBytes = 4096;                                    // 截断长度，也是外置的起始大小
+        private LargeColumnPolicy textPolicy = LargeColumnPolicy.TRUNCATE;  // TEXT/MEDIUMTEXT/LONGTEXT/JSON 列
+        private LargeColumnPolicy binaryPolicy = LargeColumnPolicy.HASH;    // BLOB/BINARY 列
+        private Map<String, Map<String, LargeColumnPolicy>> columns;    // 按表、列单独指定策略
+        private String externalDirectory = "audit-external-content";    // EXTERNALIZE 内容的本地存储目录
+    }
+
+    @Data
+    public static class Archive {
+        private boolean enabled = false;
+        private String directory = "audit-archive";     // 归档段文件所在的本地目录
+        private int retentionDays = 90;                 // 操作时间早于该天数的记录移出热表
+        private int segmentSize = 50000;                // 每个段文件的最大记录数
+        private long intervalMs = 3600000;
+    }
+
+    @Data
+    public static class Compaction {
+        private boolean enabled = false;
+        private int minAgeDays = 30;                            // 操作时间早于该天数的记录参与压缩
+        private int minChainLength = 1000;                      // 一行在本次压缩范围内至少有多少条记录才压缩
+        private StatsGranularity period = StatsGranularity.DAY; // 快照周期
+        private CompactionRawPolicy rawPolicy = CompactionRawPolicy.KEEP;
+        private int parallelism = 2;                            // 同时压缩的表数，每张表占用一个审计写连接
+        private int batchSize = 1000;                           // 每次查询读取的原始记录数
+        private long batchPauseMs = 100;                        // 每次查询之后的停顿，限制对数据库的压力
+        private long intervalMs = 3600000;
+    }
+
+    @Data
+    public static class Reconstruction {
+        private int parallelism = 4;            // 整表重建时每个库划分的主键区间数，每个区间一个线程
+        private int keyBatchSize = 200;         // 每次查询重放的行数
+        private int batchSize = 1000;           // 单行重建时每次查询读取的审计日志条数
+    }
+
+    @Data
+    public static class Reconciliation {
+        private boolean enabled = false;
+        private String cron = "0 0 3 * * *";            // 定时对账的时间，应落在维护窗口内
+        private List<String> tables = new ArrayList<>(); // 参与对账的表，为空时对账所有已审计的表
+        private int parallelism = 8;                    // 并行校验的主键区间数，每个占用一个读连接
+        private long rangeSize = 100000;                // 每个主键区间覆盖的主键值跨度
+        private int maxRanges = 100000;                 // 区间数上限，主键稀疏时自动放大区间跨度
+        private int maxReportedMismatches = 1000;       // 报告中最多列出的不一致行数
+        private long maxDurationMinutes = 240;          // 单次对账的最长时间，超时后剩余区间不再校验
+    }
+
+    @Data
+    public static class RecentCache {
+        private boolean enabled = false;    // 只能看到本实例写入的记录，多实例写同一个库时不要开启
+        private int capacity = 200;         // 每张表、每个操作人缓存的最近记录数
+        private int maxKeys = 10000;        // 缓存的表和操作人总数上限，超过后新出现的不再缓存
+    }
+
+    @Data
+    public static class IdGenerator {
+        private int nodeId = 0;                 // 本地生成 id 的节点号，多实例部署时必须各不相同
+        private int nodeBits = 10;              // 节点号位数（0-22），其余 22 - nodeBits 位为每毫秒内的序号
+        private long maxClockBackwardMs = 1000; // 允许的时钟回拨，超过时拒绝生成 id
+    }
+
+    @Data
+    public static class Replica {
+        private long maxLagMs = 5000;               // 副本延迟超过该值时查询回落到主库
+        private long heartbeatIntervalMs = 1000;    // 主库写心跳、检查副本延迟的间隔
+    }
+
+    @Data
+    public static class WriteLanes {
+        private boolean enabled = false;
+        private int lanes = 0;                  // 写入线程数，0 表示 CPU 核数；审计写连接池的 maxActive 应不小于该值
+        private int queueCapacity = 1024;       // 每个线程等待写入的批次数上限，写满后调用方阻塞
+        private int maxBatchSize = 500;         // 一次写入合并的最大条数
+        private int sequenceCacheSize = 100000; // 每个线程记住最近多少行的变更序号
+    }
+
+    @Data
+    public static class Overload {
+        private boolean enabled = false;
+        private long evaluateIntervalMs = 1000;
+        private long latencyHighMs = 200;           // 镜像查询平均耗时超过该值视为过载
+        private long latencyLowMs = 50;             // 低于该值（且其他指标也正常）视为恢复
+        private double errorRateHigh = 0.2;
+        private double errorRateLow = 0.02;
+        private int backlogHigh = 10000;            // 等待写入的审计日志条数
+        private int backlogLow = 1000;
+        private int degradeAfter = 2;               // 连续多少个周期过载后降一级
+        private int recoverAfter = 10;              // 连续多少个周期正常后升一级
+        private AuditFidelity lowestFidelity = AuditFidelity.KEYS_ONLY;  // 允许降到的最低级别，丢弃（DROP）需显式配置
+    }
+
+    @Data
+    public static class Datasource {
+        private Pool read = new Pool();     // 元数据等组件自身读操作使用的连接池
+        private Pool write = new Pool();    // 审计日志写入使用的连接池，需指向存放 sys_data_audit_* 表的库
+        private List<Pool> shards = new ArrayList<>();  // 审计日志分片库，配置后审计日志按路由写入各分片的 sys_data_audit_log
+        private Pool replica = new Pool();  // 写数据源的只读副本，审计日志查询接口优先读副本；不能与分片同时使用
+    }
+
+    @Data
+    public static class Pool {
+        private String url;                 // 未配置时复用业务数据源
+        private String username;
+        private String password;
+        private String driverClassName;
+        private int initialSize = 1;
+        private int minIdle = 1;
+        private int maxActive = 8;
+        private long maxWait = 3000;        // 获取连接的最长等待时间（毫秒）
+    }
 }
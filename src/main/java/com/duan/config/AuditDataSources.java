@@ -0,0 +1,208 @@
+package com.duan.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.duan.metrics.PoolMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 组件内部使用的数据源
+ * <p>
+ * 前后镜像查询必须与业务 SQL 使用同一个连接才能看到事务内未提交的数据，因此始终走业务数据源；
+ * 元数据查询和审计写入可以分别配置独立的连接池，避免审计负载占满业务连接池。
+ * 配置了分片库时，审计日志按路由写入各分片，统计、注册表等组件自身的表仍在写数据源上。
+ * 配置了只读副本时，审计日志的查询接口优先读副本，不与审计写入争用主库。
+ * 这里的 JdbcTemplate 都不是 Spring Bean，组件自身的 SQL 不会再被审计切面拦截。
+ */
+@Slf4j
+public class AuditDataSources {
+    private final DataSource businessDataSource;
+    private final DruidDataSource readPool;
+    private final DruidDataSource writePool;
+    private final DruidDataSource replicaPool;
+    private final List<DruidDataSource> shardPools = new ArrayList<>();
+
+    private final JdbcTemplate imageJdbcTemplate;
+    private final JdbcTemplate readJdbcTemplate;
+    private final JdbcTemplate writeJdbcTemplate;
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final TransactionTemplate writeTransactionTemplate;
+    private final List<JdbcTemplate> shardJdbcTemplates = new ArrayList<>();
+    private final List<TransactionTemplate> shardTransactionTemplates = new ArrayList<>();
+
+    public AuditDataSources(AuditConfig auditConfig, DataSource businessDataSource) throws SQLException {
+        if (StringUtils.hasText(auditConfig.getDatasource().getReplica().getUrl())
+                && !auditConfig.getDatasource().getShards().isEmpty()) {
+            throw new IllegalStateException("audit.datasource.replica is not supported together with audit.datasource.shards");
+        }
+        this.businessDataSource = businessDataSource;
+        this.readPool = createPool("audit-read", auditConfig.getDatasource().getRead(), null);
+        this.writePool = createPool("audit-write", auditConfig.getDatasource().getWrite(), null);
+        this.replicaPool = createPool("audit-replica", auditConfig.getDatasource().getReplica(), null);
+
+        DataSource readDataSource = readPool != null ? readPool : businessDataSource;
+        DataSource writeDataSource = writePool != null ? writePool : businessDataSource;
+
+        this.imageJdbcTemplate = new JdbcTemplate(businessDataSource);
+        this.readJdbcTemplate = new JdbcTemplate(readDataSource);
+        this.writeJdbcTemplate = new JdbcTemplate(writeDataSource);
+        this.replicaJdbcTemplate = replicaPool != null ? new JdbcTemplate(replicaPool) : null;
+        this.writeTransactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(writeDataSource));
+        this.writeTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        List<AuditConfig.Pool> shards = auditConfig.getDatasource().getShards();
+        for (int i = 0; i < shards.size(); i++) {
+            // 审计日志的 id 通常已在本地分配；没有预先分配 id 的记录
+            // 仍靠各分片按分片数交错的自增 id（第 i 个分片生成 i+1, i+1+N, ...）保证全局唯一
+            String initSql = String.format("SET SESSION auto_increment_increment = %d, auto_increment_offset = %d",
+                    shards.size(), i + 1);
+            DruidDataSource shardPool = createPool("audit-shard-" + i, shards.get(i), initSql);
+            if (shardPool == null) {
+                throw new IllegalStateException("audit.datasource.shards[" + i + "].url is required");
+            }
+            shardPools.add(shardPool);
+            shardJdbcTemplates.add(new JdbcTemplate(shardPool));
+            TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(shardPool));
+            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            shardTransactionTemplates.add(transactionTemplate);
+        }
+    }
+
+    /**
+     * 前后镜像查询，使用业务数据源以参与业务事务
+     */
+    public JdbcTemplate getImageJdbcTemplate() {
+        return imageJdbcTemplate;
+    }
+
+    /**
+     * 元数据等组件自身的读操作
+     */
+    public JdbcTemplate getReadJdbcTemplate() {
+        return readJdbcTemplate;
+    }
+
+    /**
+     * 审计日志及统计、注册表等组件自身表的写操作
+     */
+    public JdbcTemplate getWriteJdbcTemplate() {
+        return writeJdbcTemplate;
+    }
+
+    /**
+     * 审计写入使用的独立事务（REQUIRES_NEW）
+     */
+    public TransactionTemplate getWriteTransactionTemplate() {
+        return writeTransactionTemplate;
+    }
+
+    /**
+     * 审计库的只读副本，未配置时为 null
+     */
+    public JdbcTemplate getReplicaJdbcTemplate() {
+        return replicaJdbcTemplate;
+    }
+
+    public boolean hasDedicatedWritePool() {
+        return writePool != null;
+    }
+
+    public int getShardCount() {
+        return shardPools.size();
+    }
+
+    /**
+     * 分片库的 JdbcTemplate，下标即分片号
+     */
+    public List<JdbcTemplate> getShardJdbcTemplates() {
+        return shardJdbcTemplates;
+    }
+
+    public List<TransactionTemplate> getShardTransactionTemplates() {
+        return shardTransactionTemplates;
+    }
+
+    public List<PoolMetrics> getPoolMetrics() {
+        List<PoolMetrics> metrics = new ArrayList<>();
+        if (businessDataSource instanceof DruidDataSource druid) {
+            metrics.add(toMetrics("business", druid));
+        }
+        if (readPool != null) {
+            metrics.add(toMetrics("audit-read", readPool));
+        }
+        if (writePool != null) {
+            metrics.add(toMetrics("audit-write", writePool));
+        }
+        if (replicaPool != null) {
+            metrics.add(toMetrics("audit-replica", replicaPool));
+        }
+        for (DruidDataSource shardPool : shardPools) {
+            metrics.add(toMetrics(shardPool.getName(), shardPool));
+        }
+        return metrics;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (readPool != null) {
+            readPool.close();
+        }
+        if (writePool != null) {
+            writePool.close();
+        }
+        if (replicaPool != null) {
+            replicaPool.close();
+        }
+        shardPools.forEach(DruidDataSource::close);
+    }
+
+    private static DruidDataSource createPool(String name, AuditConfig.Pool pool, String initSql) throws SQLException {
+        if (!StringUtils.hasText(pool.getUrl())) {
+            return null;
+        }
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setName(name);
+        dataSource.setUrl(pool.getUrl());
+        dataSource.setUsername(pool.getUsername());
+        dataSource.setPassword(pool.getPassword());
+        if (StringUtils.hasText(pool.getDriverClassName())) {
+            dataSource.setDriverClassName(pool.getDriverClassName());
+        }
+        dataSource.setInitialSize(pool.getInitialSize());
+        dataSource.setMinIdle(pool.getMinIdle());
+        dataSource.setMaxActive(pool.getMaxActive());
+        dataSource.setMaxWait(pool.getMaxWait());
+        if (initSql != null) {
+            dataSource.setConnectionInitSqls(List.of(initSql));
+        }
+        dataSource.init();
+        log.info("Initialized {} pool, maxActive: {}", name, pool.getMaxActive());
+        return dataSource;
+    }
+
+    private static PoolMetrics toMetrics(String name, DruidDataSource dataSource) {
+        PoolMetrics metrics = new PoolMetrics();
+        metrics.setName(name);
+        metrics.setActiveCount(dataSource.getActiveCount());
+        metrics.setPoolingCount(dataSource.getPoolingCount());
+        metrics.setMaxActive(dataSource.getMaxActive());
+        metrics.setActivePeak(dataSource.getActivePeak());
+        metrics.setWaitThreadCount(dataSource.getWaitThreadCount());
+        metrics.setNotEmptyWaitCount(dataSource.getNotEmptyWaitCount());
+        metrics.setNotEmptyWaitMillis(dataSource.getNotEmptyWaitMillis());
+        metrics.setConnectCount(dataSource.getConnectCount());
+        metrics.setCreateCount(dataSource.getCreateCount());
+        metrics.setErrorCount(dataSource.getErrorCount());
+        return metrics;
+    }
+}
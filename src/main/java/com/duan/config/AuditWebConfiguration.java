@@ -0,0 +1,15 @@
+package com.duan.config;
+
+import com.duan.replica.ReadConsistencyInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class AuditWebConfiguration implements WebMvcConfigurer {
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 查询接口的读一致性请求头
+        registry.addInterceptor(new ReadConsistencyInterceptor()).addPathPatterns("/api/audit/**");
+    }
+}
@@ -1,24 +1,26 @@
 package com.duan.config;
 
+import com.alibaba.druid.pool.DruidDataSource;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
-
-import javax.sql.DataSource;
 
 @Configuration
 public class DataSourceConfiguration {
 
-    @Bean
+    /**
+     * 使用连接池，避免每次 JdbcTemplate 调用都新建物理连接；
+     * 池大小等参数同样通过 spring.datasource 前缀配置（initial-size、max-active 等）
+     */
+    @Bean(initMethod = "init", destroyMethod = "close")
     @ConfigurationProperties(prefix = "spring.datasource")
-    public DataSource dataSource() {
-        return new DriverManagerDataSource();
+    public DruidDataSource dataSource() {
+        return new DruidDataSource();
     }
 
     @Bean
-    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+    public JdbcTemplate jdbcTemplate(DruidDataSource dataSource) {
         return new JdbcTemplate(dataSource);
     }
 }
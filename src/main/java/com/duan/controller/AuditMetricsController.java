@@ -0,0 +1,146 @@
+package com.duan.controller;
+
+import com.duan.archive.AuditArchive;
+import com.duan.cache.RecentChangesCache;
+import com.duan.config.AuditDataSources;
+import com.duan.event.AuditEventBus;
+import com.duan.overload.AuditOverloadController;
+import com.duan.replica.ReplicaLagMonitor;
+import com.duan.writer.AuditLogWriter;
+import com.duan.metrics.ArchiveMetrics;
+import com.duan.metrics.FidelityTransition;
+import com.duan.metrics.LaneMetrics;
+import com.duan.metrics.OverloadMetrics;
+import com.duan.metrics.PoolMetrics;
+import com.duan.metrics.RecentCacheMetrics;
+import com.duan.metrics.ReplicaMetrics;
+import com.duan.metrics.SubscriptionMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/audit/metrics")
+public class AuditMetricsController {
+
+    private final AuditDataSources auditDataSources;
+    private final AuditEventBus auditEventBus;
+    private final AuditOverloadController auditOverloadController;
+    private final AuditLogWriter auditLogWriter;
+    private final ObjectProvider<AuditArchive> auditArchive;
+    private final ObjectProvider<RecentChangesCache> recentChangesCache;
+    private final ObjectProvider<ReplicaLagMonitor> replicaLagMonitor;
+
+    public AuditMetricsController(AuditDataSources auditDataSources,
+                                  AuditEventBus auditEventBus,
+                                  AuditOverloadController auditOverloadController,
+                                  AuditLogWriter auditLogWriter,
+                                  ObjectProvider<AuditArchive> auditArchive,
+                                  ObjectProvider<RecentChangesCache> recentChangesCache,
+                                  ObjectProvider<ReplicaLagMonitor> replicaLagMonitor) {
+        this.auditDataSources = auditDataSources;
+        this.auditEventBus = auditEventBus;
+        this.auditOverloadController = auditOverloadController;
+        this.auditLogWriter = auditLogWriter;
+        this.auditArchive = auditArchive;
+        this.recentChangesCache = recentChangesCache;
+        this.replicaLagMonitor = replicaLagMonitor;
+    }
+
+    /**
+     * 获取业务连接池及审计专用连接池的使用情况
+     *
+     * @return 各连接池指标
+     */
+    @GetMapping("/pools")
+    public ResponseEntity<List<PoolMetrics>> getPoolMetrics() {
+        return ResponseEntity.ok(auditDataSources.getPoolMetrics());
+    }
+
+    /**
+     * 获取事件总线各订阅者的积压与丢弃情况
+     *
+     * @return 各订阅者指标
+     */
+    @GetMapping("/subscriptions")
+    public ResponseEntity<List<SubscriptionMetrics>> getSubscriptionMetrics() {
+        return ResponseEntity.ok(auditEventBus.getSubscriptionMetrics());
+    }
+
+    /**
+     * 获取各表当前的审计记录级别及过载指标
+     *
+     * @return 各表过载指标
+     */
+    @GetMapping("/overload")
+    public ResponseEntity<List<OverloadMetrics>> getOverloadMetrics() {
+        return ResponseEntity.ok(auditOverloadController.getOverloadMetrics());
+    }
+
+    /**
+     * 获取最近的审计记录级别变化，最新的在前
+     *
+     * @return 级别变化记录
+     */
+    @GetMapping("/overload/transitions")
+    public ResponseEntity<List<FidelityTransition>> getFidelityTransitions() {
+        return ResponseEntity.ok(auditOverloadController.getRecentTransitions());
+    }
+
+    /**
+     * 获取分区写入各线程的队列深度与写入情况，未开启分区写入时为空
+     *
+     * @return 各写入线程指标
+     */
+    @GetMapping("/lanes")
+    public ResponseEntity<List<LaneMetrics>> getLaneMetrics() {
+        return ResponseEntity.ok(auditLogWriter.getLaneMetrics());
+    }
+
+    /**
+     * 获取冷归档的段数、记录数、文件大小以及查询时扫描/跳过的段数（需要开启 audit.archive.enabled）
+     *
+     * @return 冷归档指标
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<ArchiveMetrics> getArchiveMetrics() {
+        AuditArchive archive = auditArchive.getIfAvailable();
+        if (archive == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(archive.getMetrics());
+    }
+
+    /**
+     * 获取最近记录缓存的命中情况（需要开启 audit.recent-cache.enabled）
+     *
+     * @return 缓存指标
+     */
+    @GetMapping("/recent-cache")
+    public ResponseEntity<RecentCacheMetrics> getRecentCacheMetrics() {
+        RecentChangesCache cache = recentChangesCache.getIfAvailable();
+        if (cache == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(cache.getMetrics());
+    }
+
+    /**
+     * 获取只读副本的复制延迟和读路由统计（需要配置 audit.datasource.replica）
+     *
+     * @return 副本指标
+     */
+    @GetMapping("/replica")
+    public ResponseEntity<ReplicaMetrics> getReplicaMetrics() {
+        ReplicaLagMonitor monitor = replicaLagMonitor.getIfAvailable();
+        if (monitor == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(monitor.getMetrics());
+    }
+}
@@ -0,0 +1,70 @@
+package com.duan.controller;
+
+import com.duan.reconcile.AuditReconciler;
+import com.duan.reconcile.ReconciliationReport;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/audit/reconciliation")
+public class AuditReconciliationController {
+
+    private final ObjectProvider<AuditReconciler> auditReconciler;
+
+    public AuditReconciliationController(ObjectProvider<AuditReconciler> auditReconciler) {
+        this.auditReconciler = auditReconciler;
+    }
+
+    /**
+     * 获取各表最近一次的对账报告（需要开启 audit.reconciliation.enabled）
+     *
+     * @return 对账报告列表
+     */
+    @GetMapping
+    public ResponseEntity<List<ReconciliationReport>> getReports() {
+        AuditReconciler reconciler = auditReconciler.getIfAvailable();
+        if (reconciler == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(reconciler.getReports());
+    }
+
+    /**
+     * 获取一张表最近一次的对账报告
+     *
+     * @param tableName 表名
+     * @return 对账报告，没有对账过时返回 404
+     */
+    @GetMapping("/{tableName}")
+    public ResponseEntity<ReconciliationReport> getReport(@PathVariable String tableName) {
+        AuditReconciler reconciler = auditReconciler.getIfAvailable();
+        if (reconciler == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        ReconciliationReport report = reconciler.getReport(tableName);
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 在后台立即对账一张表，进度和结果通过报告接口查看
+     *
+     * @param tableName 表名
+     * @return 已开始返回 202，已有对账在运行时返回 409
+     */
+    @PostMapping("/{tableName}")
+    public ResponseEntity<Void> reconcile(@PathVariable String tableName) {
+        AuditReconciler reconciler = auditReconciler.getIfAvailable();
+        if (reconciler == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.status(reconciler.submit(tableName) ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).build();
+    }
+}
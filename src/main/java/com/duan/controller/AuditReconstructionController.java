@@ -0,0 +1,71 @@
+package com.duan.controller;
+
+import com.duan.reconstruct.AuditStateReconstructor;
+import com.duan.reconstruct.RowState;
+import com.duan.utils.JsonUtils;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/audit/state")
+public class AuditReconstructionController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final AuditStateReconstructor auditStateReconstructor;
+
+    public AuditReconstructionController(AuditStateReconstructor auditStateReconstructor) {
+        this.auditStateReconstructor = auditStateReconstructor;
+    }
+
+    /**
+     * 按审计日志重建某一行在指定时间点的数据
+     *
+     * @param tableName       表名
+     * @param primaryKeyValue 主键值
+     * @param time            时间点（含）
+     * @return 该时间点的行数据，行不存在时 exists 为 false
+     */
+    @GetMapping("/row")
+    public ResponseEntity<RowState> getRowState(
+            @RequestParam String tableName,
+            @RequestParam String primaryKeyValue,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime time) {
+
+        return ResponseEntity.ok(auditStateReconstructor.reconstructRow(tableName, primaryKeyValue, time));
+    }
+
+    /**
+     * 按审计日志重建整张表在指定时间点存在的所有行，以 NDJSON 逐行输出
+     *
+     * @param tableName 表名
+     * @param time      时间点（含）
+     * @return 每行一个 JSON 对象，行之间没有顺序保证
+     */
+    @GetMapping("/table")
+    public ResponseEntity<StreamingResponseBody> getTableState(
+            @RequestParam String tableName,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime time) {
+
+        StreamingResponseBody body = out -> auditStateReconstructor.reconstructTable(tableName, time, rowState -> {
+            try {
+                out.write(JsonUtils.toJson(rowState).getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+            } catch (IOException e) {
+                // 客户端已断开，停止重建
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+}
@@ -0,0 +1,53 @@
+package com.duan.controller;
+
+import com.duan.enums.StatsGranularity;
+import com.duan.repository.AuditStatsRepository;
+import com.duan.stats.AuditStatsBucket;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/audit")
+public class AuditStatsController {
+
+    private final AuditStatsRepository auditStatsRepository;
+
+    public AuditStatsController(AuditStatsRepository auditStatsRepository) {
+        this.auditStatsRepository = auditStatsRepository;
+    }
+
+    /**
+     * 按时间桶查询审计变更统计
+     *
+     * @param startTime       开始时间（包含）
+     * @param endTime         结束时间（不包含）
+     * @param granularity     时间粒度：MINUTE/HOUR/DAY
+     * @param tableName       表名（可选）
+     * @param operationType   操作类型（可选）
+     * @param operator        操作人（可选）
+     * @param groupByOperator 是否按操作人拆分
+     * @return 各时间桶的变更次数
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<AuditStatsBucket>> getAuditStats(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(defaultValue = "MINUTE") StatsGranularity granularity,
+            @RequestParam(required = false) String tableName,
+            @RequestParam(required = false) String operationType,
+            @RequestParam(required = false) String operator,
+            @RequestParam(defaultValue = "false") boolean groupByOperator) {
+
+        List<AuditStatsBucket> buckets = auditStatsRepository.query(granularity, startTime, endTime,
+                tableName, operationType, operator, groupByOperator);
+
+        return ResponseEntity.ok(buckets);
+    }
+}
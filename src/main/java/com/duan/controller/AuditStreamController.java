@@ -0,0 +1,87 @@
+package com.duan.controller;
+
+import com.duan.config.AuditConfig;
+import com.duan.entity.DataAuditLog;
+import com.duan.event.AuditEventBus;
+import com.duan.event.AuditSubscription;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+@RestController
+@RequestMapping("/api/audit")
+public class AuditStreamController {
+
+    private final AuditEventBus auditEventBus;
+    private final AuditConfig auditConfig;
+
+    public AuditStreamController(AuditEventBus auditEventBus, AuditConfig auditConfig) {
+        this.auditEventBus = auditEventBus;
+        this.auditConfig = auditConfig;
+    }
+
+    /**
+     * 以 Server-Sent Events 实时推送新落库的审计日志
+     * <p>
+     * 每个连接有独立的有界缓冲区，客户端消费过慢时丢弃最旧的日志，
+     * 并通过 lag 事件告知累计丢弃条数
+     *
+     * @param tables     只推送这些表（可选）
+     * @param operations 只推送这些操作类型（可选）
+     * @return SSE 连接
+     */
+    @GetMapping(value = "/stream", produces = "text/event-stream")
+    public SseEmitter streamAuditLogs(
+            @RequestParam(required = false) List<String> tables,
+            @RequestParam(required = false) List<String> operations) {
+
+        AuditConfig.Stream streamConfig = auditConfig.getStream();
+        Predicate<DataAuditLog> filter = log ->
+                (tables == null || tables.isEmpty() || tables.contains(log.getTableName()))
+                        && (operations == null || operations.isEmpty() || operations.contains(log.getOperationType()));
+
+        SseEmitter emitter = new SseEmitter(streamConfig.getSseTimeoutMs());
+        AtomicLong reportedDropped = new AtomicLong();
+        AuditSubscription[] holder = new AuditSubscription[1];
+        holder[0] = auditEventBus.trySubscribe("sse-" + UUID.randomUUID(), streamConfig.getBufferSize(), filter, logs -> {
+            try {
+                // 订阅注册后、holder 赋值前就可能收到日志
+                long dropped = holder[0] != null ? holder[0].getDropped() : 0;
+                if (dropped > reportedDropped.get()) {
+                    emitter.send(SseEmitter.event().name("lag").data(Map.of("dropped", dropped)));
+                    reportedDropped.set(dropped);
+                }
+                for (DataAuditLog log : logs) {
+                    SseEmitter.SseEventBuilder event = SseEmitter.event().name("audit").data(log);
+                    if (log.getId() != null) {
+                        event.id(String.valueOf(log.getId()));
+                    }
+                    emitter.send(event);
+                }
+            } catch (IOException e) {
+                // 客户端已断开，抛出后订阅自动取消
+                throw new UncheckedIOException(e);
+            }
+        }, streamConfig.getMaxSubscribers());
+        if (holder[0] == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many audit stream subscribers");
+        }
+
+        emitter.onCompletion(holder[0]::cancel);
+        emitter.onTimeout(holder[0]::cancel);
+        emitter.onError(e -> holder[0].cancel());
+        return emitter;
+    }
+}
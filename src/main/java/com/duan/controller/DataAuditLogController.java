@@ -1,51 +1,170 @@
 package com.duan.controller;
 
+import com.duan.compaction.AuditSnapshot;
+import com.duan.compaction.AuditSnapshotCompactor;
 import com.duan.entity.DataAuditLog;
-import com.duan.repository.DataAuditLogRepository;
+import com.duan.enums.ImageSide;
+import com.duan.index.AuditValueIndex;
+import com.duan.reader.AuditLogReader;
+import com.duan.registry.AuditedTable;
+import com.duan.registry.AuditedTableRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/audit")
 public class DataAuditLogController {
 
-    private final DataAuditLogRepository dataAuditLogRepository;
+    private final AuditLogReader auditLogReader;
+    private final AuditedTableRegistry auditedTableRegistry;
+    private final ObjectProvider<AuditValueIndex> auditValueIndex;
+    private final ObjectProvider<AuditSnapshotCompactor> auditSnapshotCompactor;
 
-    public DataAuditLogController(DataAuditLogRepository dataAuditLogRepository) {
-        this.dataAuditLogRepository = dataAuditLogRepository;
+    public DataAuditLogController(AuditLogReader auditLogReader,
+                                  AuditedTableRegistry auditedTableRegistry,
+                                  ObjectProvider<AuditValueIndex> auditValueIndex,
+                                  ObjectProvider<AuditSnapshotCompactor> auditSnapshotCompactor) {
+        this.auditLogReader = auditLogReader;
+        this.auditedTableRegistry = auditedTableRegistry;
+        this.auditValueIndex = auditValueIndex;
+        this.auditSnapshotCompactor = auditSnapshotCompactor;
     }
 
     /**
      * 查询指定表名和时间范围的审计日志
      *
-     * @param tableName 表名
-     * @param startTime 开始时间
-     * @param endTime   结束时间
-     * @param page      当前页码（从0开始）
-     * @param size      每页大小
-     * @return 分页的审计日志
+     * @param tableName     表名
+     * @param startTime     开始时间
+     * @param endTime       结束时间
+     * @param changedColumn 只查询变更过该列的 UPDATE 记录（可选）
+     * @param page          当前页码（从0开始）
+     * @param size          每页大小
+     * @return 分页的审计日志，按操作时间倒序
      */
     @GetMapping("/logs")
     public ResponseEntity<Page<DataAuditLog>> getAuditLogs(
             @RequestParam String tableName,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) String changedColumn,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
         Pageable pageable = PageRequest.of(page, size);
-        Page<DataAuditLog> auditLogs = dataAuditLogRepository.findByTableNameAndTimeRange(
-                tableName, startTime, endTime, pageable);
+        Page<DataAuditLog> auditLogs = StringUtils.hasText(changedColumn)
+                ? auditLogReader.findByTableNameAndChangedColumn(tableName, changedColumn, startTime, endTime, pageable)
+                : auditLogReader.findByTableNameAndTimeRange(tableName, startTime, endTime, pageable);
+
+        return ResponseEntity.ok(auditLogs);
+    }
+
+    /**
+     * 查询某张表或某个操作人最近的审计日志，开启 audit.recent-cache.enabled 时优先由内存缓存返回
+     *
+     * @param tableName 表名，与 operator 二选一
+     * @param operator  操作人
+     * @param limit     最多返回条数
+     * @return 按操作时间倒序的审计日志
+     */
+    @GetMapping("/logs/recent")
+    public ResponseEntity<List<DataAuditLog>> getRecentAuditLogs(
+            @RequestParam(required = false) String tableName,
+            @RequestParam(required = false) String operator,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        if (StringUtils.hasText(tableName)) {
+            return ResponseEntity.ok(auditLogReader.findRecentByTableName(tableName, limit));
+        }
+        if (StringUtils.hasText(operator)) {
+            return ResponseEntity.ok(auditLogReader.findRecentByOperator(operator, limit));
+        }
+        return ResponseEntity.badRequest().build();
+    }
+
+    /**
+     * 查询某一行的变更历史，开启冷归档时同时包含已归档的记录
+     *
+     * @param tableName       表名
+     * @param primaryKeyValue 主键值
+     * @param limit           最多返回条数
+     * @return 按操作时间倒序的审计日志
+     */
+    @GetMapping("/logs/row")
+    public ResponseEntity<List<DataAuditLog>> getRowHistory(
+            @RequestParam String tableName,
+            @RequestParam String primaryKeyValue,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        List<DataAuditLog> auditLogs = auditLogReader.findByTableNameAndPrimaryKey(
+                tableName, primaryKeyValue, limit);
+
+        return ResponseEntity.ok(auditLogs);
+    }
+
+    /**
+     * 查询某一行的周期快照（需要开启 audit.compaction.enabled）
+     *
+     * @param tableName       表名
+     * @param primaryKeyValue 主键值
+     * @param startTime       开始时间
+     * @param endTime         结束时间
+     * @return 与时间范围相交的快照，按周期先后排序
+     */
+    @GetMapping("/logs/row/snapshots")
+    public ResponseEntity<List<AuditSnapshot>> getRowSnapshots(
+            @RequestParam String tableName,
+            @RequestParam String primaryKeyValue,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+
+        AuditSnapshotCompactor compactor = auditSnapshotCompactor.getIfAvailable();
+        if (compactor == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        return ResponseEntity.ok(compactor.findSnapshots(tableName, primaryKeyValue, startTime, endTime));
+    }
+
+    /**
+     * 按列值检索审计日志（需要开启 audit.value-index.enabled）
+     *
+     * @param tableName 表名
+     * @param column    列名
+     * @param value     列值
+     * @param side      匹配前镜像(OLD)、后镜像(NEW)或任一镜像(ANY)
+     * @param limit     最多返回条数
+     * @return 按 id 倒序的审计日志
+     */
+    @GetMapping("/logs/search")
+    public ResponseEntity<List<DataAuditLog>> searchAuditLogsByValue(
+            @RequestParam String tableName,
+            @RequestParam String column,
+            @RequestParam String value,
+            @RequestParam(defaultValue = "ANY") ImageSide side,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        AuditValueIndex index = auditValueIndex.getIfAvailable();
+        if (index == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        List<Long> ids = index.search(tableName, column, value, side, limit);
+        List<DataAuditLog> auditLogs = auditLogReader.findAllById(ids);
+        auditLogs.sort(Comparator.comparing(DataAuditLog::getId).reversed());
 
         return ResponseEntity.ok(auditLogs);
     }
@@ -57,7 +176,18 @@ public class DataAuditLogController {
      */
     @GetMapping("/tables")
     public ResponseEntity<List<String>> getAllAuditedTables() {
-        List<String> tables = dataAuditLogRepository.findAllAuditedTables();
+        List<String> tables = auditedTableRegistry.getAuditedTableNames();
+        return ResponseEntity.ok(tables);
+    }
+
+    /**
+     * 获取所有已经审计的表及其首次/最近审计时间、近似记录数
+     *
+     * @return 已审计表列表
+     */
+    @GetMapping("/tables/details")
+    public ResponseEntity<List<AuditedTable>> getAuditedTableDetails() {
+        List<AuditedTable> tables = auditedTableRegistry.getAuditedTables();
         return ResponseEntity.ok(tables);
     }
 }
@@ -1,5 +1,7 @@
 package com.duan.entity;
 
+import com.duan.utils.AuditImageSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Data;
 
 import javax.persistence.*;
@@ -9,18 +11,22 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "sys_data_audit_log")
 public class DataAuditLog {
+    // 创建审计日志时由 AuditIdGenerator 在本地分配，按时间递增
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     private String tableName;        // 表名
     private String operationType;    // 操作类型：INSERT/UPDATE/DELETE
-    //    private String primaryKeyName;   // 主键名
-//    private String primaryKeyValue;  // 主键值
-    private String oldValue;         // 修改前的值(JSON)
-    private String newValue;         // 修改后的值(JSON)
+    private String primaryKeyName;   // 主键名，联合主键以逗号分隔
+    private String primaryKeyValue;  // 主键值，与主键名一一对应
+    @JsonSerialize(using = AuditImageSerializer.class)
+    private String oldValue;         // 修改前的值(JSON 对象，或引用表结构版本的位置数组)
+    @JsonSerialize(using = AuditImageSerializer.class)
+    private String newValue;         // 修改后的值(同上)
     private String operator;         // 操作人
     private LocalDateTime operateTime; // 操作时间
+    private Long rowSequence;        // 同一行（表名 + 主键值）的变更序号，单调递增，由分区写入分配
+    private String changedColumns;   // UPDATE 中值有变化的列(JSON 数组)，用于按列检索
 
     @Column(length = 500)
     private String remark;
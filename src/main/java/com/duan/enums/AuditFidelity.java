@@ -0,0 +1,11 @@
+package com.duan.enums;
+
+/**
+ * 审计记录的完整程度，按降级顺序排列
+ */
+public enum AuditFidelity {
+    FULL,       // 完整前后镜像
+    DIFF,       // 只记录变化的列和主键，能从 SQL 值推导的镜像不再回表查询
+    KEYS_ONLY,  // 只记录主键，不做任何镜像查询
+    DROP        // 不记录，只计数
+}
@@ -0,0 +1,19 @@
+package com.duan.enums;
+
+/**
+ * 快照压缩后原始审计日志的处理方式
+ */
+public enum CompactionRawPolicy {
+    /**
+     * 保留在热表中
+     */
+    KEEP,
+    /**
+     * 与快照在同一事务中从热表删除
+     */
+    DELETE,
+    /**
+     * 移入冷归档（需要开启 audit.archive.enabled，否则保留在热表中）
+     */
+    ARCHIVE
+}
@@ -0,0 +1,5 @@
+package com.duan.enums;
+
+public enum ImageSide {
+    OLD, NEW, ANY
+}
@@ -0,0 +1,9 @@
+package com.duan.enums;
+
+/**
+ * JPA 写操作的审计采集方式
+ */
+public enum JpaCaptureMode {
+    ASPECT,             // 拦截 EntityManager.persist/merge/remove，前后镜像回表查询
+    HIBERNATE_LISTENER  // Hibernate PostInsert/PostUpdate/PostDelete 事件，镜像取自持久化上下文
+}
@@ -0,0 +1,11 @@
+package com.duan.enums;
+
+/**
+ * 大字段（TEXT/BLOB/JSON 等）在审计镜像中的记录方式
+ */
+public enum LargeColumnPolicy {
+    INLINE,         // 原样记录
+    TRUNCATE,       // 只保留前 N 字节
+    HASH,           // 只记录内容的 SHA-256
+    EXTERNALIZE     // 超过 N 字节时内容写入外部按内容寻址的存储，镜像中只记录引用
+}
@@ -0,0 +1,7 @@
+package com.duan.enums;
+
+public enum MismatchType {
+    MISSING_IN_AUDIT,   // 业务表中存在，审计日志重建的结果中不存在
+    MISSING_IN_LIVE,    // 审计日志重建的结果中存在，业务表中不存在
+    VALUE_MISMATCH      // 两边都存在但列值不同
+}
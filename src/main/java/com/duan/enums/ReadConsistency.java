@@ -0,0 +1,9 @@
+package com.duan.enums;
+
+/**
+ * 审计日志查询的一致性要求
+ */
+public enum ReadConsistency {
+    EVENTUAL,   // 副本延迟在允许范围内时读副本
+    STRONG      // 始终读主库
+}
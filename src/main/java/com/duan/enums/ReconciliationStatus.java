@@ -0,0 +1,10 @@
+package com.duan.enums;
+
+public enum ReconciliationStatus {
+    RUNNING,
+    CONSISTENT,     // 所有区间的校验和一致
+    INCONSISTENT,   // 存在不一致的行
+    INCOMPLETE,     // 超过最长时间，部分区间未校验，已校验的区间一致
+    SKIPPED,        // 表结构不支持对账（如联合主键、非整数主键）
+    FAILED
+}
@@ -0,0 +1,39 @@
+package com.duan.enums;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum StatsGranularity {
+    MINUTE("%Y-%m-%d %H:%i:00", ChronoUnit.MINUTES),
+    HOUR("%Y-%m-%d %H:00:00", ChronoUnit.HOURS),
+    DAY("%Y-%m-%d 00:00:00", ChronoUnit.DAYS);
+
+    private final String bucketFormat;
+    private final ChronoUnit unit;
+
+    StatsGranularity(String bucketFormat, ChronoUnit unit) {
+        this.bucketFormat = bucketFormat;
+        this.unit = unit;
+    }
+
+    /**
+     * MySQL DATE_FORMAT 格式，用于把分钟桶归并到更粗的时间粒度
+     */
+    public String getBucketFormat() {
+        return bucketFormat;
+    }
+
+    /**
+     * 时间所在周期的起点
+     */
+    public LocalDateTime truncate(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /**
+     * 周期起点之后的下一个周期起点
+     */
+    public LocalDateTime next(LocalDateTime periodStart) {
+        return periodStart.plus(1, unit);
+    }
+}
@@ -0,0 +1,145 @@
+package com.duan.event;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.metrics.SubscriptionMetrics;
+import com.duan.service.TransactionAwareEnhancedAuditService.AuditLogCommittedEvent;
+import com.duan.service.TransactionAwareEnhancedAuditService.AuditLogsCommittedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 进程内的审计事件总线
+ * <p>
+ * 发布方只做内存操作：先同步回调 {@link AuditLogListener}（统计、注册表等轻量记账），
+ * 再把日志放入每个订阅者自己的有界缓冲区后立即返回，订阅者在独立线程上消费。
+ * Spring 的 {@link AuditLogCommittedEvent}/{@link AuditLogsCommittedEvent} 也通过一个订阅者异步发布，
+ * 慢的 @EventListener 不再拖慢审计写入路径。
+ */
+@Slf4j
+public class AuditEventBus {
+    private final List<AuditLogListener> listeners;
+    private final List<AuditSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger externalSubscriptionCount = new AtomicInteger();
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private final ExecutorService dispatchExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "audit-event-dispatch-" + threadIndex.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AuditEventBus(List<AuditLogListener> listeners,
+                         ApplicationEventPublisher eventPublisher,
+                         int applicationEventBufferSize) {
+        this.listeners = listeners;
+        register("application-events", applicationEventBufferSize, log -> true, false, logs -> {
+            if (logs.size() == 1) {
+                eventPublisher.publishEvent(new AuditLogCommittedEvent(this, logs.get(0)));
+            } else {
+                eventPublisher.publishEvent(new AuditLogsCommittedEvent(this, List.copyOf(logs)));
+            }
+        });
+    }
+
+    /**
+     * 发布已落库的审计日志，不会阻塞
+     */
+    public void publish(List<DataAuditLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        for (AuditLogListener listener : listeners) {
+            try {
+                listener.onAuditLogsCommitted(logs);
+            } catch (Exception e) {
+                log.error("Audit log listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        }
+        for (AuditSubscription subscription : subscriptions) {
+            subscription.offer(logs);
+        }
+    }
+
+    /**
+     * 订阅审计日志
+     *
+     * @param name     订阅名称，用于指标展示
+     * @param capacity 缓冲区容量，写满后丢弃最旧的日志并计数
+     * @param filter   过滤条件
+     * @param consumer 批量消费回调，在投递线程上执行，抛出异常时订阅自动取消
+     */
+    public AuditSubscription subscribe(String name,
+                                       int capacity,
+                                       Predicate<DataAuditLog> filter,
+                                       Consumer<List<DataAuditLog>> consumer) {
+        externalSubscriptionCount.incrementAndGet();
+        return register(name, capacity, filter, true, consumer);
+    }
+
+    /**
+     * 在外部订阅数未达到上限时订阅审计日志，名额先原子地占用再注册，并发订阅不会超出上限。
+     * 总线内部的订阅（如 Spring 事件发布）不占名额
+     *
+     * @param maxSubscriptions 外部订阅数上限
+     * @return 订阅，已达上限时返回 null
+     */
+    public AuditSubscription trySubscribe(String name,
+                                          int capacity,
+                                          Predicate<DataAuditLog> filter,
+                                          Consumer<List<DataAuditLog>> consumer,
+                                          int maxSubscriptions) {
+        int current;
+        do {
+            current = externalSubscriptionCount.get();
+            if (current >= maxSubscriptions) {
+                return null;
+            }
+        } while (!externalSubscriptionCount.compareAndSet(current, current + 1));
+        return register(name, capacity, filter, true, consumer);
+    }
+
+    private AuditSubscription register(String name,
+                                       int capacity,
+                                       Predicate<DataAuditLog> filter,
+                                       boolean external,
+                                       Consumer<List<DataAuditLog>> consumer) {
+        AuditSubscription[] holder = new AuditSubscription[1];
+        holder[0] = new AuditSubscription(name, capacity, filter, consumer, dispatchExecutor, () -> {
+            // 只有真正移除的那一次归还名额，重复取消不会多减
+            if (subscriptions.remove(holder[0]) && external) {
+                externalSubscriptionCount.decrementAndGet();
+            }
+        });
+        subscriptions.add(holder[0]);
+        return holder[0];
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * 外部订阅数，不含总线内部的订阅
+     */
+    public int getExternalSubscriptionCount() {
+        return externalSubscriptionCount.get();
+    }
+
+    public List<SubscriptionMetrics> getSubscriptionMetrics() {
+        return subscriptions.stream().map(AuditSubscription::getMetrics).toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.forEach(AuditSubscription::cancel);
+        dispatchExecutor.shutdown();
+    }
+}
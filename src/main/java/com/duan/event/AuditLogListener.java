@@ -0,0 +1,13 @@
+package com.duan.event;
+
+import com.duan.entity.DataAuditLog;
+
+import java.util.List;
+
+/**
+ * 在审计日志落库后同步回调，只适合轻量的内存操作；
+ * 耗时的消费方应通过 {@link AuditEventBus#subscribe} 使用独立缓冲区异步消费
+ */
+public interface AuditLogListener {
+    void onAuditLogsCommitted(List<DataAuditLog> logs);
+}
@@ -0,0 +1,124 @@
+package com.duan.event;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.metrics.SubscriptionMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 事件总线上的一个订阅：独立的有界缓冲区 + 按需调度的投递任务，
+ * 慢消费者只会让自己的缓冲区积压或丢弃，不会阻塞发布方和其他订阅者
+ */
+@Slf4j
+public class AuditSubscription {
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final String name;
+    private final Predicate<DataAuditLog> filter;
+    private final Consumer<List<DataAuditLog>> consumer;
+    private final RingBuffer<DataAuditLog> buffer;
+    private final Executor executor;
+    private final Runnable onCancel;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean cancelled;
+
+    AuditSubscription(String name,
+                      int capacity,
+                      Predicate<DataAuditLog> filter,
+                      Consumer<List<DataAuditLog>> consumer,
+                      Executor executor,
+                      Runnable onCancel) {
+        this.name = name;
+        this.filter = filter;
+        this.consumer = consumer;
+        this.buffer = new RingBuffer<>(capacity);
+        this.executor = executor;
+        this.onCancel = onCancel;
+    }
+
+    void offer(List<DataAuditLog> logs) {
+        if (cancelled) {
+            return;
+        }
+        boolean accepted = false;
+        for (DataAuditLog log : logs) {
+            if (filter.test(log)) {
+                if (buffer.offer(log)) {
+                    dropped.incrementAndGet();
+                }
+                accepted = true;
+            }
+        }
+        if (accepted) {
+            schedule();
+        }
+    }
+
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            onCancel.run();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public SubscriptionMetrics getMetrics() {
+        SubscriptionMetrics metrics = new SubscriptionMetrics();
+        metrics.setName(name);
+        metrics.setCapacity(buffer.capacity());
+        metrics.setBuffered(buffer.size());
+        metrics.setDelivered(delivered.get());
+        metrics.setDropped(dropped.get());
+        return metrics;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (Exception e) {
+                scheduled.set(false);
+                log.error("Schedule audit subscription {} failed", name, e);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            List<DataAuditLog> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            while (!cancelled && buffer.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+                try {
+                    consumer.accept(batch);
+                    delivered.addAndGet(batch.size());
+                } catch (Exception e) {
+                    log.warn("Audit subscription {} failed to consume, cancelling", name, e);
+                    cancel();
+                }
+                batch.clear();
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        // 释放调度标记后仍有新数据到达时重新调度，避免遗漏
+        if (!cancelled && buffer.size() > 0) {
+            schedule();
+        }
+    }
+}
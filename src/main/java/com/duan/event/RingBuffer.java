@@ -0,0 +1,50 @@
+package com.duan.event;
+
+import java.util.List;
+
+/**
+ * 定长环形缓冲区，写满后覆盖最旧的元素
+ */
+class RingBuffer<T> {
+    private final Object[] elements;
+    private int head;
+    private int size;
+
+    RingBuffer(int capacity) {
+        this.elements = new Object[capacity];
+    }
+
+    /**
+     * 写入一个元素，缓冲区已满时丢弃最旧的元素并返回 true
+     */
+    synchronized boolean offer(T element) {
+        boolean overwritten = size == elements.length;
+        elements[(head + size) % elements.length] = element;
+        if (overwritten) {
+            head = (head + 1) % elements.length;
+        } else {
+            size++;
+        }
+        return overwritten;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized int drainTo(List<T> target, int maxElements) {
+        int drained = Math.min(size, maxElements);
+        for (int i = 0; i < drained; i++) {
+            target.add((T) elements[head]);
+            elements[head] = null;
+            head = (head + 1) % elements.length;
+        }
+        size -= drained;
+        return drained;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,18 @@
+package com.duan.id;
+
+/**
+ * 审计日志 id 的生成方式，在创建审计日志时调用，写入时不再依赖数据库自增
+ * <p>
+ * 生成的 id 必须全局唯一并随时间递增，各分片、落盘文件中的记录才能直接按 id 归并排序
+ */
+public interface AuditIdGenerator {
+    long nextId();
+
+    /**
+     * 不大于指定 id 之前 windowMs 毫秒内生成的所有 id 的下界，用于按 id 续读时覆盖晚提交的事务。
+     * 无法由 id 推算时间时返回 0（从头读）
+     */
+    default long lowerBound(long id, long windowMs) {
+        return 0;
+    }
+}
@@ -0,0 +1,78 @@
+package com.duan.id;
+
+/**
+ * 本地生成按时间递增的 64 位 id：41 位毫秒时间戳 + 节点号 + 序号，节点号和序号共 22 位，默认各占 10 位和 12 位
+ * <p>
+ * 不依赖数据库自增，多实例部署时各实例的节点号必须不同。
+ * 时钟小幅回拨时沿用上一次的时间戳继续递增，回拨超过允许范围时拒绝生成，避免与回拨前的 id 重复
+ */
+public class TimeOrderedIdGenerator implements AuditIdGenerator {
+    private static final long EPOCH = 1704067200000L;  // 2024-01-01T00:00:00Z
+    private static final int NODE_AND_SEQUENCE_BITS = 22;
+
+    private final int sequenceBits;
+    private final long sequenceMask;
+    private final long node;
+    private final long maxClockBackwardMs;
+    private long lastTimestamp = -1;
+    private long sequence;
+
+    /**
+     * @param node               节点号，不能超过 nodeBits 位
+     * @param nodeBits           节点号位数（0-22），其余为序号位数，决定每毫秒最多生成的 id 数
+     * @param maxClockBackwardMs 允许的时钟回拨毫秒数
+     */
+    public TimeOrderedIdGenerator(long node, int nodeBits, long maxClockBackwardMs) {
+        if (nodeBits < 0 || nodeBits > NODE_AND_SEQUENCE_BITS) {
+            throw new IllegalArgumentException("nodeBits must be between 0 and " + NODE_AND_SEQUENCE_BITS + ": "
+                    + nodeBits);
+        }
+        long maxNode = (1L << nodeBits) - 1;
+        if (node < 0 || node > maxNode) {
+            throw new IllegalArgumentException("node must be between 0 and " + maxNode + ": " + node);
+        }
+        this.sequenceBits = NODE_AND_SEQUENCE_BITS - nodeBits;
+        this.sequenceMask = (1L << sequenceBits) - 1;
+        this.node = node;
+        this.maxClockBackwardMs = maxClockBackwardMs;
+    }
+
+    @Override
+    public synchronized long nextId() {
+        long timestamp = System.currentTimeMillis();
+        if (timestamp < lastTimestamp) {
+            long backward = lastTimestamp - timestamp;
+            if (backward > maxClockBackwardMs) {
+                throw new IllegalStateException("Clock moved backwards by " + backward + " ms, refusing to generate id");
+            }
+            // 回拨在允许范围内，沿用上一次的时间戳，保证单调递增
+            timestamp = lastTimestamp;
+        }
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & sequenceMask;
+            if (sequence == 0) {
+                // 同一毫秒内序号用完，等到下一毫秒
+                timestamp = waitUntilAfter(lastTimestamp);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << NODE_AND_SEQUENCE_BITS) | (node << sequenceBits) | sequence;
+    }
+
+    @Override
+    public long lowerBound(long id, long windowMs) {
+        long timestamp = (id >>> NODE_AND_SEQUENCE_BITS) - windowMs;
+        return timestamp > 0 ? timestamp << NODE_AND_SEQUENCE_BITS : 0;
+    }
+
+    private static long waitUntilAfter(long timestamp) {
+        long now = System.currentTimeMillis();
+        while (now <= timestamp) {
+            Thread.onSpinWait();
+            now = System.currentTimeMillis();
+        }
+        return now;
+    }
+}
@@ -0,0 +1,18 @@
+package com.duan.image;
+
+/**
+ * 按内容寻址的外部存储，保存被外置的大字段内容，可以声明同类型的 Bean 替换默认的本地目录实现
+ */
+public interface ExternalContentStore {
+    /**
+     * 保存内容，相同内容只保存一份
+     *
+     * @param sha256 内容的 SHA-256（十六进制）
+     */
+    void put(String sha256, byte[] content);
+
+    /**
+     * 读取内容，不存在时返回 null
+     */
+    byte[] get(String sha256);
+}
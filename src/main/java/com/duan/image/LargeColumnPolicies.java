@@ -0,0 +1,191 @@
+package com.duan.image;
+
+import com.duan.config.AuditConfig;
+import com.duan.enums.LargeColumnPolicy;
+import com.duan.metadata.ColumnMetadata;
+import com.duan.row.Row;
+import com.duan.row.RowSchema;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * 按 {@link ColumnMetadata#getDataType()} 推导大字段的记录策略
+ * <p>
+ * 镜像查询只投影需要的列，截断和哈希直接在 SQL 里完成，大字段内容不再整体读到内存；
+ * 不经过查询得到的镜像（SQL 字面量、JPA 实体状态等）在生成审计日志前按同样的策略处理。
+ * 处理结果带有前缀，重复处理不会改变结果
+ */
+public class LargeColumnPolicies {
+    public static final String HASH_PREFIX = "sha256:";
+    public static final String EXTERNAL_PREFIX = "external:sha256:";
+
+    private static final Set<String> TEXT_TYPES = Set.of("text", "mediumtext", "longtext", "json");
+    private static final Set<String> BINARY_TYPES = Set.of("blob", "mediumblob", "longblob", "binary", "varbinary");
+
+    private final AuditConfig auditConfig;
+    private final ExternalContentStore externalContentStore;
+
+    public LargeColumnPolicies(AuditConfig auditConfig, ExternalContentStore externalContentStore) {
+        this.auditConfig = auditConfig;
+        this.externalContentStore = externalContentStore;
+    }
+
+    public LargeColumnPolicy policyOf(String tableName, ColumnMetadata column) {
+        AuditConfig.LargeColumns config = auditConfig.getLargeColumns();
+        Map<String, LargeColumnPolicy> overrides = config.getColumns() != null ? config.getColumns().get(tableName) : null;
+        if (overrides != null && overrides.containsKey(column.getColumnName())) {
+            return overrides.get(column.getColumnName());
+        }
+        String dataType = column.getDataType() != null ? column.getDataType().toLowerCase() : "";
+        if (TEXT_TYPES.contains(dataType)) {
+            return config.getTextPolicy();
+        }
+        if (BINARY_TYPES.contains(dataType)) {
+            return config.getBinaryPolicy();
+        }
+        return LargeColumnPolicy.INLINE;
+    }
+
+    /**
+     * 镜像查询的 SELECT 列表：只包含配置的审计列和主键列，截断、哈希的大字段用表达式在库里完成
+     */
+    public String projection(String tableName, Map<String, ColumnMetadata> metadata) {
+        if (metadata.isEmpty()) {
+            return "*";
+        }
+        List<String> includeColumns = auditConfig.getIncludeColumns() != null
+                ? auditConfig.getIncludeColumns().get(tableName)
+                : null;
+        int maxBytes = auditConfig.getLargeColumns().getMaxBytes();
+
+        StringJoiner select = new StringJoiner(", ");
+        for (ColumnMetadata column : metadata.values()) {
+            String name = column.getColumnName();
+            if (includeColumns != null && !includeColumns.isEmpty()
+                    && !includeColumns.contains(name) && !column.isPrimaryKey()) {
+                continue;
+            }
+            String quoted = "`" + name + "`";
+            switch (policyOf(tableName, column)) {
+                case TRUNCATE -> select.add(isBinary(column)
+                        ? String.format("SUBSTRING(%s, 1, %d) AS %s", quoted, maxBytes, quoted)
+                        : String.format("LEFT(%s, %d) AS %s", quoted, maxBytes, quoted));
+                case HASH -> select.add(String.format("CONCAT('%s', SHA2(%s, 256)) AS %s", HASH_PREFIX, quoted, quoted));
+                default -> select.add(quoted);
+            }
+        }
+        return select.toString();
+    }
+
+    /**
+     * 对镜像中的大字段应用记录策略，直接修改并返回传入的行
+     */
+    public Row apply(String tableName, Map<String, ColumnMetadata> metadata, Row image) {
+        if (image == null || metadata.isEmpty()) {
+            return image;
+        }
+        RowSchema schema = image.getSchema();
+        for (int i = 0; i < schema.size(); i++) {
+            // 整数列以 long 保存，不会是大字段
+            if (!image.hasValue(i) || schema.isIntegral(i)) {
+                continue;
+            }
+            Object value = image.get(i);
+            Object applied = apply(tableName, metadata.get(schema.columnName(i)), value);
+            if (applied != value) {
+                image.set(i, applied);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 对单个列值应用记录策略，没有列元数据时原样返回
+     */
+    public Object apply(String tableName, ColumnMetadata column, Object value) {
+        if (column == null || value == null) {
+            return value;
+        }
+        LargeColumnPolicy policy = policyOf(tableName, column);
+        return policy == LargeColumnPolicy.INLINE ? value : apply(policy, value);
+    }
+
+    private Object apply(LargeColumnPolicy policy, Object value) {
+        if (value instanceof String text && (text.startsWith(HASH_PREFIX) || text.startsWith(EXTERNAL_PREFIX))) {
+            return value;
+        }
+        byte[] bytes = toBytes(value);
+        if (bytes == null) {
+            return value;
+        }
+        int maxBytes = auditConfig.getLargeColumns().getMaxBytes();
+        switch (policy) {
+            case TRUNCATE:
+                if (bytes.length <= maxBytes) {
+                    return value;
+                }
+                return value instanceof String
+                        ? truncateUtf8((String) value, maxBytes)
+                        : Arrays.copyOf(bytes, maxBytes);
+            case HASH:
+                return HASH_PREFIX + sha256(bytes);
+            case EXTERNALIZE:
+                if (bytes.length <= maxBytes) {
+                    return value;
+                }
+                String sha256 = sha256(bytes);
+                externalContentStore.put(sha256, bytes);
+                return EXTERNAL_PREFIX + sha256;
+            default:
+                return value;
+        }
+    }
+
+    private static boolean isBinary(ColumnMetadata column) {
+        return column.getDataType() != null && BINARY_TYPES.contains(column.getDataType().toLowerCase());
+    }
+
+    private static byte[] toBytes(Object value) {
+        if (value instanceof byte[] bytes) {
+            return bytes;
+        }
+        if (value instanceof String text) {
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    /**
+     * 按 UTF-8 字节数截断，不截断在多字节字符中间
+     */
+    private static String truncateUtf8(String text, int maxBytes) {
+        int bytes = 0;
+        int end = 0;
+        while (end < text.length()) {
+            int codePoint = text.codePointAt(end);
+            int size = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (bytes + size > maxBytes) {
+                break;
+            }
+            bytes += size;
+            end += Character.charCount(codePoint);
+        }
+        return text.substring(0, end);
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
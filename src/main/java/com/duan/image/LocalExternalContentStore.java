@@ -0,0 +1,56 @@
+package com.duan.image;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 以本地目录作为外部存储，文件按哈希前两位分目录存放
+ */
+public class LocalExternalContentStore implements ExternalContentStore {
+    private final Path directory;
+
+    public LocalExternalContentStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void put(String sha256, byte[] content) {
+        Path target = pathOf(sha256);
+        if (Files.exists(target)) {
+            return;
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), sha256, ".tmp");
+            Files.write(tmp, content);
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // 并发写入了相同内容
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Store external content " + sha256 + " failed", e);
+        }
+    }
+
+    @Override
+    public byte[] get(String sha256) {
+        try {
+            return Files.readAllBytes(pathOf(sha256));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Read external content " + sha256 + " failed", e);
+        }
+    }
+
+    private Path pathOf(String sha256) {
+        return directory.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+}
@@ -0,0 +1,396 @@
+package com.duan.index;
+
+import com.duan.config.AuditConfig;
+import com.duan.entity.DataAuditLog;
+import com.duan.enums.ImageSide;
+import com.duan.reader.AuditLogReader;
+import com.duan.event.AuditLogListener;
+import com.duan.id.AuditIdGenerator;
+import com.duan.utils.AuditLogImages;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 按 (表, 列, 值) 检索审计记录的倒排索引
+ * <p>
+ * 写入先进入内存 {@link Memtable}，写满后由后台线程刷成本地段文件，段数量超过阈值时后台合并。
+ * 内存中尚未刷盘的部分在重启后通过审计日志补录恢复。id 在创建时分配、提交顺序与 id 顺序不完全一致，
+ * 补录从最新段之前一段时间生成的 id 开始，重复补录的记录在查询和合并时去重。
+ */
+@Slf4j
+public class AuditValueIndex implements AuditLogListener {
+    private static final char SEPARATOR = '\u0001';
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".idx";
+    private static final int CATCH_UP_BATCH_SIZE = 1000;
+
+    private final AuditConfig auditConfig;
+    private final AuditLogReader auditLogReader;
+    private final AuditIdGenerator auditIdGenerator;
+    private final AuditLogImages auditLogImages;
+    private final Path directory;
+
+    private volatile Memtable active = new Memtable();
+    private final List<Memtable> flushing = new CopyOnWriteArrayList<>();
+    // 刷盘失败的内存索引，在下一次合并检查时重试
+    private final Queue<Memtable> failedFlushes = new ConcurrentLinkedQueue<>();
+    private volatile List<IndexSegment> segments = Collections.emptyList();
+    // 合并后被替换的段，延迟到下一次合并再关闭，避免影响进行中的查询
+    private final List<IndexSegment> retired = new ArrayList<>();
+    private final Object segmentLock = new Object();
+    private final AtomicLong nextGeneration = new AtomicLong();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "audit-value-index-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AuditValueIndex(AuditConfig auditConfig,
+                           AuditLogReader auditLogReader,
+                           AuditIdGenerator auditIdGenerator,
+                           AuditLogImages auditLogImages) {
+        this.auditConfig = auditConfig;
+        this.auditLogImages = auditLogImages;
+        this.auditLogReader = auditLogReader;
+        this.auditIdGenerator = auditIdGenerator;
+        this.directory = Paths.get(auditConfig.getValueIndex().getDirectory());
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        List<IndexSegment> loaded = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // 上次刷盘或合并中断留下的临时文件
+                    Files.deleteIfExists(file);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    long generation = Long.parseLong(name.substring(
+                            SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    try {
+                        loaded.add(IndexSegment.open(file, generation));
+                    } catch (IOException e) {
+                        log.error("Skip corrupted value index segment: {}", file, e);
+                    }
+                }
+            }
+        }
+        loaded.sort(Comparator.comparingLong(IndexSegment::getGeneration));
+        segments = List.copyOf(loaded);
+        nextGeneration.set(loaded.isEmpty() ? 1 : loaded.get(loaded.size() - 1).getGeneration() + 1);
+
+        if (auditConfig.getValueIndex().isCatchUpOnStartup()) {
+            long maxIndexed = loaded.stream().mapToLong(IndexSegment::getMaxRecordId).max().orElse(0);
+            long indexedUpTo = maxIndexed > 0
+                    ? auditIdGenerator.lowerBound(maxIndexed, auditConfig.getValueIndex().getCatchUpLagMs())
+                    : 0;
+            // 补录单独占一个线程，刷盘线程可以同时把写满的内存索引刷成段文件
+            Thread catchUpThread = new Thread(() -> catchUp(indexedUpTo), "audit-value-index-catch-up");
+            catchUpThread.setDaemon(true);
+            catchUpThread.start();
+        }
+    }
+
+    @Override
+    public void onAuditLogsCommitted(List<DataAuditLog> logs) {
+        logs.forEach(this::index);
+    }
+
+    public void index(DataAuditLog auditLog) {
+        if (auditLog.getId() == null) {
+            return;
+        }
+        List<String> keys;
+        try {
+            keys = extractKeys(auditLog);
+        } catch (Exception e) {
+            log.error("Extract value index keys failed, audit log id: {}", auditLog.getId(), e);
+            return;
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        Memtable memtable = active;
+        while (!memtable.add(keys, auditLog.getId())) {
+            memtable = active;
+        }
+        rotateIfFull(memtable);
+    }
+
+    /**
+     * 查询某列在前镜像、后镜像或任一镜像中等于指定值的审计记录 id，按 id 倒序
+     */
+    public List<Long> search(String tableName, String column, String value, ImageSide side, int limit) {
+        List<String> keys = new ArrayList<>(2);
+        if (side != ImageSide.NEW) {
+            keys.add(key(tableName, column, ImageSide.OLD, value));
+        }
+        if (side != ImageSide.OLD) {
+            keys.add(key(tableName, column, ImageSide.NEW, value));
+        }
+
+        // 读取顺序与刷盘时的发布顺序相反，保证记录在转移过程中不会漏查
+        TreeSet<Long> ids = new TreeSet<>(Comparator.reverseOrder());
+        Memtable current = active;
+        List<Memtable> flushingSnapshot = List.copyOf(flushing);
+        List<IndexSegment> segmentSnapshot = segments;
+        for (String key : keys) {
+            collect(ids, current.get(key));
+            for (Memtable memtable : flushingSnapshot) {
+                collect(ids, memtable.get(key));
+            }
+            for (IndexSegment segment : segmentSnapshot) {
+                try {
+                    collect(ids, segment.get(key));
+                } catch (IOException e) {
+                    log.error("Read value index segment failed: {}", segment.getPath(), e);
+                }
+            }
+        }
+
+        return ids.stream().limit(limit).toList();
+    }
+
+    @Scheduled(fixedDelayString = "${audit.value-index.merge-interval-ms:60000}")
+    public void mergeSegments() {
+        closeRetired();
+        Memtable failed;
+        while ((failed = failedFlushes.poll()) != null) {
+            Memtable memtable = failed;
+            flushExecutor.execute(() -> flushMemtable(memtable));
+        }
+
+        List<IndexSegment> toMerge = segments;
+        if (toMerge.size() <= auditConfig.getValueIndex().getMaxSegments()) {
+            return;
+        }
+
+        long generation = nextGeneration.getAndIncrement();
+        IndexSegment merged;
+        try {
+            List<Iterator<Map.Entry<String, long[]>>> sources = new ArrayList<>();
+            for (IndexSegment segment : toMerge) {
+                sources.add(segment.iterator());
+            }
+            merged = IndexSegment.write(segmentPath(generation), generation, new MergingIterator(sources));
+        } catch (Exception e) {
+            log.error("Merge value index segments failed", e);
+            return;
+        }
+
+        synchronized (segmentLock) {
+            List<IndexSegment> updated = new ArrayList<>(segments);
+            updated.removeAll(toMerge);
+            updated.add(merged);
+            segments = List.copyOf(updated);
+            retired.addAll(toMerge);
+        }
+        log.info("Merged {} value index segments into {}", toMerge.size(), merged.getPath());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Memtable memtable;
+        synchronized (this) {
+            memtable = active;
+            flushing.add(memtable);
+            active = new Memtable();
+        }
+        flushExecutor.execute(() -> flushMemtable(memtable));
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeRetired();
+        segments.forEach(this::closeQuietly);
+    }
+
+    private List<String> extractKeys(DataAuditLog auditLog) {
+        List<String> columns = auditConfig.getValueIndex().getColumns() != null
+                ? auditConfig.getValueIndex().getColumns().get(auditLog.getTableName())
+                : null;
+        List<String> keys = new ArrayList<>();
+        addKeys(keys, auditLog.getTableName(), ImageSide.OLD, auditLogImages.oldImage(auditLog), columns);
+        addKeys(keys, auditLog.getTableName(), ImageSide.NEW, auditLogImages.newImage(auditLog), columns);
+        return keys;
+    }
+
+    private void addKeys(List<String> keys, String tableName, ImageSide side,
+                         Map<String, Object> image, List<String> columns) {
+        int maxValueLength = auditConfig.getValueIndex().getMaxValueLength();
+        image.forEach((column, value) -> {
+            if (value == null || value instanceof Map || value instanceof Collection) {
+                return;
+            }
+            if (columns != null && !columns.isEmpty() && !columns.contains(column)) {
+                return;
+            }
+            String text = String.valueOf(value);
+            if (text.length() <= maxValueLength) {
+                keys.add(key(tableName, column, side, text));
+            }
+        });
+    }
+
+    private static String key(String tableName, String column, ImageSide side, String value) {
+        return tableName + SEPARATOR + column + SEPARATOR + side.name().charAt(0) + SEPARATOR + value;
+    }
+
+    private static void collect(Set<Long> ids, long[] postings) {
+        for (long id : postings) {
+            ids.add(id);
+        }
+    }
+
+    private void rotateIfFull(Memtable memtable) {
+        if (memtable.size() < auditConfig.getValueIndex().getMemtableMaxPostings()) {
+            return;
+        }
+        synchronized (this) {
+            if (active != memtable) {
+                return;
+            }
+            // 先加入待刷盘列表再切换，查询线程任何时刻都能看到这部分数据
+            flushing.add(memtable);
+            active = new Memtable();
+        }
+        flushExecutor.execute(() -> flushMemtable(memtable));
+    }
+
+    private void flushMemtable(Memtable memtable) {
+        memtable.seal();
+        if (memtable.isEmpty()) {
+            flushing.remove(memtable);
+            return;
+        }
+
+        long generation = nextGeneration.getAndIncrement();
+        try {
+            IndexSegment segment = IndexSegment.write(segmentPath(generation), generation, memtable.sortedIterator());
+            synchronized (segmentLock) {
+                List<IndexSegment> updated = new ArrayList<>(segments);
+                updated.add(segment);
+                segments = List.copyOf(updated);
+            }
+            flushing.remove(memtable);
+        } catch (Exception e) {
+            // 刷盘失败时保留在内存中继续提供查询，下一次合并检查时重试
+            log.error("Flush value index memtable failed, max record id: {}", memtable.getMaxRecordId(), e);
+            failedFlushes.add(memtable);
+        }
+    }
+
+    private void catchUp(long indexedUpTo) {
+        long lastId = indexedUpTo;
+        long indexed = 0;
+        try {
+            while (true) {
+                List<DataAuditLog> batch = auditLogReader.findByIdGreaterThan(lastId, CATCH_UP_BATCH_SIZE);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (DataAuditLog auditLog : batch) {
+                    index(auditLog);
+                    lastId = auditLog.getId();
+                }
+                indexed += batch.size();
+                awaitPendingFlushes();
+            }
+            log.info("Value index caught up {} audit logs after id {}", indexed, indexedUpTo);
+        } catch (Exception e) {
+            log.error("Value index catch up failed after id {}", lastId, e);
+        }
+    }
+
+    /**
+     * 补录读取比刷盘快时等待刷盘追上，避免历史记录全部堆积在内存中
+     */
+    private void awaitPendingFlushes() throws InterruptedException {
+        while (flushing.size() > auditConfig.getValueIndex().getMaxPendingFlushes() && !flushExecutor.isShutdown()) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+
+    private Path segmentPath(long generation) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, generation, SEGMENT_SUFFIX));
+    }
+
+    private void closeRetired() {
+        synchronized (segmentLock) {
+            for (IndexSegment segment : retired) {
+                closeQuietly(segment);
+                try {
+                    Files.deleteIfExists(segment.getPath());
+                } catch (IOException e) {
+                    log.warn("Delete merged value index segment failed: {}", segment.getPath(), e);
+                }
+            }
+            retired.clear();
+        }
+    }
+
+    private void closeQuietly(IndexSegment segment) {
+        try {
+            segment.close();
+        } catch (IOException e) {
+            log.warn("Close value index segment failed: {}", segment.getPath(), e);
+        }
+    }
+
+    /**
+     * 多路归并已排序的段，同一个 key 的 id 列表合并去重
+     */
+    private static class MergingIterator implements Iterator<Map.Entry<String, long[]>> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparing(h -> h.entry.getKey()));
+
+        MergingIterator(List<Iterator<Map.Entry<String, long[]>>> sources) {
+            for (Iterator<Map.Entry<String, long[]>> source : sources) {
+                if (source.hasNext()) {
+                    heads.add(new Head(source, source.next()));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<String, long[]> next() {
+            String key = heads.peek().entry.getKey();
+            TreeSet<Long> ids = new TreeSet<>();
+            while (!heads.isEmpty() && heads.peek().entry.getKey().equals(key)) {
+                Head head = heads.poll();
+                collect(ids, head.entry.getValue());
+                if (head.source.hasNext()) {
+                    heads.add(new Head(head.source, head.source.next()));
+                }
+            }
+            return Map.entry(key, ids.stream().mapToLong(Long::longValue).toArray());
+        }
+
+        private record Head(Iterator<Map.Entry<String, long[]>> source, Map.Entry<String, long[]> entry) {
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.duan.index;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 不可变的倒排索引段文件
+ * <p>
+ * 文件布局：按 key 排序的条目区 + 稀疏索引区 + 定长尾部。
+ * 条目：keyLen(varint) key postingCount(varint) postingBytes(varint) 递增 id 的差值(varint)...
+ * 稀疏索引：每 {@link #SPARSE_INTERVAL} 个条目记录一次 key 和文件偏移，常驻内存。
+ * 尾部：maxRecordId(long) entryCount(long) sparseOffset(long) magic(int)
+ */
+class IndexSegment implements Closeable {
+    private static final int MAGIC = 0x41564958;  // "AVIX"
+    private static final int FOOTER_SIZE = 8 + 8 + 8 + 4;
+    private static final int SPARSE_INTERVAL = 64;
+
+    private final Path path;
+    private final long generation;
+    private final FileChannel channel;
+    private final long maxRecordId;
+    private final long entryCount;
+    private final long sparseOffset;
+    private final String[] sparseKeys;
+    private final long[] sparseOffsets;
+
+    private IndexSegment(Path path, long generation) throws IOException {
+        this.path = path;
+        this.generation = generation;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        long size = channel.size();
+        ByteBuffer footer = readFully(size - FOOTER_SIZE, FOOTER_SIZE);
+        this.maxRecordId = footer.getLong();
+        this.entryCount = footer.getLong();
+        this.sparseOffset = footer.getLong();
+        if (footer.getInt() != MAGIC) {
+            channel.close();
+            throw new IOException("Corrupted index segment: " + path);
+        }
+
+        ByteBuffer sparse = readFully(sparseOffset, (int) (size - FOOTER_SIZE - sparseOffset));
+        int sparseCount = readVarInt(sparse);
+        this.sparseKeys = new String[sparseCount];
+        this.sparseOffsets = new long[sparseCount];
+        for (int i = 0; i < sparseCount; i++) {
+            sparseKeys[i] = readString(sparse);
+            sparseOffsets[i] = sparse.getLong();
+        }
+    }
+
+    static IndexSegment open(Path path, long generation) throws IOException {
+        return new IndexSegment(path, generation);
+    }
+
+    /**
+     * 将已排序的条目写成段文件，先写临时文件并刷盘，再原子重命名
+     */
+    static IndexSegment write(Path path, long generation, Iterator<Map.Entry<String, long[]>> sortedEntries)
+            throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long maxRecordId = 0;
+        long entryCount = 0;
+        ByteArrayOutputStream sparse = new ByteArrayOutputStream();
+        DataOutputStream sparseOut = new DataOutputStream(sparse);
+        int sparseCount = 0;
+
+        try (FileOutputStream fileOut = new FileOutputStream(tmp.toFile());
+             CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+             DataOutputStream out = new DataOutputStream(counter)) {
+            ByteArrayOutputStream postingBytes = new ByteArrayOutputStream();
+            while (sortedEntries.hasNext()) {
+                Map.Entry<String, long[]> entry = sortedEntries.next();
+                long[] ids = entry.getValue();
+                if (ids.length == 0) {
+                    continue;
+                }
+                if (entryCount % SPARSE_INTERVAL == 0) {
+                    writeString(sparseOut, entry.getKey());
+                    sparseOut.writeLong(counter.count);
+                    sparseCount++;
+                }
+
+                postingBytes.reset();
+                long previous = 0;
+                for (long id : ids) {
+                    writeVarLong(postingBytes, id - previous);
+                    previous = id;
+                }
+                maxRecordId = Math.max(maxRecordId, ids[ids.length - 1]);
+
+                writeString(out, entry.getKey());
+                writeVarLong(out, ids.length);
+                writeVarLong(out, postingBytes.size());
+                postingBytes.writeTo(out);
+                entryCount++;
+            }
+
+            long sparseOffset = counter.count;
+            writeVarLong(out, sparseCount);
+            sparse.writeTo(out);
+            out.writeLong(maxRecordId);
+            out.writeLong(entryCount);
+            out.writeLong(sparseOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return open(path, generation);
+    }
+
+    /**
+     * 查找 key 对应的记录 id（升序），不存在时返回空数组
+     */
+    long[] get(String key) throws IOException {
+        int block = Arrays.binarySearch(sparseKeys, key);
+        if (block < 0) {
+            block = -block - 2;
+            if (block < 0) {
+                return new long[0];
+            }
+        }
+
+        long start = sparseOffsets[block];
+        long end = block + 1 < sparseOffsets.length ? sparseOffsets[block + 1] : sparseOffset;
+        ByteBuffer buffer = readFully(start, (int) (end - start));
+        while (buffer.hasRemaining()) {
+            int cmp = readString(buffer).compareTo(key);
+            int count = readVarInt(buffer);
+            int length = readVarInt(buffer);
+            if (cmp == 0) {
+                return decodePostings(buffer, count);
+            }
+            if (cmp > 0) {
+                break;
+            }
+            buffer.position(buffer.position() + length);
+        }
+        return new long[0];
+    }
+
+    /**
+     * 顺序遍历全部条目，用于段合并
+     */
+    Iterator<Map.Entry<String, long[]>> iterator() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(path.toFile()), 64 * 1024));
+        return new Iterator<>() {
+            private long remaining = entryCount;
+
+            @Override
+            public boolean hasNext() {
+                if (remaining > 0) {
+                    return true;
+                }
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+                return false;
+            }
+
+            @Override
+            public Map.Entry<String, long[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    byte[] keyBytes = new byte[(int) readVarLong(in)];
+                    in.readFully(keyBytes);
+                    int count = (int) readVarLong(in);
+                    readVarLong(in);
+                    long[] ids = new long[count];
+                    long previous = 0;
+                    for (int i = 0; i < count; i++) {
+                        previous += readVarLong(in);
+                        ids[i] = previous;
+                    }
+                    remaining--;
+                    return Map.entry(new String(keyBytes, StandardCharsets.UTF_8), ids);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    long getMaxRecordId() {
+        return maxRecordId;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of index segment: " + path);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long[] decodePostings(ByteBuffer buffer, int count) {
+        long[] ids = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += readVarLong(buffer);
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[readVarInt(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        return (int) readVarLong(buffer);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.duan.index;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存中的可写索引，写满后封存并刷成 {@link IndexSegment}
+ */
+class Memtable {
+    private final ConcurrentSkipListMap<String, Postings> entries = new ConcurrentSkipListMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger postingCount = new AtomicInteger();
+    private final AtomicLong maxRecordId = new AtomicLong();
+    private boolean sealed;
+
+    /**
+     * 写入一条记录的全部 key，已封存时返回 false，调用方应改写到新的 Memtable
+     */
+    boolean add(List<String> keys, long recordId) {
+        lock.readLock().lock();
+        try {
+            if (sealed) {
+                return false;
+            }
+            for (String key : keys) {
+                entries.computeIfAbsent(key, k -> new Postings()).add(recordId);
+            }
+            postingCount.addAndGet(keys.size());
+            maxRecordId.accumulateAndGet(recordId, Math::max);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 封存后不再接受写入，等待进行中的写入完成
+     */
+    void seal() {
+        lock.writeLock().lock();
+        try {
+            sealed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    long[] get(String key) {
+        Postings postings = entries.get(key);
+        return postings != null ? postings.toSortedArray() : new long[0];
+    }
+
+    int size() {
+        return postingCount.get();
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    long getMaxRecordId() {
+        return maxRecordId.get();
+    }
+
+    /**
+     * 按 key 顺序遍历，仅在封存后调用
+     */
+    Iterator<Map.Entry<String, long[]>> sortedIterator() {
+        Iterator<Map.Entry<String, Postings>> delegate = entries.entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, long[]> next() {
+                Map.Entry<String, Postings> entry = delegate.next();
+                return Map.entry(entry.getKey(), entry.getValue().toSortedArray());
+            }
+        };
+    }
+
+    private static class Postings {
+        private long[] ids = new long[4];
+        private int size;
+
+        synchronized void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        synchronized long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(ids, size);
+            Arrays.sort(sorted);
+            // 启动补录与实时写入可能重复索引同一条记录
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[distinct - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.duan.listener;
+
+import com.duan.config.AuditConfig;
+import com.duan.enums.JpaCaptureMode;
+import com.duan.enums.OperationType;
+import com.duan.row.Row;
+import com.duan.row.RowSchema;
+import com.duan.service.AuditService;
+import com.duan.service.TransactionAwareEnhancedAuditService;
+import com.duan.utils.SQLInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.ComponentType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于 Hibernate 事件的 JPA 审计采集
+ * <p>
+ * 前镜像取自持久化上下文里的加载状态，后镜像取自本次写入的状态数组，不需要额外回表查询；
+ * 脏检查触发的隐式 flush 更新同样会产生 PostUpdate 事件，也能被审计到。
+ * 仅在 audit.jpa-capture-mode=HIBERNATE_LISTENER 时注册
+ */
+@Slf4j
+public class HibernateAuditEventListener
+        implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+    private final TransactionAwareEnhancedAuditService transactionAwareEnhancedAuditService;
+    private final AuditConfig auditConfig;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Map<String, EntityLayout> layouts = new ConcurrentHashMap<>();
+
+    public HibernateAuditEventListener(TransactionAwareEnhancedAuditService transactionAwareEnhancedAuditService,
+                                       AuditConfig auditConfig,
+                                       EntityManagerFactory entityManagerFactory) {
+        this.transactionAwareEnhancedAuditService = transactionAwareEnhancedAuditService;
+        this.auditConfig = auditConfig;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    public void register() {
+        if (auditConfig.getJpaCaptureMode() != JpaCaptureMode.HIBERNATE_LISTENER) {
+            return;
+        }
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        log.info("Hibernate audit event listener registered");
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        EntityLayout layout = layout(event.getPersister());
+        if (layout == null) {
+            return;
+        }
+        Row newData = layout.image(event.getId(), event.getState(), event.getEntity(), event.getSession());
+        audit(layout, OperationType.INSERT, null, newData);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        EntityLayout layout = layout(event.getPersister());
+        if (layout == null) {
+            return;
+        }
+        // 游离对象直接 update 时持久化上下文里没有加载状态，前镜像只能留空
+        Row oldData = event.getOldState() != null
+                ? layout.image(event.getId(), event.getOldState(), event.getEntity(), event.getSession())
+                : null;
+        Row newData = layout.image(event.getId(), event.getState(), event.getEntity(), event.getSession());
+        audit(layout, OperationType.UPDATE, oldData, newData);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        EntityLayout layout = layout(event.getPersister());
+        if (layout == null) {
+            return;
+        }
+        Row oldData = layout.image(event.getId(), event.getDeletedState(), event.getEntity(), event.getSession());
+        audit(layout, OperationType.DELETE, oldData, null);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        // 审计日志本身已经由事务同步在提交后写入，这里不需要 Hibernate 的提交后回调
+        return false;
+    }
+
+    /**
+     * Hibernate 5 中仍是抽象方法，只转调新方法
+     */
+    @Override
+    @Deprecated
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    private void audit(EntityLayout layout, OperationType operationType,
+                       Row oldData, Row newData) {
+        SQLInfo sqlInfo = new SQLInfo();
+        sqlInfo.setTableName(layout.tableName);
+        sqlInfo.setOperationType(operationType);
+        sqlInfo.setOldData(oldData);
+        sqlInfo.setNewData(newData);
+        try {
+            transactionAwareEnhancedAuditService.saveAuditLog(sqlInfo);
+        } catch (Exception e) {
+            log.error("Audit failed", e);
+        }
+    }
+
+    private EntityLayout layout(EntityPersister persister) {
+        if (!auditConfig.isEnabled() || !(persister instanceof AbstractEntityPersister)) {
+            return null;
+        }
+        EntityLayout layout = layouts.computeIfAbsent(persister.getEntityName(),
+                name -> new EntityLayout((AbstractEntityPersister) persister));
+        // 审计日志表自身的写入不进入镜像构建
+        return layout.tableName.startsWith(AuditService.AUDIT_TABLE_PREFIX) ? null : layout;
+    }
+
+    /**
+     * 每个实体只计算一次的列布局：状态数组下标 -> 物理列名
+     */
+    private static final class EntityLayout {
+        private final String tableName;
+        private final String[] idColumns;
+        private final Type idType;
+        private final int[] properties;         // 有对应列的属性下标，集合、mappedBy 关联等没有列的属性被跳过
+        private final String[][] propertyColumns;
+        private final Type[] propertyTypes;
+        private final RowSchema rowSchema;      // 主键列在前，随后按属性顺序展开的全部列
+
+        EntityLayout(AbstractEntityPersister persister) {
+            String table = persister.getTableName();
+            this.tableName = unquote(table.substring(table.lastIndexOf('.') + 1));
+            this.idColumns = unquote(persister.getIdentifierColumnNames());
+            this.idType = persister.getIdentifierType();
+
+            Type[] types = persister.getPropertyTypes();
+            List<Integer> mapped = new ArrayList<>();
+            for (int i = 0; i < types.length; i++) {
+                if (!types[i].isCollectionType() && persister.getPropertyColumnNames(i).length > 0) {
+                    mapped.add(i);
+                }
+            }
+            this.properties = mapped.stream().mapToInt(Integer::intValue).toArray();
+            this.propertyColumns = new String[properties.length][];
+            this.propertyTypes = new Type[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                propertyColumns[i] = unquote(persister.getPropertyColumnNames(properties[i]));
+                propertyTypes[i] = types[properties[i]];
+            }
+
+            List<String> columns = new ArrayList<>(List.of(idColumns));
+            for (String[] names : propertyColumns) {
+                columns.addAll(List.of(names));
+            }
+            this.rowSchema = RowSchema.adhoc(tableName, columns);
+        }
+
+        Row image(Object id, Object[] state, Object owner, SharedSessionContractImplementor session) {
+            Row image = new Row(rowSchema);
+            int offset = put(image, 0, idColumns, idType, id, owner, session);
+            for (int i = 0; i < properties.length; i++) {
+                offset = put(image, offset, propertyColumns[i], propertyTypes[i], state[properties[i]], owner, session);
+            }
+            return image;
+        }
+
+        /**
+         * 从 offset 开始按下标写入列值，返回下一个属性的起始下标
+         */
+        private static int put(Row image, int offset, String[] columns, Type type, Object value,
+                               Object owner, SharedSessionContractImplementor session) {
+            if (columns.length == 1 && !(type instanceof ComponentType) && !(type instanceof EntityType)) {
+                image.set(offset, value);
+                return offset + 1;
+            }
+            // 嵌入对象和关联实体通过 disassemble 拆成列值（关联实体得到其主键）
+            List<Object> values = new ArrayList<>(columns.length);
+            if (value != null) {
+                try {
+                    flatten(type.disassemble(value, session, owner), values);
+                } catch (Exception e) {
+                    // 关联了尚未持久化的实体等情况，外键值无法确定
+                    values.clear();
+                }
+            }
+            for (int i = 0; i < columns.length; i++) {
+                image.set(offset + i, values.size() == columns.length ? values.get(i) : null);
+            }
+            return offset + columns.length;
+        }
+
+        private static void flatten(Object value, List<Object> values) {
+            if (value instanceof Object[] array) {
+                for (Object element : array) {
+                    flatten(element, values);
+                }
+            } else {
+                values.add(value);
+            }
+        }
+
+        private static String unquote(String name) {
+            return name.replace("`", "").replace("\"", "");
+        }
+
+        private static String[] unquote(String[] names) {
+            String[] result = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                result[i] = unquote(names[i]);
+            }
+            return result;
+        }
+    }
+}
@@ -6,9 +6,13 @@ import lombok.Data;
 public class ColumnMetadata {
     private String columnName;
     private String dataType;
+    private String columnType;         // 完整列类型，如 tinyint(1)、int unsigned
+    private Integer numericScale;      // DECIMAL 的小数位数
     private boolean autoIncrement;
+    private boolean primaryKey;
     private Object defaultValue;
     private String computeExpression;  // 计算列表达式
     private boolean hasDefaultValue;
     private boolean isComputed;        // 是否是计算列
+    private boolean onUpdate;          // 是否带 ON UPDATE 自动赋值（如 ON UPDATE CURRENT_TIMESTAMP）
 }
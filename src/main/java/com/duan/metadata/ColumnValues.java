@@ -0,0 +1,93 @@
+package com.duan.metadata;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.Locale;
+
+/**
+ * 把 SQL 字面量转换成回表查询同一列时得到的 Java 类型（按 MySQL Connector/J 8 的默认映射），
+ * 由字面量推导出的后镜像与查询得到的镜像才能逐列比较
+ */
+public final class ColumnValues {
+    private static final DateTimeFormatter DATE_TIME = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .optionalStart()
+            .appendLiteral(' ')
+            .append(DateTimeFormatter.ISO_LOCAL_TIME)
+            .optionalEnd()
+            .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+            .toFormatter(Locale.ROOT);
+
+    private ColumnValues() {
+    }
+
+    /**
+     * 按列类型转换字面量，null 原样返回
+     *
+     * @throws IllegalArgumentException 字面量无法转换成该列的类型
+     */
+    public static Object fromLiteral(ColumnMetadata column, Object literal) {
+        if (literal == null || column.getDataType() == null) {
+            return literal;
+        }
+        String dataType = column.getDataType().toLowerCase(Locale.ROOT);
+        String columnType = column.getColumnType() != null ? column.getColumnType().toLowerCase(Locale.ROOT) : "";
+        boolean unsigned = columnType.contains("unsigned");
+        try {
+            return switch (dataType) {
+                case "tinyint" -> columnType.startsWith("tinyint(1)") ? toBoolean(literal) : toInteger(literal);
+                case "bit" -> columnType.equals("bit(1)") ? toBoolean(literal) : literal;
+                case "smallint", "mediumint" -> toInteger(literal);
+                case "int", "integer" -> unsigned
+                        ? (Object) toBigInteger(literal).longValueExact()
+                        : (Object) toBigInteger(literal).intValueExact();
+                case "bigint" -> unsigned ? toBigInteger(literal) : (Object) toBigInteger(literal).longValueExact();
+                case "decimal", "numeric" -> toDecimal(literal, column.getNumericScale());
+                case "float" -> toDecimal(literal, null).floatValue();
+                case "double", "real" -> toDecimal(literal, null).doubleValue();
+                case "datetime" -> LocalDateTime.parse(literal.toString().trim(), DATE_TIME);
+                case "timestamp" -> Timestamp.valueOf(LocalDateTime.parse(literal.toString().trim(), DATE_TIME));
+                case "date" -> Date.valueOf(LocalDate.parse(literal.toString().trim()));
+                case "time" -> Time.valueOf(literal.toString().trim());
+                case "char", "varchar", "tinytext", "text", "mediumtext", "longtext", "enum", "set", "json" ->
+                        literal instanceof Boolean b ? (b ? "1" : "0") : literal.toString();
+                default -> literal;
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cannot convert literal " + literal + " to " + columnType, e);
+        }
+    }
+
+    private static Integer toInteger(Object literal) {
+        // TINYINT/SMALLINT/MEDIUMINT 即使无符号也在 Integer 范围内
+        return toBigInteger(literal).intValueExact();
+    }
+
+    private static Boolean toBoolean(Object literal) {
+        if (literal instanceof Boolean b) {
+            return b;
+        }
+        return toBigInteger(literal).signum() != 0;
+    }
+
+    private static BigInteger toBigInteger(Object literal) {
+        if (literal instanceof Boolean b) {
+            return b ? BigInteger.ONE : BigInteger.ZERO;
+        }
+        return toDecimal(literal, null).setScale(0, RoundingMode.HALF_UP).toBigIntegerExact();
+    }
+
+    private static BigDecimal toDecimal(Object literal, Integer scale) {
+        BigDecimal value = literal instanceof BigDecimal d ? d : new BigDecimal(literal.toString().trim());
+        return scale != null ? value.setScale(scale, RoundingMode.HALF_UP) : value;
+    }
+}
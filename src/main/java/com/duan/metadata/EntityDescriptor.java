@@ -0,0 +1,100 @@
+package com.duan.metadata;
+
+import com.duan.row.Row;
+import com.duan.row.RowSchema;
+
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * 实体类的预编译描述：表名、列名以及按列顺序排列的取值句柄
+ * <p>
+ * 每个实体类只构建一次，之后对实体取快照只需要一次数组分配，不再反射遍历字段
+ */
+public class EntityDescriptor {
+    private final String tableName;
+    private final String[] columnNames;
+    private final MethodHandle[][] accessPaths;   // 每列从实体到列值的取值链（嵌入对象、关联 id 需要多级）
+    private final UnaryOperator<Object>[] converters;
+    private final int[] idColumns;                // 主键列在 columnNames 中的下标
+    private final RowSchema rowSchema;
+
+    EntityDescriptor(String tableName,
+                     String[] columnNames,
+                     MethodHandle[][] accessPaths,
+                     UnaryOperator<Object>[] converters,
+                     int[] idColumns) {
+        this.tableName = tableName;
+        this.columnNames = columnNames;
+        this.accessPaths = accessPaths;
+        this.converters = converters;
+        this.idColumns = idColumns;
+        this.rowSchema = RowSchema.adhoc(tableName, List.of(columnNames));
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * 按列顺序读取实体当前的全部列值
+     */
+    public Object[] snapshot(Object entity) {
+        Object[] values = new Object[columnNames.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = read(entity, i);
+        }
+        return values;
+    }
+
+    /**
+     * 读取主键列，值为 null 的主键列不返回
+     */
+    public Map<String, Object> primaryKey(Object entity) {
+        Map<String, Object> primaryKey = new HashMap<>(idColumns.length * 2);
+        for (int index : idColumns) {
+            Object value = read(entity, index);
+            if (value != null) {
+                primaryKey.put(columnNames[index], value);
+            }
+        }
+        return primaryKey;
+    }
+
+    /**
+     * 快照按实体自身的列布局转成行，列顺序与快照数组一致
+     */
+    public Row toRow(Object[] snapshot) {
+        Row row = new Row(rowSchema);
+        for (int i = 0; i < snapshot.length; i++) {
+            row.set(i, snapshot[i]);
+        }
+        return row;
+    }
+
+    private Object read(Object entity, int column) {
+        Object value = entity;
+        try {
+            for (MethodHandle getter : accessPaths[column]) {
+                if (value == null) {
+                    return null;
+                }
+                value = getter.invokeExact(value);
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException("Read column " + columnNames[column] + " of " + tableName + " failed", e);
+        }
+        // 关联为 null 时外键列就是 NULL，不交给转换器（getIdentifier 不接受 null）
+        if (value == null || converters[column] == null) {
+            return value;
+        }
+        return converters[column].apply(value);
+    }
+}
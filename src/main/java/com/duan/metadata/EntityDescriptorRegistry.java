@@ -0,0 +1,257 @@
+package com.duan.metadata;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxyHelper;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.AttributeOverride;
+import javax.persistence.AttributeOverrides;
+import javax.persistence.Column;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.JoinColumn;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Table;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EmbeddableType;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * 按实体类缓存 {@link EntityDescriptor}
+ * <p>
+ * 属性结构来自 JPA 元模型（包含 @MappedSuperclass 继承的属性，@EmbeddedId/@Embedded 展开为各自的列），
+ * 物理列名优先取 Hibernate 持久化器里的映射结果，和命名策略保持一致；取不到时再按 @Column 注解或属性名推断
+ */
+@Slf4j
+public class EntityDescriptorRegistry {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Metamodel metamodel;
+    private final PersistenceUnitUtil persistenceUnitUtil;
+    private final SessionFactoryImplementor sessionFactory;
+    private final Map<Class<?>, Optional<EntityDescriptor>> descriptors = new ConcurrentHashMap<>();
+
+    public EntityDescriptorRegistry(EntityManagerFactory entityManagerFactory) {
+        this.metamodel = entityManagerFactory.getMetamodel();
+        this.persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+        SessionFactoryImplementor factory = null;
+        try {
+            factory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        } catch (Exception e) {
+            log.debug("EntityManagerFactory is not backed by Hibernate, column names fall back to annotations");
+        }
+        this.sessionFactory = factory;
+    }
+
+    /**
+     * 获取实体对象对应的描述，不是托管实体时返回 null
+     */
+    public EntityDescriptor getDescriptor(Object entity) {
+        Class<?> entityClass = HibernateProxyHelper.getClassWithoutInitializingProxy(entity);
+        return descriptors.computeIfAbsent(entityClass, this::build).orElse(null);
+    }
+
+    private Optional<EntityDescriptor> build(Class<?> entityClass) {
+        EntityType<?> entityType;
+        try {
+            entityType = metamodel.entity(entityClass);
+        } catch (IllegalArgumentException e) {
+            log.debug("{} is not a managed entity, skip auditing", entityClass.getName());
+            return Optional.empty();
+        }
+
+        AbstractEntityPersister persister = persister(entityClass);
+        List<ColumnAccessor> columns = new ArrayList<>();
+        for (Attribute<?, ?> attribute : entityType.getAttributes()) {
+            if (attribute.isCollection()) {
+                continue;
+            }
+            SingularAttribute<?, ?> singular = (SingularAttribute<?, ?>) attribute;
+            MethodHandle getter = getter(attribute.getJavaMember());
+            switch (attribute.getPersistentAttributeType()) {
+                case EMBEDDED:
+                    addEmbedded(columns, persister, singular, getter);
+                    break;
+                case MANY_TO_ONE:
+                case ONE_TO_ONE:
+                    addAssociation(columns, persister, singular, getter);
+                    break;
+                case BASIC:
+                    String columnName = columnName(persister, attribute.getName(), attribute.getJavaMember());
+                    columns.add(new ColumnAccessor(columnName, new MethodHandle[]{getter}, null, singular.isId()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        // 元模型不保证属性顺序，主键在前、其余按列名排序，保证同一实体的快照数组布局稳定
+        columns.sort(Comparator.comparing((ColumnAccessor c) -> !c.id()).thenComparing(ColumnAccessor::columnName));
+
+        int size = columns.size();
+        String[] columnNames = new String[size];
+        MethodHandle[][] accessPaths = new MethodHandle[size][];
+        @SuppressWarnings("unchecked")
+        UnaryOperator<Object>[] converters = new UnaryOperator[size];
+        int[] idColumns = new int[(int) columns.stream().filter(ColumnAccessor::id).count()];
+        for (int i = 0, id = 0; i < size; i++) {
+            ColumnAccessor column = columns.get(i);
+            columnNames[i] = column.columnName();
+            accessPaths[i] = column.path();
+            converters[i] = column.converter();
+            if (column.id()) {
+                idColumns[id++] = i;
+            }
+        }
+        return Optional.of(new EntityDescriptor(tableName(persister, entityClass),
+                columnNames, accessPaths, converters, idColumns));
+    }
+
+    private void addEmbedded(List<ColumnAccessor> columns,
+                             AbstractEntityPersister persister,
+                             SingularAttribute<?, ?> attribute,
+                             MethodHandle getter) {
+        EmbeddableType<?> embeddable = metamodel.embeddable(attribute.getJavaType());
+        Map<String, String> overrides = attributeOverrides(attribute.getJavaMember());
+        for (Attribute<?, ?> nested : embeddable.getAttributes()) {
+            if (nested.getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC) {
+                continue;
+            }
+            String columnName = overrides.containsKey(nested.getName())
+                    ? overrides.get(nested.getName())
+                    : columnName(persister, attribute.getName() + "." + nested.getName(), nested.getJavaMember());
+            columns.add(new ColumnAccessor(columnName,
+                    new MethodHandle[]{getter, getter(nested.getJavaMember())}, null, attribute.isId()));
+        }
+    }
+
+    private void addAssociation(List<ColumnAccessor> columns,
+                                AbstractEntityPersister persister,
+                                SingularAttribute<?, ?> attribute,
+                                MethodHandle getter) {
+        String columnName;
+        if (persister != null) {
+            String[] names;
+            try {
+                names = persister.getPropertyColumnNames(attribute.getName());
+            } catch (Exception e) {
+                return;
+            }
+            // mappedBy 一侧没有外键列，复合外键暂不展开
+            if (names == null || names.length != 1) {
+                return;
+            }
+            columnName = unquote(names[0]);
+        } else {
+            JoinColumn joinColumn = ((AnnotatedElement) attribute.getJavaMember()).getAnnotation(JoinColumn.class);
+            if (joinColumn == null || !StringUtils.hasText(joinColumn.name())) {
+                return;
+            }
+            columnName = joinColumn.name();
+        }
+        // 外键列记录关联实体的主键，而不是整个关联对象
+        columns.add(new ColumnAccessor(columnName, new MethodHandle[]{getter},
+                persistenceUnitUtil::getIdentifier, attribute.isId()));
+    }
+
+    private String columnName(AbstractEntityPersister persister, String propertyPath, Member member) {
+        if (persister != null) {
+            try {
+                String[] names = persister.getPropertyColumnNames(propertyPath);
+                if (names != null && names.length == 1) {
+                    return unquote(names[0]);
+                }
+            } catch (Exception e) {
+                log.debug("Resolve column of {} from persister failed", propertyPath);
+            }
+        }
+        Column column = ((AnnotatedElement) member).getAnnotation(Column.class);
+        if (column != null && StringUtils.hasText(column.name())) {
+            return column.name();
+        }
+        return propertyPath.substring(propertyPath.lastIndexOf('.') + 1);
+    }
+
+    private String tableName(AbstractEntityPersister persister, Class<?> entityClass) {
+        if (persister != null) {
+            String tableName = persister.getTableName();
+            return unquote(tableName.substring(tableName.lastIndexOf('.') + 1));
+        }
+        Table table = entityClass.getAnnotation(Table.class);
+        if (table != null && StringUtils.hasText(table.name())) {
+            return table.name();
+        }
+        return entityClass.getSimpleName().toLowerCase();
+    }
+
+    private AbstractEntityPersister persister(Class<?> entityClass) {
+        if (sessionFactory == null) {
+            return null;
+        }
+        try {
+            EntityPersister persister = sessionFactory.getMetamodel().entityPersister(entityClass);
+            return persister instanceof AbstractEntityPersister ? (AbstractEntityPersister) persister : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Map<String, String> attributeOverrides(Member member) {
+        AnnotatedElement element = (AnnotatedElement) member;
+        Map<String, String> overrides = new HashMap<>();
+        AttributeOverrides multiple = element.getAnnotation(AttributeOverrides.class);
+        if (multiple != null) {
+            for (AttributeOverride override : multiple.value()) {
+                overrides.put(override.name(), override.column().name());
+            }
+        }
+        AttributeOverride single = element.getAnnotation(AttributeOverride.class);
+        if (single != null) {
+            overrides.put(single.name(), single.column().name());
+        }
+        return overrides;
+    }
+
+    private static MethodHandle getter(Member member) {
+        try {
+            MethodHandle handle;
+            if (member instanceof Field field) {
+                field.setAccessible(true);
+                handle = MethodHandles.lookup().unreflectGetter(field);
+            } else if (member instanceof Method method) {
+                method.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(method);
+            } else {
+                throw new IllegalStateException("Unsupported attribute member " + member);
+            }
+            return handle.asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Create accessor for " + member + " failed", e);
+        }
+    }
+
+    private static String unquote(String name) {
+        return name.replace("`", "").replace("\"", "");
+    }
+
+    private record ColumnAccessor(String columnName, MethodHandle[] path, UnaryOperator<Object> converter, boolean id) {
+    }
+}
@@ -1,22 +1,29 @@
 package com.duan.metadata;
 
+import com.duan.config.AuditDataSources;
+import com.duan.image.LargeColumnPolicies;
+import com.duan.row.Row;
+import com.duan.row.RowSchema;
+import com.duan.row.SingleRowExtractor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class MySqlTableMetadataProvider implements TableMetadataProvider {
-    private final JdbcTemplate jdbcTemplate;
+    private final AuditDataSources auditDataSources;
     private final CacheManager cacheManager;
+    private final LargeColumnPolicies largeColumnPolicies;
+    private final Map<String, RowSchema> rowSchemas = new ConcurrentHashMap<>();
 
     @Override
     public Map<String, ColumnMetadata> getTableMetadata(String tableName) {
@@ -69,25 +76,32 @@ public class MySqlTableMetadataProvider implements TableMetadataProvider {
     }
 
     private Map<String, ColumnMetadata> queryTableMetadata(String tableName) {
-        Map<String, ColumnMetadata> metadata = new HashMap<>();
+        Map<String, ColumnMetadata> metadata = new LinkedHashMap<>();
 
         try {
             String sql = """
                     SELECT 
                         COLUMN_NAME, 
                         DATA_TYPE,
+                        COLUMN_TYPE,
+                        NUMERIC_SCALE,
                         COLUMN_DEFAULT,
                         EXTRA,
                         GENERATION_EXPRESSION,
-                        IS_NULLABLE
+                        IS_NULLABLE,
+                        COLUMN_KEY
                     FROM INFORMATION_SCHEMA.COLUMNS 
                     WHERE TABLE_NAME = ? AND TABLE_SCHEMA = DATABASE()
+                    ORDER BY ORDINAL_POSITION
                     """;
 
-            jdbcTemplate.query(sql, rs -> {
+            auditDataSources.getReadJdbcTemplate().query(sql, rs -> {
                 ColumnMetadata columnMeta = new ColumnMetadata();
                 columnMeta.setColumnName(rs.getString("COLUMN_NAME"));
                 columnMeta.setDataType(rs.getString("DATA_TYPE"));
+                columnMeta.setColumnType(rs.getString("COLUMN_TYPE"));
+                long numericScale = rs.getLong("NUMERIC_SCALE");
+                columnMeta.setNumericScale(rs.wasNull() ? null : (int) numericScale);
 
                 String defaultValue = rs.getString("COLUMN_DEFAULT");
                 columnMeta.setDefaultValue(defaultValue);
@@ -95,6 +109,8 @@ public class MySqlTableMetadataProvider implements TableMetadataProvider {
 
                 String extra = rs.getString("EXTRA");
                 columnMeta.setAutoIncrement(extra != null && extra.contains("auto_increment"));
+                columnMeta.setOnUpdate(extra != null && extra.toLowerCase().contains("on update"));
+                columnMeta.setPrimaryKey("PRI".equals(rs.getString("COLUMN_KEY")));
 
                 String generateExpression = rs.getString("GENERATION_EXPRESSION");
                 if (StringUtils.hasText(generateExpression)) {
@@ -112,13 +128,59 @@ public class MySqlTableMetadataProvider implements TableMetadataProvider {
     }
 
     @Override
-    public Map<String, Object> getCompleteRowData(String tableName, Map<String, Object> whereConditions) {
+    public boolean isUpdateImageDerivable(String tableName) {
+        Cache cache = cacheManager != null ? cacheManager.getCache("tableUpdateDerivable") : null;
+        if (cache != null) {
+            Boolean cached = cache.get(tableName, Boolean.class);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        boolean derivable = queryUpdateImageDerivable(tableName);
+        if (cache != null) {
+            cache.put(tableName, derivable);
+        }
+        return derivable;
+    }
+
+    private boolean queryUpdateImageDerivable(String tableName) {
+        Map<String, ColumnMetadata> metadata = getTableMetadata(tableName);
+        if (metadata.isEmpty()) {
+            return false;
+        }
+        for (ColumnMetadata column : metadata.values()) {
+            if (column.isComputed() || column.isOnUpdate()) {
+                return false;
+            }
+        }
+
+        try {
+            String sql = """
+                    SELECT COUNT(*)
+                    FROM INFORMATION_SCHEMA.TRIGGERS
+                    WHERE EVENT_OBJECT_TABLE = ? AND EVENT_OBJECT_SCHEMA = DATABASE()
+                      AND EVENT_MANIPULATION = 'UPDATE'
+                    """;
+            Integer triggers = auditDataSources.getReadJdbcTemplate().queryForObject(sql, Integer.class, tableName);
+            return triggers != null && triggers == 0;
+        } catch (Exception e) {
+            log.error("Failed to query triggers for table: " + tableName, e);
+            return false;
+        }
+    }
+
+    @Override
+    public Row getCompleteRowData(String tableName, Map<String, Object> whereConditions) {
         if (!StringUtils.hasText(tableName) || whereConditions == null || whereConditions.isEmpty()) {
-            return Collections.emptyMap();
+            return new Row(getRowSchema(tableName));
         }
 
         try {
-            StringBuilder sql = new StringBuilder("SELECT * FROM ").append(tableName).append(" WHERE ");
+            // 只投影需要的列，大字段按策略在库里截断或哈希
+            String columns = largeColumnPolicies.projection(tableName, getTableMetadata(tableName));
+            StringBuilder sql = new StringBuilder("SELECT ").append(columns)
+                    .append(" FROM ").append(tableName).append(" WHERE ");
             List<Object> params = new ArrayList<>();
 
             boolean first = true;
@@ -131,12 +193,74 @@ public class MySqlTableMetadataProvider implements TableMetadataProvider {
                 first = false;
             }
 
-            return jdbcTemplate.queryForMap(sql.toString(), params.toArray());
-        } catch (EmptyResultDataAccessException e) {
-            return Collections.emptyMap();
+            return auditDataSources.getImageJdbcTemplate().query(sql.toString(),
+                    new SingleRowExtractor(getRowSchema(tableName)), params.toArray());
         } catch (Exception e) {
             log.error("Failed to get complete row data for table: " + tableName, e);
-            return Collections.emptyMap();
+            return new Row(getRowSchema(tableName));
+        }
+    }
+
+    /**
+     * 定期检查已缓存的表结构，ALTER TABLE 后清除该表的元数据、行结构和后镜像推导判断，
+     * 之后的写入按新的列布局构建行结构（位置数组镜像随之登记新的结构版本）
+     */
+    @Scheduled(fixedDelayString = "${audit.metadata-refresh-interval-ms:60000}")
+    public void refreshChangedTables() {
+        for (String tableName : rowSchemas.keySet()) {
+            try {
+                List<String> current = auditDataSources.getReadJdbcTemplate().queryForList("""
+                        SELECT CONCAT(COLUMN_NAME, ' ', COLUMN_TYPE)
+                        FROM INFORMATION_SCHEMA.COLUMNS
+                        WHERE TABLE_NAME = ? AND TABLE_SCHEMA = DATABASE()
+                        ORDER BY ORDINAL_POSITION
+                        """, String.class, tableName);
+                List<String> cached = new ArrayList<>();
+                getTableMetadata(tableName).values().forEach(column ->
+                        cached.add(column.getColumnName() + ' ' + column.getColumnType()));
+                if (!current.equals(cached)) {
+                    log.info("Columns of table {} changed, reloading metadata", tableName);
+                    invalidate(tableName);
+                }
+            } catch (Exception e) {
+                log.warn("Check metadata of table {} failed", tableName, e);
+            }
+        }
+    }
+
+    private void invalidate(String tableName) {
+        rowSchemas.remove(tableName);
+        if (cacheManager == null) {
+            return;
+        }
+        for (String cacheName : List.of("tableMetadata", "tableUpdateDerivable")) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.evict(tableName);
+            }
+        }
+    }
+
+    @Override
+    public RowSchema getRowSchema(String tableName) {
+        RowSchema schema = rowSchemas.get(tableName);
+        if (schema != null) {
+            return schema;
+        }
+        Map<String, ColumnMetadata> metadata = StringUtils.hasText(tableName)
+                ? getTableMetadata(tableName)
+                : Collections.emptyMap();
+        List<String> columns = new ArrayList<>(metadata.size());
+        List<String> dataTypes = new ArrayList<>(metadata.size());
+        metadata.forEach((columnName, column) -> {
+            columns.add(columnName);
+            dataTypes.add(column.getDataType());
+        });
+        schema = RowSchema.of(tableName, columns, dataTypes);
+        // 元数据暂时不可用时不缓存，下次重新获取
+        if (!metadata.isEmpty()) {
+            rowSchemas.put(tableName, schema);
         }
+        return schema;
     }
 }
@@ -1,5 +1,8 @@
 package com.duan.metadata;
 
+import com.duan.row.Row;
+import com.duan.row.RowSchema;
+
 import java.util.Map;
 
 public interface TableMetadataProvider {
@@ -11,5 +14,15 @@ public interface TableMetadataProvider {
     /**
      * 获取表的完整数据（包括默认值、计算值等）
      */
-    Map<String, Object> getCompleteRowData(String tableName, Map<String, Object> whereConditions);
+    Row getCompleteRowData(String tableName, Map<String, Object> whereConditions);
+
+    /**
+     * 获取表的行结构，按列在表中的顺序排列；元数据不可用时返回不含列的结构
+     */
+    RowSchema getRowSchema(String tableName);
+
+    /**
+     * UPDATE 的后镜像能否由前镜像叠加 SET 值直接得到（表上没有计算列、ON UPDATE 列和 UPDATE 触发器）
+     */
+    boolean isUpdateImageDerivable(String tableName);
 }
@@ -0,0 +1,12 @@
+package com.duan.metrics;
+
+import lombok.Data;
+
+@Data
+public class ArchiveMetrics {
+    private int segments;           // 归档段文件数
+    private long records;           // 已归档的记录数
+    private long bytes;             // 段文件总大小
+    private long segmentsScanned;   // 查询时实际读取的段数
+    private long segmentsSkipped;   // 按统计信息或布隆过滤器跳过的段数
+}
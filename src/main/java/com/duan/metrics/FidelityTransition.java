@@ -0,0 +1,17 @@
+package com.duan.metrics;
+
+import com.duan.enums.AuditFidelity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class FidelityTransition {
+    private LocalDateTime time;
+    private String tableName;
+    private AuditFidelity from;
+    private AuditFidelity to;
+    private String reason;
+}
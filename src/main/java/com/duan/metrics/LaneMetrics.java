@@ -0,0 +1,13 @@
+package com.duan.metrics;
+
+import lombok.Data;
+
+@Data
+public class LaneMetrics {
+    private int lane;
+    private int depth;          // 队列中等待写入的审计日志条数
+    private int capacity;       // 队列容量（批次数）
+    private long written;       // 累计写入条数
+    private long batches;       // 累计写入批次数（多个调用方的日志会合并为一批）
+    private long failures;      // 写入失败的批次数
+}
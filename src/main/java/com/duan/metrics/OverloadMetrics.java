@@ -0,0 +1,19 @@
+package com.duan.metrics;
+
+import com.duan.enums.AuditFidelity;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class OverloadMetrics {
+    private String tableName;
+    private AuditFidelity fidelity;     // 当前记录级别
+    private double latencyMs;           // 镜像查询耗时的滑动平均
+    private double errorRate;           // 最近一个评估周期的镜像查询失败率
+    private int backlog;                // 正在等待写入的审计日志条数（全局）
+    private long dropped;               // 降级到 DROP 后累计丢弃的条数
+    private long degradations;          // 累计降级次数
+    private long recoveries;            // 累计恢复次数
+    private LocalDateTime since;        // 进入当前级别的时间
+}
@@ -0,0 +1,18 @@
+package com.duan.metrics;
+
+import lombok.Data;
+
+@Data
+public class PoolMetrics {
+    private String name;               // business / audit-read / audit-write / audit-replica
+    private int activeCount;           // 正在使用的连接数
+    private int poolingCount;          // 池中空闲连接数
+    private int maxActive;
+    private int activePeak;
+    private int waitThreadCount;       // 正在等待连接的线程数
+    private long notEmptyWaitCount;    // 累计等待连接的次数
+    private long notEmptyWaitMillis;   // 累计等待连接的时长
+    private long connectCount;         // 累计借出连接次数
+    private long createCount;          // 累计创建物理连接次数
+    private long errorCount;
+}
@@ -0,0 +1,11 @@
+package com.duan.metrics;
+
+import lombok.Data;
+
+@Data
+public class RecentCacheMetrics {
+    private int tables;     // 已缓存的表数
+    private int operators;  // 已缓存的操作人数
+    private long hits;      // 直接由缓存返回的查询数
+    private long misses;    // 缓存不足、回落到数据库的查询数
+}
@@ -0,0 +1,16 @@
+package com.duan.metrics;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ReplicaMetrics {
+    private boolean healthy;            // 副本可读且延迟在允许范围内
+    private long lagMs;                 // 最近一次检查得到的复制延迟，未知时为 -1
+    private long appliedLogId;          // 最近一次检查时副本上最大的审计日志 id，仅供观察，不用于读己之写判断
+    private LocalDateTime lastCheckTime;
+    private long replicaReads;          // 读副本的查询次数
+    private long primaryReads;          // 读主库的查询次数（一致性要求、延迟过大或副本故障）
+    private long fallbacks;             // 读副本失败后改读主库的次数
+}
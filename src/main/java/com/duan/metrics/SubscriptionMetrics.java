@@ -0,0 +1,12 @@
+package com.duan.metrics;
+
+import lombok.Data;
+
+@Data
+public class SubscriptionMetrics {
+    private String name;
+    private int capacity;       // 缓冲区容量
+    private int buffered;       // 当前积压（滞后）条数
+    private long delivered;     // 累计投递条数
+    private long dropped;       // 缓冲区写满后丢弃的条数
+}
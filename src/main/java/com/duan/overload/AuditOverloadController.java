@@ -0,0 +1,225 @@
+package com.duan.overload;
+
+import com.duan.config.AuditConfig;
+import com.duan.enums.AuditFidelity;
+import com.duan.metrics.FidelityTransition;
+import com.duan.metrics.OverloadMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 审计过载控制：按表观察镜像查询耗时、失败率以及全局写入积压，过载时逐级降低记录的完整程度
+ * <p>
+ * FULL -> DIFF -> KEYS_ONLY -> DROP，每个评估周期最多变化一级。连续 degradeAfter 个周期过载才降级、
+ * 连续 recoverAfter 个周期正常才升级，介于两组阈值之间的周期不计入任何一方，避免在边界上来回切换。
+ * 降级后不再产生镜像查询的表没有耗时样本，按正常处理，负载消失后会逐级恢复
+ */
+@Slf4j
+public class AuditOverloadController {
+    private static final double LATENCY_SMOOTHING = 0.3;
+    private static final int MAX_TRANSITIONS = 100;
+
+    private final AuditConfig auditConfig;
+    private final Map<String, TableState> tables = new ConcurrentHashMap<>();
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder writeBatches = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final Deque<FidelityTransition> transitions = new ArrayDeque<>();
+
+    public AuditOverloadController(AuditConfig auditConfig) {
+        this.auditConfig = auditConfig;
+    }
+
+    /**
+     * 表当前的记录级别，热路径上调用，只读一个 volatile 字段
+     */
+    public AuditFidelity fidelity(String tableName) {
+        if (!auditConfig.getOverload().isEnabled()) {
+            return AuditFidelity.FULL;
+        }
+        TableState state = tables.get(tableName);
+        return state != null ? state.fidelity : AuditFidelity.FULL;
+    }
+
+    /**
+     * 记录一次镜像查询
+     */
+    public void recordCapture(String tableName, long nanos, boolean failed) {
+        TableState state = state(tableName);
+        state.captureNanos.add(nanos);
+        state.captures.increment();
+        if (failed) {
+            state.failures.increment();
+        }
+    }
+
+    public void recordDrop(String tableName) {
+        state(tableName).dropped.increment();
+    }
+
+    public void writeStarted(int count) {
+        backlog.addAndGet(count);
+    }
+
+    public void writeFinished(int count, long nanos, boolean failed) {
+        backlog.addAndGet(-count);
+        writeNanos.add(nanos);
+        writeBatches.increment();
+        if (failed) {
+            writeFailures.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${audit.overload.evaluate-interval-ms:1000}")
+    public void evaluate() {
+        AuditConfig.Overload config = auditConfig.getOverload();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        // 写入是按批跨表进行的，耗时和失败计入每张表的判断
+        long batches = writeBatches.sumThenReset();
+        double writeLatencyMs = batches > 0 ? toMillis(writeNanos.sumThenReset()) / batches : 0;
+        double writeErrorRate = batches > 0 ? (double) writeFailures.sumThenReset() / batches : 0;
+        int currentBacklog = backlog.get();
+
+        for (Map.Entry<String, TableState> entry : tables.entrySet()) {
+            TableState state = entry.getValue();
+            long captures = state.captures.sumThenReset();
+            long failures = state.failures.sumThenReset();
+            long captureNanos = state.captureNanos.sumThenReset();
+            if (captures > 0) {
+                double windowLatency = toMillis(captureNanos) / captures;
+                state.latencyMs = state.latencyMs == 0
+                        ? windowLatency
+                        : LATENCY_SMOOTHING * windowLatency + (1 - LATENCY_SMOOTHING) * state.latencyMs;
+                state.errorRate = (double) failures / captures;
+            } else {
+                // 没有查询时耗时逐步衰减，不让一次慢查询把表一直压在低级别
+                state.latencyMs = (1 - LATENCY_SMOOTHING) * state.latencyMs;
+                state.errorRate = 0;
+            }
+
+            double latency = Math.max(state.latencyMs, writeLatencyMs);
+            double errorRate = Math.max(state.errorRate, writeErrorRate);
+            String reason = overloadReason(config, latency, errorRate, currentBacklog);
+            if (reason != null) {
+                state.healthyStreak = 0;
+                if (++state.overloadedStreak >= config.getDegradeAfter()
+                        && state.fidelity.compareTo(config.getLowestFidelity()) < 0) {
+                    transition(entry.getKey(), state, AuditFidelity.values()[state.fidelity.ordinal() + 1], reason);
+                }
+            } else if (latency < config.getLatencyLowMs()
+                    && errorRate < config.getErrorRateLow()
+                    && currentBacklog < config.getBacklogLow()) {
+                state.overloadedStreak = 0;
+                if (++state.healthyStreak >= config.getRecoverAfter() && state.fidelity != AuditFidelity.FULL) {
+                    transition(entry.getKey(), state, AuditFidelity.values()[state.fidelity.ordinal() - 1], "recovered");
+                }
+            } else {
+                state.overloadedStreak = 0;
+                state.healthyStreak = 0;
+            }
+        }
+    }
+
+    public List<OverloadMetrics> getOverloadMetrics() {
+        int currentBacklog = backlog.get();
+        List<OverloadMetrics> metrics = new ArrayList<>(tables.size());
+        tables.forEach((tableName, state) -> {
+            OverloadMetrics m = new OverloadMetrics();
+            m.setTableName(tableName);
+            m.setFidelity(state.fidelity);
+            m.setLatencyMs(state.latencyMs);
+            m.setErrorRate(state.errorRate);
+            m.setBacklog(currentBacklog);
+            m.setDropped(state.dropped.sum());
+            m.setDegradations(state.degradations);
+            m.setRecoveries(state.recoveries);
+            m.setSince(state.since);
+            metrics.add(m);
+        });
+        return metrics;
+    }
+
+    /**
+     * 最近的级别变化，最新的在前
+     */
+    public List<FidelityTransition> getRecentTransitions() {
+        synchronized (transitions) {
+            return new ArrayList<>(transitions);
+        }
+    }
+
+    private String overloadReason(AuditConfig.Overload config, double latency, double errorRate, int currentBacklog) {
+        if (latency > config.getLatencyHighMs()) {
+            return String.format("latency %.1fms", latency);
+        }
+        if (errorRate > config.getErrorRateHigh()) {
+            return String.format("error rate %.2f", errorRate);
+        }
+        if (currentBacklog > config.getBacklogHigh()) {
+            return "backlog " + currentBacklog;
+        }
+        return null;
+    }
+
+    private void transition(String tableName, TableState state, AuditFidelity to, String reason) {
+        AuditFidelity from = state.fidelity;
+        state.fidelity = to;
+        state.since = LocalDateTime.now();
+        state.overloadedStreak = 0;
+        state.healthyStreak = 0;
+        if (to.compareTo(from) > 0) {
+            state.degradations++;
+            log.warn("Audit of table {} degraded from {} to {}: {}", tableName, from, to, reason);
+        } else {
+            state.recoveries++;
+            log.info("Audit of table {} recovered from {} to {}", tableName, from, to);
+        }
+        synchronized (transitions) {
+            transitions.addFirst(new FidelityTransition(state.since, tableName, from, to, reason));
+            if (transitions.size() > MAX_TRANSITIONS) {
+                transitions.removeLast();
+            }
+        }
+    }
+
+    private TableState state(String tableName) {
+        return tables.computeIfAbsent(tableName, name -> new TableState());
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 计数器在热路径上累加；其余字段只在评估线程中修改
+     */
+    private static final class TableState {
+        private final LongAdder captures = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder captureNanos = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private volatile AuditFidelity fidelity = AuditFidelity.FULL;
+        private volatile LocalDateTime since = LocalDateTime.now();
+        private volatile double latencyMs;
+        private volatile double errorRate;
+        private volatile long degradations;
+        private volatile long recoveries;
+        private int overloadedStreak;
+        private int healthyStreak;
+    }
+}
@@ -0,0 +1,124 @@
+package com.duan.reader;
+
+import com.duan.archive.AuditArchive;
+import com.duan.entity.DataAuditLog;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 同时查询热表和冷归档：两边各取已排序的结果后归并
+ * <p>
+ * 归档的段统计信息和布隆过滤器能排除全部段时，只查询热表
+ */
+public class ArchiveAwareAuditLogReader implements AuditLogReader {
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private final AuditLogReader delegate;
+    private final AuditArchive archive;
+
+    public ArchiveAwareAuditLogReader(AuditLogReader delegate, AuditArchive archive) {
+        this.delegate = delegate;
+        this.archive = archive;
+    }
+
+    @Override
+    public Page<DataAuditLog> findByTableNameAndTimeRange(String tableName,
+                                                          LocalDateTime startTime,
+                                                          LocalDateTime endTime,
+                                                          Pageable pageable) {
+        if (!archive.mayContain(tableName, startTime, endTime)) {
+            return delegate.findByTableNameAndTimeRange(tableName, startTime, endTime, pageable);
+        }
+
+        // 两边各取前 offset + size 条，归并后再跳过 offset 条
+        int fetch = (int) (pageable.getOffset() + pageable.getPageSize());
+        Page<DataAuditLog> hot = delegate.findByTableNameAndTimeRange(tableName, startTime, endTime,
+                PageRequest.of(0, fetch));
+        List<DataAuditLog> cold = archive.findByTableNameAndTimeRange(tableName, startTime, endTime, fetch);
+        long total = hot.getTotalElements() + archive.countByTableNameAndTimeRange(tableName, startTime, endTime);
+
+        List<DataAuditLog> merged = merge(hot.getContent(), cold, fetch);
+        int from = (int) Math.min(pageable.getOffset(), merged.size());
+        return new PageImpl<>(new ArrayList<>(merged.subList(from, merged.size())), pageable, total);
+    }
+
+    /**
+     * 归档段不保存变更列，只查询热表
+     */
+    @Override
+    public Page<DataAuditLog> findByTableNameAndChangedColumn(String tableName,
+                                                              String columnName,
+                                                              LocalDateTime startTime,
+                                                              LocalDateTime endTime,
+                                                              Pageable pageable) {
+        return delegate.findByTableNameAndChangedColumn(tableName, columnName, startTime, endTime, pageable);
+    }
+
+    @Override
+    public List<DataAuditLog> findByTableNameAndPrimaryKey(String tableName, String primaryKeyValue, int limit) {
+        return merge(delegate.findByTableNameAndPrimaryKey(tableName, primaryKeyValue, limit),
+                archive.findByTableNameAndPrimaryKey(tableName, primaryKeyValue, limit), limit);
+    }
+
+    @Override
+    public List<DataAuditLog> findRecentByTableName(String tableName, int limit) {
+        List<DataAuditLog> hot = delegate.findRecentByTableName(tableName, limit);
+        // 热表中的记录不够时才需要归档中更早的记录
+        if (hot.size() >= limit || !archive.mayContain(tableName, EARLIEST, LATEST)) {
+            return hot;
+        }
+        return merge(hot, archive.findByTableNameAndTimeRange(tableName, EARLIEST, LATEST, limit),
+                limit);
+    }
+
+    /**
+     * 归档段没有按操作人建立过滤器，只查询热表
+     */
+    @Override
+    public List<DataAuditLog> findRecentByOperator(String operator, int limit) {
+        return delegate.findRecentByOperator(operator, limit);
+    }
+
+    @Override
+    public List<DataAuditLog> findAllById(Collection<Long> ids) {
+        List<DataAuditLog> logs = new ArrayList<>(delegate.findAllById(ids));
+        if (logs.size() < ids.size()) {
+            Set<Long> missing = new HashSet<>(ids);
+            logs.forEach(log -> missing.remove(log.getId()));
+            logs.addAll(archive.findAllById(missing));
+        }
+        return logs;
+    }
+
+    /**
+     * 补录只关心最近写入的记录，归档中的都是早已过期的旧记录
+     */
+    @Override
+    public List<DataAuditLog> findByIdGreaterThan(long id, int limit) {
+        return delegate.findByIdGreaterThan(id, limit);
+    }
+
+    private static List<DataAuditLog> merge(List<DataAuditLog> hot, List<DataAuditLog> cold, int limit) {
+        List<DataAuditLog> merged = new ArrayList<>(Math.min(limit, hot.size() + cold.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < hot.size() || j < cold.size())) {
+            if (j >= cold.size() || (i < hot.size() && LATEST_FIRST.compare(hot.get(i), cold.get(j)) <= 0)) {
+                merged.add(hot.get(i++));
+            } else {
+                merged.add(cold.get(j++));
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,58 @@
+package com.duan.reader;
+
+import com.duan.entity.DataAuditLog;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 审计日志的查询入口，与 {@link com.duan.writer.AuditLogWriter} 对应
+ */
+public interface AuditLogReader {
+    Comparator<DataAuditLog> LATEST_FIRST = Comparator
+            .comparing(DataAuditLog::getOperateTime, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(DataAuditLog::getId, Comparator.reverseOrder());
+
+    /**
+     * 查询指定表在时间范围内的审计日志，按操作时间、id 倒序
+     */
+    Page<DataAuditLog> findByTableNameAndTimeRange(String tableName,
+                                                   LocalDateTime startTime,
+                                                   LocalDateTime endTime,
+                                                   Pageable pageable);
+
+    /**
+     * 查询指定表在时间范围内变更过某一列的 UPDATE 审计日志，按操作时间、id 倒序
+     */
+    Page<DataAuditLog> findByTableNameAndChangedColumn(String tableName,
+                                                       String columnName,
+                                                       LocalDateTime startTime,
+                                                       LocalDateTime endTime,
+                                                       Pageable pageable);
+
+    /**
+     * 查询一行（表名 + 主键值）的审计日志，按操作时间、id 倒序取前 limit 条
+     */
+    List<DataAuditLog> findByTableNameAndPrimaryKey(String tableName, String primaryKeyValue, int limit);
+
+    /**
+     * 查询指定表最近的 limit 条审计日志，按操作时间、id 倒序
+     */
+    List<DataAuditLog> findRecentByTableName(String tableName, int limit);
+
+    /**
+     * 查询指定操作人最近的 limit 条审计日志，按操作时间、id 倒序
+     */
+    List<DataAuditLog> findRecentByOperator(String operator, int limit);
+
+    List<DataAuditLog> findAllById(Collection<Long> ids);
+
+    /**
+     * 按 id 升序读取大于指定 id 的审计日志，用于补录
+     */
+    List<DataAuditLog> findByIdGreaterThan(long id, int limit);
+}
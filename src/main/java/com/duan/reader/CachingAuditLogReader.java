@@ -0,0 +1,74 @@
+package com.duan.reader;
+
+import com.duan.cache.RecentChangesCache;
+import com.duan.entity.DataAuditLog;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 最近的记录直接由 {@link RecentChangesCache} 返回，缓存不能完整回答的查询交给下层
+ */
+public class CachingAuditLogReader implements AuditLogReader {
+    private final AuditLogReader delegate;
+    private final RecentChangesCache cache;
+
+    public CachingAuditLogReader(AuditLogReader delegate, RecentChangesCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Page<DataAuditLog> findByTableNameAndTimeRange(String tableName,
+                                                          LocalDateTime startTime,
+                                                          LocalDateTime endTime,
+                                                          Pageable pageable) {
+        List<DataAuditLog> cached = cache.findByTableNameAndTimeRange(tableName, startTime, endTime);
+        if (cached == null) {
+            return delegate.findByTableNameAndTimeRange(tableName, startTime, endTime, pageable);
+        }
+        int from = (int) Math.min(pageable.getOffset(), cached.size());
+        int to = Math.min(cached.size(), from + pageable.getPageSize());
+        return new PageImpl<>(cached.subList(from, to), pageable, cached.size());
+    }
+
+    @Override
+    public Page<DataAuditLog> findByTableNameAndChangedColumn(String tableName,
+                                                              String columnName,
+                                                              LocalDateTime startTime,
+                                                              LocalDateTime endTime,
+                                                              Pageable pageable) {
+        return delegate.findByTableNameAndChangedColumn(tableName, columnName, startTime, endTime, pageable);
+    }
+
+    @Override
+    public List<DataAuditLog> findByTableNameAndPrimaryKey(String tableName, String primaryKeyValue, int limit) {
+        return delegate.findByTableNameAndPrimaryKey(tableName, primaryKeyValue, limit);
+    }
+
+    @Override
+    public List<DataAuditLog> findRecentByTableName(String tableName, int limit) {
+        List<DataAuditLog> cached = cache.findRecentByTableName(tableName, limit);
+        return cached != null ? cached : delegate.findRecentByTableName(tableName, limit);
+    }
+
+    @Override
+    public List<DataAuditLog> findRecentByOperator(String operator, int limit) {
+        List<DataAuditLog> cached = cache.findRecentByOperator(operator, limit);
+        return cached != null ? cached : delegate.findRecentByOperator(operator, limit);
+    }
+
+    @Override
+    public List<DataAuditLog> findAllById(Collection<Long> ids) {
+        return delegate.findAllById(ids);
+    }
+
+    @Override
+    public List<DataAuditLog> findByIdGreaterThan(long id, int limit) {
+        return delegate.findByIdGreaterThan(id, limit);
+    }
+}
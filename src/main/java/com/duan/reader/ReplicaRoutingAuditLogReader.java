@@ -0,0 +1,100 @@
+package com.duan.reader;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.replica.ReadConsistencyHint;
+import com.duan.replica.ReplicaLagMonitor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 查询优先读只读副本：副本延迟过大、请求要求强一致或读己之写条件不满足时读主库，读副本失败时改读主库
+ */
+public class ReplicaRoutingAuditLogReader implements AuditLogReader {
+    private final AuditLogReader primary;
+    private final AuditLogReader replica;
+    private final ReplicaLagMonitor monitor;
+
+    public ReplicaRoutingAuditLogReader(AuditLogReader primary, AuditLogReader replica, ReplicaLagMonitor monitor) {
+        this.primary = primary;
+        this.replica = replica;
+        this.monitor = monitor;
+    }
+
+    @Override
+    public Page<DataAuditLog> findByTableNameAndTimeRange(String tableName,
+                                                          LocalDateTime startTime,
+                                                          LocalDateTime endTime,
+                                                          Pageable pageable) {
+        return read(reader -> reader.findByTableNameAndTimeRange(tableName, startTime, endTime, pageable));
+    }
+
+    @Override
+    public Page<DataAuditLog> findByTableNameAndChangedColumn(String tableName,
+                                                              String columnName,
+                                                              LocalDateTime startTime,
+                                                              LocalDateTime endTime,
+                                                              Pageable pageable) {
+        return read(reader -> reader.findByTableNameAndChangedColumn(tableName, columnName, startTime, endTime,
+                pageable));
+    }
+
+    @Override
+    public List<DataAuditLog> findByTableNameAndPrimaryKey(String tableName, String primaryKeyValue, int limit) {
+        return read(reader -> reader.findByTableNameAndPrimaryKey(tableName, primaryKeyValue, limit));
+    }
+
+    @Override
+    public List<DataAuditLog> findRecentByTableName(String tableName, int limit) {
+        return read(reader -> reader.findRecentByTableName(tableName, limit));
+    }
+
+    @Override
+    public List<DataAuditLog> findRecentByOperator(String operator, int limit) {
+        return read(reader -> reader.findRecentByOperator(operator, limit));
+    }
+
+    /**
+     * id 通常来自索引等刚写入的数据，副本上还没有的再到主库查
+     */
+    @Override
+    public List<DataAuditLog> findAllById(Collection<Long> ids) {
+        List<DataAuditLog> logs = new ArrayList<>(read(reader -> reader.findAllById(ids)));
+        if (logs.size() < ids.size()) {
+            Set<Long> missing = new HashSet<>(ids);
+            logs.forEach(log -> missing.remove(log.getId()));
+            if (!missing.isEmpty()) {
+                logs.addAll(primary.findAllById(missing));
+            }
+        }
+        return logs;
+    }
+
+    /**
+     * 补录要读到最新写入的记录，始终读主库
+     */
+    @Override
+    public List<DataAuditLog> findByIdGreaterThan(long id, int limit) {
+        return primary.findByIdGreaterThan(id, limit);
+    }
+
+    private <T> T read(Function<AuditLogReader, T> query) {
+        if (!monitor.useReplica(ReadConsistencyHint.current())) {
+            return query.apply(primary);
+        }
+        try {
+            return query.apply(replica);
+        } catch (DataAccessException e) {
+            monitor.markFailed(e);
+            return query.apply(primary);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.duan.reader;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.repository.DataAuditLogRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 未分片时直接通过 {@link DataAuditLogRepository} 查询
+ */
+@RequiredArgsConstructor
+public class RepositoryAuditLogReader implements AuditLogReader {
+    private static final Sort LATEST_FIRST_SORT = Sort.by(Sort.Direction.DESC, "operateTime", "id");
+
+    private final DataAuditLogRepository dataAuditLogRepository;
+
+    @Override
+    public Page<DataAuditLog> findByTableNameAndTimeRange(String tableName,
+                                                          LocalDateTime startTime,
+                                                          LocalDateTime endTime,
+                                                          Pageable pageable) {
+        return dataAuditLogRepository.findByTableNameAndTimeRange(tableName, startTime, endTime,
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), LATEST_FIRST_SORT));
+    }
+
+    @Override
+    public Page<DataAuditLog> findByTableNameAndChangedColumn(String tableName,
+                                                              String columnName,
+                                                              LocalDateTime startTime,
+                                                              LocalDateTime endTime,
+                                                              Pageable pageable) {
+        // 原生查询自带排序
+        return dataAuditLogRepository.findByTableNameAndChangedColumn(tableName, columnName, startTime, endTime,
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+    }
+
+    @Override
+    public List<DataAuditLog> findByTableNameAndPrimaryKey(String tableName, String primaryKeyValue, int limit) {
+        return dataAuditLogRepository.findByTableNameAndPrimaryKeyValue(tableName, primaryKeyValue,
+                PageRequest.of(0, limit, LATEST_FIRST_SORT));
+    }
+
+    @Override
+    public List<DataAuditLog> findRecentByTableName(String tableName, int limit) {
+        return dataAuditLogRepository.findByTableName(tableName, PageRequest.of(0, limit, LATEST_FIRST_SORT));
+    }
+
+    @Override
+    public List<DataAuditLog> findRecentByOperator(String operator, int limit) {
+        return dataAuditLogRepository.findByOperator(operator, PageRequest.of(0, limit, LATEST_FIRST_SORT));
+    }
+
+    @Override
+    public List<DataAuditLog> findAllById(Collection<Long> ids) {
+        return dataAuditLogRepository.findAllById(ids);
+    }
+
+    @Override
+    public List<DataAuditLog> findByIdGreaterThan(long id, int limit) {
+        return dataAuditLogRepository.findByIdGreaterThan(id, PageRequest.of(0, limit, Sort.by("id")));
+    }
+}
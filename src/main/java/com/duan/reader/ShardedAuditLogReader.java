@@ -0,0 +1,219 @@
+package com.duan.reader;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.shard.AuditShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 分片审计日志的查询：并行扇出到各分片，每个分片返回已排好序的结果，再做 k 路归并
+ * <p>
+ * 路由能确定表所在分片时（如按表名路由），按表查询只访问该分片
+ */
+@Slf4j
+public class ShardedAuditLogReader implements AuditLogReader {
+    private static final String COLUMNS = "id, table_name, operation_type, primary_key_name, primary_key_value, " +
+            "old_value, new_value, operator, operate_time, row_sequence, changed_columns, remark";
+    private static final RowMapper<DataAuditLog> ROW_MAPPER = BeanPropertyRowMapper.newInstance(DataAuditLog.class);
+    private static final Comparator<DataAuditLog> BY_ID = Comparator.comparing(DataAuditLog::getId);
+
+    private final List<JdbcTemplate> shards;
+    private final AuditShardRouter router;
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private final ExecutorService queryExecutor;
+
+    public ShardedAuditLogReader(List<JdbcTemplate> shards, AuditShardRouter router) {
+        this.shards = shards;
+        this.router = router;
+        this.queryExecutor = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread thread = new Thread(r, "audit-shard-query-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Page<DataAuditLog> findByTableNameAndTimeRange(String tableName,
+                                                          LocalDateTime startTime,
+                                                          LocalDateTime endTime,
+                                                          Pageable pageable) {
+        // 每个分片取前 offset + size 条，归并后再跳过 offset 条
+        long fetch = pageable.getOffset() + pageable.getPageSize();
+        String where = " FROM sys_data_audit_log WHERE table_name = ? AND operate_time BETWEEN ? AND ?";
+        Object[] args = {tableName, Timestamp.valueOf(startTime), Timestamp.valueOf(endTime)};
+
+        List<JdbcTemplate> targets = shardsOf(tableName);
+        List<ShardPage> pages = fanOut(targets, jdbcTemplate -> new ShardPage(
+                jdbcTemplate.query("SELECT " + COLUMNS + where + " ORDER BY operate_time DESC, id DESC LIMIT ?",
+                        ROW_MAPPER, tableName, args[1], args[2], fetch),
+                jdbcTemplate.queryForObject("SELECT COUNT(*)" + where, Long.class, args)));
+
+        long total = pages.stream().mapToLong(ShardPage::total).sum();
+        List<DataAuditLog> merged = merge(pages.stream().map(ShardPage::rows).toList(), LATEST_FIRST,
+                pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(merged, pageable, total);
+    }
+
+    @Override
+    public Page<DataAuditLog> findByTableNameAndChangedColumn(String tableName,
+                                                              String columnName,
+                                                              LocalDateTime startTime,
+                                                              LocalDateTime endTime,
+                                                              Pageable pageable) {
+        long fetch = pageable.getOffset() + pageable.getPageSize();
+        String where = " FROM sys_data_audit_log WHERE table_name = ? AND ? MEMBER OF (changed_columns) " +
+                "AND operate_time BETWEEN ? AND ?";
+        Object[] args = {tableName, columnName, Timestamp.valueOf(startTime), Timestamp.valueOf(endTime)};
+
+        List<ShardPage> pages = fanOut(shardsOf(tableName), jdbcTemplate -> new ShardPage(
+                jdbcTemplate.query("SELECT " + COLUMNS + where + " ORDER BY operate_time DESC, id DESC LIMIT ?",
+                        ROW_MAPPER, tableName, columnName, args[2], args[3], fetch),
+                jdbcTemplate.queryForObject("SELECT COUNT(*)" + where, Long.class, args)));
+
+        long total = pages.stream().mapToLong(ShardPage::total).sum();
+        List<DataAuditLog> merged = merge(pages.stream().map(ShardPage::rows).toList(), LATEST_FIRST,
+                pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(merged, pageable, total);
+    }
+
+    @Override
+    public List<DataAuditLog> findByTableNameAndPrimaryKey(String tableName, String primaryKeyValue, int limit) {
+        List<List<DataAuditLog>> results = fanOut(shardsOf(tableName), jdbcTemplate -> jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM sys_data_audit_log WHERE table_name = ? AND primary_key_value = ? " +
+                        "ORDER BY operate_time DESC, id DESC LIMIT ?",
+                ROW_MAPPER, tableName, primaryKeyValue, limit));
+        return merge(results, LATEST_FIRST, 0, limit);
+    }
+
+    @Override
+    public List<DataAuditLog> findRecentByTableName(String tableName, int limit) {
+        List<List<DataAuditLog>> results = fanOut(shardsOf(tableName), jdbcTemplate -> jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM sys_data_audit_log WHERE table_name = ? " +
+                        "ORDER BY operate_time DESC, id DESC LIMIT ?",
+                ROW_MAPPER, tableName, limit));
+        return merge(results, LATEST_FIRST, 0, limit);
+    }
+
+    @Override
+    public List<DataAuditLog> findRecentByOperator(String operator, int limit) {
+        List<List<DataAuditLog>> results = fanOut(shards, jdbcTemplate -> jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM sys_data_audit_log WHERE operator = ? " +
+                        "ORDER BY operate_time DESC, id DESC LIMIT ?",
+                ROW_MAPPER, operator, limit));
+        return merge(results, LATEST_FIRST, 0, limit);
+    }
+
+    @Override
+    public List<DataAuditLog> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String placeholders = ids.stream().map(id -> "?").collect(Collectors.joining(","));
+        Object[] args = ids.toArray();
+        List<List<DataAuditLog>> results = fanOut(shards, jdbcTemplate -> jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM sys_data_audit_log WHERE id IN (" + placeholders + ")", ROW_MAPPER, args));
+        List<DataAuditLog> logs = new ArrayList<>();
+        results.forEach(logs::addAll);
+        return logs;
+    }
+
+    @Override
+    public List<DataAuditLog> findByIdGreaterThan(long id, int limit) {
+        List<List<DataAuditLog>> results = fanOut(shards, jdbcTemplate -> jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM sys_data_audit_log WHERE id > ? ORDER BY id LIMIT ?",
+                ROW_MAPPER, id, limit));
+        return merge(results, BY_ID, 0, limit);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        queryExecutor.shutdown();
+    }
+
+    private List<JdbcTemplate> shardsOf(String tableName) {
+        OptionalInt shard = router.routeTable(tableName, shards.size());
+        return shard.isPresent() ? List.of(shards.get(shard.getAsInt())) : shards;
+    }
+
+    private <T> List<T> fanOut(List<JdbcTemplate> targets, Function<JdbcTemplate, T> query) {
+        if (targets.size() == 1) {
+            return List.of(query.apply(targets.get(0)));
+        }
+        List<CompletableFuture<T>> futures = targets.stream()
+                .map(jdbcTemplate -> CompletableFuture.supplyAsync(() -> query.apply(jdbcTemplate), queryExecutor))
+                .toList();
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    /**
+     * 对各分片已排序的结果做 k 路归并，跳过前 offset 条后最多取 limit 条
+     */
+    private static List<DataAuditLog> merge(List<List<DataAuditLog>> sortedRuns,
+                                            Comparator<DataAuditLog> order,
+                                            long offset,
+                                            int limit) {
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, sortedRuns.size()),
+                (a, b) -> order.compare(a.current(), b.current()));
+        for (List<DataAuditLog> run : sortedRuns) {
+            if (!run.isEmpty()) {
+                heap.add(new Cursor(run));
+            }
+        }
+
+        List<DataAuditLog> merged = new ArrayList<>(limit);
+        long skipped = 0;
+        while (!heap.isEmpty() && merged.size() < limit) {
+            Cursor cursor = heap.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                merged.add(cursor.current());
+            }
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private record ShardPage(List<DataAuditLog> rows, Long total) {
+    }
+
+    private static final class Cursor {
+        private final List<DataAuditLog> run;
+        private int position;
+
+        Cursor(List<DataAuditLog> run) {
+            this.run = run;
+        }
+
+        DataAuditLog current() {
+            return run.get(position);
+        }
+
+        boolean advance() {
+            return ++position < run.size();
+        }
+    }
+}
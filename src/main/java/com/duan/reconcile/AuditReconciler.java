@@ -0,0 +1,442 @@
+package com.duan.reconcile;
+
+import com.duan.config.AuditConfig;
+import com.duan.config.AuditDataSources;
+import com.duan.enums.MismatchType;
+import com.duan.enums.ReconciliationStatus;
+import com.duan.metadata.ColumnMetadata;
+import com.duan.metadata.TableMetadataProvider;
+import com.duan.reconstruct.AuditStateReconstructor;
+import com.duan.reconstruct.RowState;
+import com.duan.registry.AuditedTableRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * 审计日志与业务表当前数据的对账
+ * <p>
+ * 先按审计日志重建每行的当前数据，按主键区间累加行数和校验和；再用 ForkJoinPool 把业务表的主键空间
+ * 递归拆分到区间，每个区间在库里计算行数和校验和（BIT_XOR(CRC32(...))），一致的区间不传输任何行，
+ * 只有不一致的区间才逐行取回比较。
+ * <p>
+ * 只比较文本形式在两边完全一致的列（整数、CHAR/VARCHAR、ENUM/SET），时间、小数、大字段等不参与比较；
+ * 目前只支持单列整数主键的表
+ */
+@Slf4j
+public class AuditReconciler {
+    private static final Set<String> INTEGRAL_TYPES =
+            Set.of("tinyint", "smallint", "mediumint", "int", "integer", "bigint");
+    private static final Set<String> TEXT_TYPES = Set.of("char", "varchar", "enum", "set");
+    private static final char SEPARATOR = '\u001f';
+    private static final String NULL_MARK = "\u0000";
+
+    private final AuditConfig auditConfig;
+    private final AuditedTableRegistry auditedTableRegistry;
+    private final TableMetadataProvider metadataProvider;
+    private final AuditStateReconstructor reconstructor;
+    private final JdbcTemplate liveJdbcTemplate;
+    private final Map<String, ReconciliationReport> reports = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService manualExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "audit-reconciliation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AuditReconciler(AuditConfig auditConfig,
+                           AuditedTableRegistry auditedTableRegistry,
+                           TableMetadataProvider metadataProvider,
+                           AuditStateReconstructor reconstructor,
+                           AuditDataSources auditDataSources) {
+        this.auditConfig = auditConfig;
+        this.auditedTableRegistry = auditedTableRegistry;
+        this.metadataProvider = metadataProvider;
+        this.reconstructor = reconstructor;
+        this.liveJdbcTemplate = auditDataSources.getReadJdbcTemplate();
+    }
+
+    @Scheduled(cron = "${audit.reconciliation.cron:0 0 3 * * *}")
+    public void reconcileAll() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Another reconciliation is still running, skip");
+            return;
+        }
+        try {
+            AuditConfig.Reconciliation config = auditConfig.getReconciliation();
+            List<String> tables = config.getTables().isEmpty()
+                    ? auditedTableRegistry.getAuditedTableNames()
+                    : config.getTables();
+            // 所有表共用一个截止时间
+            LocalDateTime deadline = LocalDateTime.now().plusMinutes(config.getMaxDurationMinutes());
+            for (String tableName : tables) {
+                reconcile(tableName, deadline);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 在后台立即对账一张表，同一时间只运行一个手动对账，返回 false 表示已有对账在运行
+     */
+    public boolean submit(String tableName) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        manualExecutor.execute(() -> {
+            try {
+                reconcile(tableName, LocalDateTime.now().plusMinutes(
+                        auditConfig.getReconciliation().getMaxDurationMinutes()));
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 各表最近一次的对账报告，按表名排序
+     */
+    public List<ReconciliationReport> getReports() {
+        return new TreeMap<>(reports).values().stream().toList();
+    }
+
+    public ReconciliationReport getReport(String tableName) {
+        return reports.get(tableName);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        manualExecutor.shutdownNow();
+    }
+
+    private ReconciliationReport reconcile(String tableName, LocalDateTime deadline) {
+        ReconciliationReport report = new ReconciliationReport();
+        report.setTableName(tableName);
+        report.setStatus(ReconciliationStatus.RUNNING);
+        report.setStartedAt(LocalDateTime.now());
+        reports.put(tableName, report);
+        try {
+            Run run = prepare(tableName, report);
+            if (run != null) {
+                run.execute(deadline);
+            }
+        } catch (Exception e) {
+            log.error("Reconcile table {} failed", tableName, e);
+            report.setStatus(ReconciliationStatus.FAILED);
+            report.setReason(e.getMessage());
+        }
+        report.setFinishedAt(LocalDateTime.now());
+        return report;
+    }
+
+    private Run prepare(String tableName, ReconciliationReport report) {
+        Map<String, ColumnMetadata> metadata = metadataProvider.getTableMetadata(tableName);
+        List<ColumnMetadata> primaryKeys = metadata.values().stream().filter(ColumnMetadata::isPrimaryKey).toList();
+        if (primaryKeys.size() != 1 || !INTEGRAL_TYPES.contains(typeOf(primaryKeys.get(0)))) {
+            report.setStatus(ReconciliationStatus.SKIPPED);
+            report.setReason("Only tables with a single integral primary key are supported");
+            return null;
+        }
+        String primaryKey = primaryKeys.get(0).getColumnName();
+        List<String> columns = metadata.values().stream()
+                .filter(column -> !column.isPrimaryKey())
+                .filter(column -> INTEGRAL_TYPES.contains(typeOf(column)) || TEXT_TYPES.contains(typeOf(column)))
+                .map(ColumnMetadata::getColumnName)
+                .sorted()
+                .toList();
+        report.setColumns(columns);
+        return new Run(tableName, primaryKey, columns, report);
+    }
+
+    private static String typeOf(ColumnMetadata column) {
+        return column.getDataType() != null ? column.getDataType().toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    /**
+     * 与库里 CAST(... AS CHAR) 得到的文本一致
+     */
+    private static String canonical(Object value) {
+        if (value == null) {
+            return NULL_MARK;
+        }
+        if (value instanceof Boolean bool) {
+            return bool ? "1" : "0";
+        }
+        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            return new BigDecimal(value.toString()).stripTrailingZeros().toPlainString();
+        }
+        return value.toString();
+    }
+
+    private static long checksum(long key, List<String> columns, Map<String, ?> values) {
+        StringBuilder text = new StringBuilder().append(key);
+        for (String column : columns) {
+            text.append(SEPARATOR).append(canonical(values.get(column)));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(text.toString().getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static Long parseKey(String primaryKeyValue) {
+        try {
+            return Long.parseLong(primaryKeyValue);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 一张表的一次对账
+     */
+    private final class Run {
+        private final String tableName;
+        private final String primaryKey;
+        private final List<String> columns;
+        private final ReconciliationReport report;
+        private final String rowExpression;
+        private final AtomicLong liveRows = new AtomicLong();
+        private final AtomicLong checkedRanges = new AtomicLong();
+        private final AtomicLong mismatchedRanges = new AtomicLong();
+        private final List<RowMismatch> mismatches = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicLong mismatchCount = new AtomicLong();
+        private final AtomicBoolean timedOut = new AtomicBoolean();
+        private LocalDateTime asOf;
+        private long min;
+        private long width;
+        private int rangeCount;
+        private long[] auditCounts;
+        private long[] auditChecksums;
+        private long auditRows;
+
+        Run(String tableName, String primaryKey, List<String> columns, ReconciliationReport report) {
+            this.tableName = tableName;
+            this.primaryKey = primaryKey;
+            this.columns = columns;
+            this.report = report;
+            StringBuilder expression = new StringBuilder("CONCAT_WS(CHAR(31 USING utf8mb4), ").append(quote(primaryKey));
+            for (String column : columns) {
+                expression.append(", COALESCE(CAST(").append(quote(column))
+                        .append(" AS CHAR), CHAR(0 USING utf8mb4))");
+            }
+            this.rowExpression = expression.append(")").toString();
+        }
+
+        void execute(LocalDateTime deadline) {
+            AuditConfig.Reconciliation config = auditConfig.getReconciliation();
+            asOf = LocalDateTime.now();
+            report.setAsOf(asOf);
+
+            Map<String, Object> bounds = liveJdbcTemplate.queryForMap("SELECT MIN(" + quote(primaryKey) + ") AS lo, MAX("
+                    + quote(primaryKey) + ") AS hi FROM " + quote(tableName));
+            if (bounds.get("lo") != null) {
+                min = ((Number) bounds.get("lo")).longValue();
+                long max = ((Number) bounds.get("hi")).longValue();
+                long span = max - min + 1;
+                width = Math.max(config.getRangeSize(), (span + config.getMaxRanges() - 1) / config.getMaxRanges());
+                rangeCount = (int) ((span + width - 1) / width);
+            }
+            report.setRanges(rangeCount);
+            auditCounts = new long[rangeCount];
+            auditChecksums = new long[rangeCount];
+
+            // 审计侧：重建当前数据，按区间累加，业务表主键范围之外的行业务表中一定不存在
+            reconstructor.reconstructTable(tableName, asOf, rowState -> {
+                Long key = parseKey(rowState.getPrimaryKeyValue());
+                if (key == null) {
+                    return;
+                }
+                auditRows++;
+                int range = rangeOf(key);
+                if (range < 0) {
+                    addMismatch(new RowMismatch(rowState.getPrimaryKeyValue(), MismatchType.MISSING_IN_LIVE, null));
+                    return;
+                }
+                auditCounts[range]++;
+                auditChecksums[range] ^= checksum(key, columns, rowState.getState());
+            });
+
+            // 业务侧：按区间在库里计算校验和，只有不一致的区间才逐行比较
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.getParallelism()));
+            try {
+                pool.invoke(new RangeTask(0, rangeCount, deadline));
+            } finally {
+                pool.shutdown();
+            }
+
+            recheck();
+            report.setLiveRows(liveRows.get());
+            report.setAuditRows(auditRows);
+            report.setCheckedRanges(checkedRanges.get());
+            report.setMismatchedRanges(mismatchedRanges.get());
+            report.setMismatchCount(mismatchCount.get());
+            report.setMismatches(new ArrayList<>(mismatches));
+            report.setStatus(mismatchCount.get() > 0
+                    ? ReconciliationStatus.INCONSISTENT
+                    : timedOut.get() ? ReconciliationStatus.INCOMPLETE : ReconciliationStatus.CONSISTENT);
+        }
+
+        private int rangeOf(long key) {
+            if (rangeCount == 0 || key < min) {
+                return -1;
+            }
+            long range = (key - min) / width;
+            return range < rangeCount ? (int) range : -1;
+        }
+
+        void checkRange(int range) {
+            long lower = min + range * width;
+            long upper = lower + width - 1;
+            Map<String, Object> live = liveJdbcTemplate.queryForMap("SELECT COUNT(*) AS cnt, COALESCE(BIT_XOR(CRC32("
+                    + rowExpression + ")), 0) AS checksum FROM " + quote(tableName) + " WHERE " + quote(primaryKey)
+                    + " BETWEEN ? AND ?", lower, upper);
+            long count = ((Number) live.get("cnt")).longValue();
+            long checksum = ((Number) live.get("checksum")).longValue();
+            liveRows.addAndGet(count);
+            checkedRanges.incrementAndGet();
+            if (count != auditCounts[range] || checksum != auditChecksums[range]) {
+                mismatchedRanges.incrementAndGet();
+                compareRows(lower, upper);
+            }
+        }
+
+        /**
+         * 取回区间内业务表的行和审计日志重建的行逐一比较
+         */
+        private void compareRows(long lower, long upper) {
+            Map<String, Map<String, Object>> liveRows = new LinkedHashMap<>();
+            String select = "SELECT " + quote(primaryKey) + (columns.isEmpty() ? "" : ", ") + columns.stream()
+                    .map(AuditReconciler::quote).collect(Collectors.joining(", "));
+            liveJdbcTemplate.query(select + " FROM " + quote(tableName) + " WHERE " + quote(primaryKey)
+                    + " BETWEEN ? AND ?", rs -> {
+                Map<String, Object> values = new HashMap<>();
+                for (int i = 0; i < columns.size(); i++) {
+                    values.put(columns.get(i), rs.getObject(i + 2));
+                }
+                liveRows.put(rs.getString(1), values);
+            }, lower, upper);
+
+            Set<String> keys = new LinkedHashSet<>(liveRows.keySet());
+            keys.addAll(reconstructor.findKeysInRange(tableName, asOf, lower, upper));
+            for (RowState rowState : reconstructor.reconstructRows(tableName, new ArrayList<>(keys), asOf)) {
+                RowMismatch mismatch = compare(rowState, liveRows.get(rowState.getPrimaryKeyValue()));
+                if (mismatch != null) {
+                    addMismatch(mismatch);
+                }
+            }
+        }
+
+        private RowMismatch compare(RowState rowState, Map<String, Object> live) {
+            String key = rowState.getPrimaryKeyValue();
+            if (!rowState.isExists()) {
+                return live != null ? new RowMismatch(key, MismatchType.MISSING_IN_AUDIT, null) : null;
+            }
+            if (live == null) {
+                return new RowMismatch(key, MismatchType.MISSING_IN_LIVE, null);
+            }
+            List<String> different = columns.stream()
+                    .filter(column -> !canonical(rowState.getState().get(column)).equals(canonical(live.get(column))))
+                    .toList();
+            return different.isEmpty() ? null : new RowMismatch(key, MismatchType.VALUE_MISMATCH, different);
+        }
+
+        private void addMismatch(RowMismatch mismatch) {
+            mismatchCount.incrementAndGet();
+            synchronized (mismatches) {
+                if (mismatches.size() < auditConfig.getReconciliation().getMaxReportedMismatches()) {
+                    mismatches.add(mismatch);
+                }
+            }
+        }
+
+        /**
+         * 对账期间仍在变化的行可能被误判，对列出的行按最新数据再比较一次
+         */
+        private void recheck() {
+            synchronized (mismatches) {
+                if (mismatches.isEmpty()) {
+                    return;
+                }
+                LocalDateTime now = LocalDateTime.now();
+                List<String> keys = mismatches.stream().map(RowMismatch::getPrimaryKeyValue).toList();
+                Map<String, RowState> states = reconstructor.reconstructRows(tableName, keys, now).stream()
+                        .collect(Collectors.toMap(RowState::getPrimaryKeyValue, s -> s, (a, b) -> a));
+                Iterator<RowMismatch> iterator = mismatches.iterator();
+                while (iterator.hasNext()) {
+                    RowMismatch mismatch = iterator.next();
+                    RowState rowState = states.get(mismatch.getPrimaryKeyValue());
+                    if (rowState != null && compare(rowState, liveRow(mismatch.getPrimaryKeyValue())) == null) {
+                        iterator.remove();
+                        mismatchCount.decrementAndGet();
+                    }
+                }
+            }
+        }
+
+        private Map<String, Object> liveRow(String primaryKeyValue) {
+            List<Map<String, Object>> found = liveJdbcTemplate.query("SELECT " + (columns.isEmpty() ? quote(primaryKey)
+                    : columns.stream().map(AuditReconciler::quote).collect(Collectors.joining(", "))) + " FROM "
+                    + quote(tableName) + " WHERE " + quote(primaryKey) + " = ?", (rs, rowNum) -> {
+                Map<String, Object> values = new HashMap<>();
+                for (int i = 0; i < columns.size(); i++) {
+                    values.put(columns.get(i), rs.getObject(i + 1));
+                }
+                return values;
+            }, primaryKeyValue);
+            return found.isEmpty() ? null : found.get(0);
+        }
+
+        /**
+         * 把区间 [from, to) 对半拆分直到单个区间
+         */
+        private final class RangeTask extends RecursiveAction {
+            private final int from;
+            private final int to;
+            private final LocalDateTime deadline;
+
+            RangeTask(int from, int to, LocalDateTime deadline) {
+                this.from = from;
+                this.to = to;
+                this.deadline = deadline;
+            }
+
+            @Override
+            protected void compute() {
+                if (from >= to) {
+                    return;
+                }
+                if (LocalDateTime.now().isAfter(deadline)) {
+                    timedOut.set(true);
+                    return;
+                }
+                if (to - from == 1) {
+                    checkRange(from);
+                    return;
+                }
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(from, middle, deadline), new RangeTask(middle, to, deadline));
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.duan.reconcile;
+
+import com.duan.enums.ReconciliationStatus;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一张表的审计日志与业务表当前数据的对账结果
+ */
+@Data
+public class ReconciliationReport {
+    private String tableName;
+    private ReconciliationStatus status;
+    private String reason;                  // SKIPPED/FAILED 的原因
+    private LocalDateTime asOf;             // 审计日志重建的时间点
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private List<String> columns = new ArrayList<>();  // 参与比较的列
+    private long liveRows;                  // 已校验区间内业务表的行数
+    private long auditRows;                 // 审计日志重建出的行数
+    private long ranges;                    // 主键区间总数
+    private long checkedRanges;
+    private long mismatchedRanges;          // 校验和不一致、逐行比较过的区间数
+    private long mismatchCount;             // 不一致的行数
+    private List<RowMismatch> mismatches = new ArrayList<>();  // 最多 max-reported-mismatches 条
+}
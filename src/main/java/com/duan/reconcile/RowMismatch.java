@@ -0,0 +1,17 @@
+package com.duan.reconcile;
+
+import com.duan.enums.MismatchType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RowMismatch {
+    private String primaryKeyValue;
+    private MismatchType type;
+    private List<String> columns;   // 值不同的列，仅 VALUE_MISMATCH
+}
@@ -0,0 +1,362 @@
+package com.duan.reconstruct;
+
+import com.duan.compaction.AuditSnapshot;
+import com.duan.compaction.AuditSnapshotCompactor;
+import com.duan.config.AuditConfig;
+import com.duan.config.AuditDataSources;
+import com.duan.entity.DataAuditLog;
+import com.duan.shard.AuditShardRouter;
+import com.duan.utils.AuditLogImages;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * 按审计日志重建行在任意时间点的数据
+ * <p>
+ * 开启快照压缩时，每行从该时间点之前最近的快照开始重放，只读取快照之后的审计日志；否则从第一条日志开始重放。
+ * 整表重建按主键区间拆分，各区间并行、分批重放。已移入冷归档且没有快照覆盖的记录不参与重放
+ */
+public class AuditStateReconstructor {
+    private static final String LOG_COLUMNS = "id, primary_key_value, operation_type, new_value, changed_columns, operate_time";
+    private static final RowMapper<DataAuditLog> LOG_MAPPER = BeanPropertyRowMapper.newInstance(DataAuditLog.class);
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final AuditConfig auditConfig;
+    private final AuditShardRouter router;
+    private final AuditSnapshotCompactor compactor;
+    private final AuditLogImages auditLogImages;
+    private final List<JdbcTemplate> stores;
+    private final boolean sharded;
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private final ExecutorService executor;
+
+    /**
+     * @param compactor 快照压缩，未开启时为 null
+     */
+    public AuditStateReconstructor(AuditConfig auditConfig,
+                                   AuditDataSources auditDataSources,
+                                   AuditShardRouter router,
+                                   AuditSnapshotCompactor compactor,
+                                   AuditLogImages auditLogImages) {
+        this.auditConfig = auditConfig;
+        this.auditLogImages = auditLogImages;
+        this.router = router;
+        this.compactor = compactor;
+        this.sharded = auditDataSources.getShardCount() > 0;
+        this.stores = sharded
+                ? auditDataSources.getShardJdbcTemplates()
+                : List.of(auditDataSources.getWriteJdbcTemplate());
+        this.executor = Executors.newFixedThreadPool(Math.max(1, auditConfig.getReconstruction().getParallelism()), r -> {
+            Thread thread = new Thread(r, "audit-reconstruct-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 重建一行在指定时间点（含）的数据
+     */
+    public RowState reconstructRow(String tableName, String primaryKeyValue, LocalDateTime time) {
+        AuditSnapshot checkpoint = compactor != null
+                ? compactor.findLatestSnapshot(tableName, primaryKeyValue, time)
+                : null;
+        RowState rowState = newRowState(tableName, primaryKeyValue, time, checkpoint);
+        int batchSize = auditConfig.getReconstruction().getBatchSize();
+
+        for (int store : storesOf(tableName)) {
+            LocalDateTime afterTime = afterTime(checkpoint);
+            long afterId = afterId(checkpoint);
+            List<DataAuditLog> batch;
+            do {
+                batch = stores.get(store).query("SELECT " + LOG_COLUMNS + " FROM sys_data_audit_log " +
+                                "WHERE table_name = ? AND primary_key_value = ? AND operate_time <= ? " +
+                                "AND (operate_time > ? OR (operate_time = ? AND id > ?)) ORDER BY operate_time, id LIMIT ?",
+                        LOG_MAPPER, tableName, primaryKeyValue, Timestamp.valueOf(time),
+                        Timestamp.valueOf(afterTime), Timestamp.valueOf(afterTime), afterId, batchSize);
+                batch.forEach(auditLog -> replay(rowState, auditLog));
+                if (!batch.isEmpty()) {
+                    DataAuditLog last = batch.get(batch.size() - 1);
+                    afterTime = last.getOperateTime();
+                    afterId = last.getId();
+                }
+            } while (batch.size() == batchSize);
+        }
+        return rowState;
+    }
+
+    /**
+     * 重建整张表在指定时间点（含）存在的所有行，逐行交给 sink
+     * <p>
+     * 各主键区间并行重放，sink 的调用已串行化，但行之间没有顺序保证。sink 抛出异常时停止重建
+     */
+    public void reconstructTable(String tableName, LocalDateTime time, Consumer<RowState> sink) {
+        Consumer<RowState> serialized = rowState -> {
+            synchronized (sink) {
+                sink.accept(rowState);
+            }
+        };
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int store : storesOf(tableName)) {
+            List<String> bounds = keyRangeBounds(store, tableName, time);
+            for (int i = 0; i + 1 < bounds.size(); i++) {
+                String lower = bounds.get(i);
+                String upper = bounds.get(i + 1);
+                futures.add(executor.submit(() -> reconstructRange(store, tableName, time, lower, upper, serialized)));
+            }
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reconstructing table " + tableName, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime
+                    ? runtime
+                    : new IllegalStateException("Reconstruct table " + tableName + " failed", e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * 重建多行在指定时间点（含）的数据，结果与 keys 顺序一致
+     */
+    public List<RowState> reconstructRows(String tableName, List<String> keys, LocalDateTime time) {
+        Map<String, RowState> merged = new LinkedHashMap<>();
+        keys.forEach(key -> merged.put(key, null));
+        int keyBatchSize = auditConfig.getReconstruction().getKeyBatchSize();
+        for (int store : storesOf(tableName)) {
+            for (int from = 0; from < keys.size(); from += keyBatchSize) {
+                List<String> batch = keys.subList(from, Math.min(keys.size(), from + keyBatchSize));
+                for (RowState rowState : replayKeys(store, tableName, batch, time)) {
+                    // 分片时只有一个库里有该行的记录
+                    RowState existing = merged.get(rowState.getPrimaryKeyValue());
+                    if (existing == null || rowState.getLastOperateTime() != null) {
+                        merged.put(rowState.getPrimaryKeyValue(), rowState);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * 时间点之前出现过的、数值落在 [lower, upper] 内的整数主键
+     */
+    public List<String> findKeysInRange(String tableName, LocalDateTime time, long lower, long upper) {
+        KeySource keys = keySource(tableName, time);
+        List<Object> args = new ArrayList<>(List.of(keys.args()));
+        args.add(lower);
+        args.add(upper);
+        List<String> found = new ArrayList<>();
+        for (int store : storesOf(tableName)) {
+            found.addAll(stores.get(store).queryForList("SELECT primary_key_value FROM (" + keys.sql() + ") k " +
+                            "WHERE primary_key_value REGEXP '^-?[0-9]+$' AND CAST(primary_key_value AS SIGNED) BETWEEN ? AND ?",
+                    String.class, args.toArray()));
+        }
+        return found;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 按主键把表划分成若干区间，返回区间边界，首尾的 null 表示不限
+     */
+    private List<String> keyRangeBounds(int store, String tableName, LocalDateTime time) {
+        AuditConfig.Reconstruction config = auditConfig.getReconstruction();
+        KeySource keys = keySource(tableName, time);
+        Long count = stores.get(store).queryForObject("SELECT COUNT(*) FROM (" + keys.sql() + ") k",
+                Long.class, keys.args());
+        long total = count != null ? count : 0;
+        int ranges = (int) Math.max(1, Math.min(config.getParallelism(), total / config.getKeyBatchSize()));
+
+        List<String> bounds = new ArrayList<>();
+        bounds.add(null);
+        for (int i = 1; i < ranges; i++) {
+            List<Object> args = new ArrayList<>(List.of(keys.args()));
+            args.add(total * i / ranges);
+            bounds.addAll(stores.get(store).queryForList("SELECT primary_key_value FROM (" + keys.sql() + ") k " +
+                    "ORDER BY primary_key_value LIMIT 1 OFFSET ?", String.class, args.toArray()));
+        }
+        bounds.add(null);
+        return bounds;
+    }
+
+    /**
+     * 在主键区间 [lower, upper) 内按主键顺序分批取行，每批用一次查询重放
+     */
+    private void reconstructRange(int store,
+                                  String tableName,
+                                  LocalDateTime time,
+                                  String lower,
+                                  String upper,
+                                  Consumer<RowState> sink) {
+        KeySource keys = keySource(tableName, time);
+        int keyBatchSize = auditConfig.getReconstruction().getKeyBatchSize();
+        String after = null;
+        List<String> batch;
+        do {
+            StringBuilder sql = new StringBuilder("SELECT primary_key_value FROM (").append(keys.sql()).append(") k WHERE 1 = 1");
+            List<Object> args = new ArrayList<>(List.of(keys.args()));
+            if (after != null) {
+                sql.append(" AND primary_key_value > ?");
+                args.add(after);
+            } else if (lower != null) {
+                sql.append(" AND primary_key_value >= ?");
+                args.add(lower);
+            }
+            if (upper != null) {
+                sql.append(" AND primary_key_value < ?");
+                args.add(upper);
+            }
+            sql.append(" ORDER BY primary_key_value LIMIT ?");
+            args.add(keyBatchSize);
+
+            batch = stores.get(store).queryForList(sql.toString(), String.class, args.toArray());
+            for (RowState rowState : replayKeys(store, tableName, batch, time)) {
+                if (rowState.isExists()) {
+                    sink.accept(rowState);
+                }
+            }
+            if (!batch.isEmpty()) {
+                after = batch.get(batch.size() - 1);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        } while (batch.size() == keyBatchSize);
+    }
+
+    /**
+     * 一次查询取出多行各自快照之后的审计日志，按主键、操作时间、id 顺序重放
+     */
+    private List<RowState> replayKeys(int store, String tableName, List<String> keys, LocalDateTime time) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        Map<String, AuditSnapshot> checkpoints = compactor != null
+                ? compactor.findLatestSnapshots(tableName, keys, time)
+                : Map.of();
+
+        Map<String, RowState> states = new LinkedHashMap<>();
+        StringBuilder ranges = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        args.add(tableName);
+        args.add(Timestamp.valueOf(time));
+        for (String key : keys) {
+            AuditSnapshot checkpoint = checkpoints.get(key);
+            states.put(key, newRowState(tableName, key, time, checkpoint));
+            ranges.append(ranges.isEmpty() ? "" : " OR ")
+                    .append("(primary_key_value = ? AND (operate_time > ? OR (operate_time = ? AND id > ?)))");
+            Timestamp afterTime = Timestamp.valueOf(afterTime(checkpoint));
+            args.add(key);
+            args.add(afterTime);
+            args.add(afterTime);
+            args.add(afterId(checkpoint));
+        }
+
+        stores.get(store).query("SELECT " + LOG_COLUMNS + " FROM sys_data_audit_log " +
+                "WHERE table_name = ? AND operate_time <= ? AND (" + ranges + ") " +
+                "ORDER BY primary_key_value, operate_time, id", rs -> {
+            DataAuditLog auditLog = LOG_MAPPER.mapRow(rs, 0);
+            RowState rowState = states.get(auditLog.getPrimaryKeyValue());
+            if (rowState != null) {
+                replay(rowState, auditLog);
+            }
+        }, args.toArray());
+        return new ArrayList<>(states.values());
+    }
+
+    /**
+     * 快照之后的日志按（operate_time, id）严格大于快照中最后一条日志取，单行和批量重建使用同一边界
+     */
+    private static LocalDateTime afterTime(AuditSnapshot checkpoint) {
+        if (checkpoint == null) {
+            return EPOCH;
+        }
+        return checkpoint.getLastOperateTime() != null ? checkpoint.getLastOperateTime() : checkpoint.getPeriodEnd();
+    }
+
+    private static long afterId(AuditSnapshot checkpoint) {
+        return checkpoint != null && checkpoint.getLastOperateTime() != null && checkpoint.getLastLogId() != null
+                ? checkpoint.getLastLogId()
+                : Long.MIN_VALUE;
+    }
+
+    private static RowState newRowState(String tableName,
+                                        String primaryKeyValue,
+                                        LocalDateTime time,
+                                        AuditSnapshot checkpoint) {
+        RowState rowState = new RowState();
+        rowState.setTableName(tableName);
+        rowState.setPrimaryKeyValue(primaryKeyValue);
+        rowState.setAsOf(time);
+        if (checkpoint != null) {
+            rowState.setState(AuditSnapshotCompactor.stateOf(checkpoint));
+            rowState.setExists(rowState.getState() != null);
+            rowState.setLastLogId(checkpoint.getLastLogId());
+            rowState.setLastOperateTime(checkpoint.getLastOperateTime());
+            rowState.setCheckpoint(checkpoint.getPeriodEnd());
+        }
+        return rowState;
+    }
+
+    private void replay(RowState rowState, DataAuditLog auditLog) {
+        rowState.setState(auditLogImages.replay(rowState.getState(), auditLog));
+        rowState.setExists(rowState.getState() != null);
+        rowState.setLastLogId(auditLog.getId());
+        rowState.setLastOperateTime(auditLog.getOperateTime());
+        rowState.setReplayed(rowState.getReplayed() + 1);
+    }
+
+    /**
+     * 时间点之前出现过的主键：审计日志中的主键，开启快照压缩时加上快照中的主键（原始记录可能已删除）
+     */
+    private KeySource keySource(String tableName, LocalDateTime time) {
+        String sql = "SELECT DISTINCT primary_key_value FROM sys_data_audit_log " +
+                "WHERE table_name = ? AND primary_key_value IS NOT NULL AND operate_time <= ?";
+        if (compactor == null) {
+            return new KeySource(sql, new Object[]{tableName, Timestamp.valueOf(time)});
+        }
+        return new KeySource(sql + " UNION SELECT primary_key_value FROM sys_data_audit_snapshot " +
+                "WHERE table_name = ? AND period_end <= ?",
+                new Object[]{tableName, Timestamp.valueOf(time), tableName, Timestamp.valueOf(time)});
+    }
+
+    private List<Integer> storesOf(String tableName) {
+        if (sharded) {
+            OptionalInt shard = router.routeTable(tableName, stores.size());
+            if (shard.isPresent()) {
+                return List.of(shard.getAsInt());
+            }
+        }
+        return IntStream.range(0, stores.size()).boxed().toList();
+    }
+
+    private record KeySource(String sql, Object[] args) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.duan.reconstruct;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 由审计日志重建的某一行在某个时间点的数据
+ */
+@Data
+public class RowState {
+    private String tableName;
+    private String primaryKeyValue;
+    private LocalDateTime asOf;             // 重建的时间点
+    private boolean exists;                 // 该时间点行是否存在
+    private Map<String, Object> state;      // 行数据，行不存在时为 null
+    private Long lastLogId;                 // 最后应用的审计日志 id
+    private LocalDateTime lastOperateTime;  // 最后一次变更的时间
+    private LocalDateTime checkpoint;       // 重放起点快照的周期终点，从头重放时为 null
+    private long replayed;                  // 重放的审计日志条数
+}
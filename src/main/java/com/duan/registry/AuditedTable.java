@@ -0,0 +1,17 @@
+package com.duan.registry;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditedTable {
+    private String tableName;
+    private LocalDateTime firstSeen;   // 第一条审计记录的时间
+    private LocalDateTime lastSeen;    // 最近一条审计记录的时间
+    private long recordCount;          // 近似的审计记录数
+}
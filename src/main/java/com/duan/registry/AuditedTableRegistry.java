@@ -0,0 +1,193 @@
+package com.duan.registry;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.event.AuditLogListener;
+import com.duan.repository.AuditedTableRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已审计表的注册表：落库时维护内存增量，定期合并到 sys_data_audit_table，
+ * 查询直接读内存快照，不再对审计日志做 DISTINCT 扫描
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AuditedTableRegistry implements AuditLogListener {
+    private final AuditedTableRepository auditedTableRepository;
+
+    // 最近一次从注册表加载的快照，为 null 表示已失效，下次访问时重新加载
+    private volatile Map<String, AuditedTable> persisted;
+    // 尚未合并到注册表的增量
+    private final Map<String, TableDelta> pending = new ConcurrentHashMap<>();
+
+    @Override
+    public void onAuditLogsCommitted(List<DataAuditLog> logs) {
+        logs.forEach(this::record);
+    }
+
+    public void record(DataAuditLog auditLog) {
+        LocalDateTime operateTime = auditLog.getOperateTime() != null
+                ? auditLog.getOperateTime()
+                : LocalDateTime.now();
+        // 在 compute 中累加，与 flush 的 remove 互斥，被移出的 TableDelta 之后不会再有增量
+        pending.compute(auditLog.getTableName(), (tableName, delta) -> {
+            TableDelta target = delta != null ? delta : new TableDelta();
+            target.add(operateTime);
+            return target;
+        });
+    }
+
+    /**
+     * 所有已审计的表名（按名称排序）
+     */
+    public List<String> getAuditedTableNames() {
+        Set<String> names = new TreeSet<>(loadPersisted().keySet());
+        names.addAll(pending.keySet());
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * 所有已审计表的详细信息，包含尚未刷入注册表的增量
+     */
+    public List<AuditedTable> getAuditedTables() {
+        Map<String, AuditedTable> merged = new TreeMap<>();
+        loadPersisted().forEach((name, table) -> merged.put(name, new AuditedTable(
+                name, table.getFirstSeen(), table.getLastSeen(), table.getRecordCount())));
+
+        pending.forEach((name, delta) -> {
+            if (delta.count.sum() == 0) {
+                return;
+            }
+            AuditedTable table = merged.get(name);
+            if (table == null) {
+                merged.put(name, delta.toAuditedTable(name));
+                return;
+            }
+            if (delta.firstSeen.get().isBefore(table.getFirstSeen())) {
+                table.setFirstSeen(delta.firstSeen.get());
+            }
+            if (delta.lastSeen.get().isAfter(table.getLastSeen())) {
+                table.setLastSeen(delta.lastSeen.get());
+            }
+            table.setRecordCount(table.getRecordCount() + delta.count.sum());
+        });
+
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * 使内存快照失效，下次访问时从注册表重新加载（例如其他实例写入了新表）
+     */
+    public void invalidate() {
+        persisted = null;
+    }
+
+    /**
+     * 升级后第一次启动时从历史审计日志回填，在第一次合并增量之前执行
+     */
+    @PostConstruct
+    public void seed() {
+        try {
+            if (auditedTableRepository.seedFromAuditLogOnce()) {
+                log.info("Seeded audited table registry from audit log");
+            }
+        } catch (Exception e) {
+            log.error("Seed audited table registry from audit log failed", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${audit.table-registry.flush-interval-ms:30000}")
+    public void flush() {
+        List<AuditedTable> deltas = new ArrayList<>();
+        for (String tableName : pending.keySet()) {
+            // 先移除再读取，之后到达的增量会进入新的 TableDelta
+            TableDelta delta = pending.remove(tableName);
+            if (delta != null && delta.count.sum() > 0) {
+                deltas.add(delta.toAuditedTable(tableName));
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            auditedTableRepository.upsert(deltas);
+        } catch (Exception e) {
+            log.error("Flush audited table registry failed, {} tables will be retried", deltas.size(), e);
+            deltas.forEach(delta -> pending.computeIfAbsent(delta.getTableName(), k -> new TableDelta())
+                    .merge(delta));
+            return;
+        }
+
+        // 在调度线程上刷新快照，查询线程不需要等待数据库
+        try {
+            persisted = queryPersisted();
+        } catch (Exception e) {
+            log.error("Reload audited table registry failed", e);
+            invalidate();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private Map<String, AuditedTable> loadPersisted() {
+        Map<String, AuditedTable> snapshot = persisted;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            if (persisted == null) {
+                try {
+                    persisted = queryPersisted();
+                } catch (Exception e) {
+                    log.error("Load audited table registry failed", e);
+                    return Collections.emptyMap();
+                }
+            }
+            return persisted;
+        }
+    }
+
+    private Map<String, AuditedTable> queryPersisted() {
+        Map<String, AuditedTable> snapshot = new HashMap<>();
+        auditedTableRepository.findAll().forEach(table -> snapshot.put(table.getTableName(), table));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private static class TableDelta {
+        private final LongAdder count = new LongAdder();
+        private final AtomicReference<LocalDateTime> firstSeen = new AtomicReference<>(LocalDateTime.MAX);
+        private final AtomicReference<LocalDateTime> lastSeen = new AtomicReference<>(LocalDateTime.MIN);
+
+        void add(LocalDateTime operateTime) {
+            // 先更新时间再计数，计数大于 0 时时间一定有效
+            firstSeen.accumulateAndGet(operateTime, (a, b) -> a.isBefore(b) ? a : b);
+            lastSeen.accumulateAndGet(operateTime, (a, b) -> a.isAfter(b) ? a : b);
+            count.increment();
+        }
+
+        void merge(AuditedTable delta) {
+            firstSeen.accumulateAndGet(delta.getFirstSeen(), (a, b) -> a.isBefore(b) ? a : b);
+            lastSeen.accumulateAndGet(delta.getLastSeen(), (a, b) -> a.isAfter(b) ? a : b);
+            count.add(delta.getRecordCount());
+        }
+
+        AuditedTable toAuditedTable(String tableName) {
+            return new AuditedTable(tableName, firstSeen.get(), lastSeen.get(), count.sum());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.duan.replica;
+
+import com.duan.enums.ReadConsistency;
+
+/**
+ * 当前请求的读一致性要求，由 {@link ReadConsistencyInterceptor} 按请求头设置
+ *
+ * @param consistency 一致性级别
+ * @param minLogId    读己之写：该 id 的审计日志已经复制到副本才读副本，0 表示不要求
+ */
+public record ReadConsistencyHint(ReadConsistency consistency, long minLogId) {
+    public static final ReadConsistencyHint DEFAULT = new ReadConsistencyHint(ReadConsistency.EVENTUAL, 0);
+
+    private static final ThreadLocal<ReadConsistencyHint> CURRENT = new ThreadLocal<>();
+
+    public static ReadConsistencyHint current() {
+        ReadConsistencyHint hint = CURRENT.get();
+        return hint != null ? hint : DEFAULT;
+    }
+
+    public static void set(ReadConsistencyHint hint) {
+        CURRENT.set(hint);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
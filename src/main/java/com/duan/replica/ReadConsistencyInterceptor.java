@@ -0,0 +1,50 @@
+package com.duan.replica;
+
+import com.duan.enums.ReadConsistency;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 从请求头读取读一致性要求：
+ * <ul>
+ *     <li>{@code X-Audit-Consistency: STRONG} 本次请求只读主库</li>
+ *     <li>{@code X-Audit-Min-Log-Id: 12345} 该 id 的审计日志已复制到副本才读副本，否则读主库</li>
+ * </ul>
+ */
+public class ReadConsistencyInterceptor implements HandlerInterceptor {
+    public static final String CONSISTENCY_HEADER = "X-Audit-Consistency";
+    public static final String MIN_LOG_ID_HEADER = "X-Audit-Min-Log-Id";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        String consistency = request.getHeader(CONSISTENCY_HEADER);
+        String minLogId = request.getHeader(MIN_LOG_ID_HEADER);
+        if (!StringUtils.hasText(consistency) && !StringUtils.hasText(minLogId)) {
+            return true;
+        }
+        try {
+            ReadConsistencyHint.set(new ReadConsistencyHint(
+                    StringUtils.hasText(consistency)
+                            ? ReadConsistency.valueOf(consistency.trim().toUpperCase())
+                            : ReadConsistency.EVENTUAL,
+                    StringUtils.hasText(minLogId) ? Long.parseLong(minLogId.trim()) : 0));
+            return true;
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid " + CONSISTENCY_HEADER + " or "
+                    + MIN_LOG_ID_HEADER + " header");
+            return false;
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        ReadConsistencyHint.clear();
+    }
+}
@@ -0,0 +1,128 @@
+package com.duan.replica;
+
+import com.duan.enums.ReadConsistency;
+import com.duan.metrics.ReplicaMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 通过心跳估算只读副本的复制延迟，决定查询读副本还是主库
+ * <p>
+ * 每个周期先读副本上的心跳时间和最大审计日志 id，再向主库写入新的心跳。
+ * 副本已经同步到上一次写入的心跳时认为没有延迟，否则延迟为当前时间减去副本上的心跳时间（最多多估一个周期）
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+    private static final int HEARTBEAT_ID = 1;
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMs;
+
+    private volatile boolean healthy;
+    private volatile long lagMs = -1;
+    private volatile long appliedLogId;
+    private volatile LocalDateTime lastCheckTime;
+    // 只在调度线程中读写
+    private LocalDateTime lastBeat;
+
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ReplicaLagMonitor(JdbcTemplate primary, JdbcTemplate replica, long maxLagMs) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagMs = maxLagMs;
+    }
+
+    @Scheduled(fixedDelayString = "${audit.replica.heartbeat-interval-ms:1000}")
+    public void check() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            Timestamp replicaBeat = replica.query("SELECT beat_time FROM sys_data_audit_heartbeat WHERE id = ?",
+                    rs -> rs.next() ? rs.getTimestamp(1) : null, HEARTBEAT_ID);
+            Long maxId = replica.queryForObject("SELECT MAX(id) FROM sys_data_audit_log", Long.class);
+            appliedLogId = maxId != null ? maxId : 0;
+            if (replicaBeat == null) {
+                // 还没有同步到任何心跳
+                lagMs = -1;
+                healthy = false;
+            } else {
+                LocalDateTime applied = replicaBeat.toLocalDateTime();
+                lagMs = lastBeat != null && !applied.isBefore(lastBeat)
+                        ? 0
+                        : Math.max(0, Duration.between(applied, now).toMillis());
+                healthy = lagMs <= maxLagMs;
+            }
+        } catch (Exception e) {
+            if (healthy) {
+                log.warn("Check audit replica lag failed, reading from primary", e);
+            }
+            healthy = false;
+        }
+
+        try {
+            primary.update("REPLACE INTO sys_data_audit_heartbeat (id, beat_time) VALUES (?, ?)",
+                    HEARTBEAT_ID, Timestamp.valueOf(now));
+            lastBeat = now;
+        } catch (Exception e) {
+            log.warn("Write audit heartbeat to primary failed", e);
+        }
+        lastCheckTime = now;
+    }
+
+    /**
+     * 按一致性要求和副本状态决定本次查询是否读副本，并计数
+     */
+    public boolean useReplica(ReadConsistencyHint hint) {
+        boolean useReplica = healthy
+                && hint.consistency() != ReadConsistency.STRONG
+                && (hint.minLogId() <= 0 || isReplicated(hint.minLogId()));
+        (useReplica ? replicaReads : primaryReads).increment();
+        return useReplica;
+    }
+
+    /**
+     * id 在创建时由多个实例分配，提交顺序与 id 顺序不一致，副本上有更大的 id 不代表这条日志已经复制，
+     * 直接在副本上查这条日志
+     */
+    private boolean isReplicated(long logId) {
+        try {
+            return replica.query("SELECT 1 FROM sys_data_audit_log WHERE id = ?", ResultSet::next, logId);
+        } catch (Exception e) {
+            markFailed(e);
+            return false;
+        }
+    }
+
+    /**
+     * 读副本失败，在下一次检查成功前都改读主库
+     */
+    public void markFailed(Exception e) {
+        fallbacks.increment();
+        if (healthy) {
+            log.warn("Read from audit replica failed, reading from primary until next check", e);
+        }
+        healthy = false;
+    }
+
+    public ReplicaMetrics getMetrics() {
+        ReplicaMetrics metrics = new ReplicaMetrics();
+        metrics.setHealthy(healthy);
+        metrics.setLagMs(lagMs);
+        metrics.setAppliedLogId(appliedLogId);
+        metrics.setLastCheckTime(lastCheckTime);
+        metrics.setReplicaReads(replicaReads.sum());
+        metrics.setPrimaryReads(primaryReads.sum());
+        metrics.setFallbacks(fallbacks.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,98 @@
+package com.duan.repository;
+
+import com.duan.config.AuditDataSources;
+import com.duan.enums.StatsGranularity;
+import com.duan.stats.AuditStatsBucket;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+public class AuditStatsRepository {
+    private static final DateTimeFormatter BUCKET_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AuditStatsRepository(AuditDataSources auditDataSources) {
+        this.jdbcTemplate = auditDataSources.getWriteJdbcTemplate();
+    }
+
+    /**
+     * 将分钟级计数累加到汇总表，同一个桶重复刷入时计数叠加
+     */
+    public void upsert(List<AuditStatsBucket> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        String sql = """
+                INSERT INTO sys_data_audit_stats
+                    (bucket_time, table_name, operation_type, operator, change_count)
+                VALUES (?, ?, ?, ?, ?)
+                ON DUPLICATE KEY UPDATE change_count = change_count + VALUES(change_count)
+                """;
+        jdbcTemplate.batchUpdate(sql, buckets, buckets.size(), (ps, bucket) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(bucket.getBucketTime()));
+            ps.setString(2, bucket.getTableName());
+            ps.setString(3, bucket.getOperationType());
+            ps.setString(4, bucket.getOperator());
+            ps.setLong(5, bucket.getChangeCount());
+        });
+    }
+
+    /**
+     * 按时间粒度查询汇总数据，过滤条件为空时不参与过滤
+     *
+     * @param groupByOperator 是否按操作人拆分
+     */
+    public List<AuditStatsBucket> query(StatsGranularity granularity,
+                                        LocalDateTime startTime,
+                                        LocalDateTime endTime,
+                                        String tableName,
+                                        String operationType,
+                                        String operator,
+                                        boolean groupByOperator) {
+        String bucketExpr = "DATE_FORMAT(bucket_time, '" + granularity.getBucketFormat() + "')";
+        String operatorExpr = groupByOperator ? "operator" : "NULL";
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(bucketExpr).append(" AS bucket, table_name, operation_type, ")
+                .append(operatorExpr).append(" AS operator, SUM(change_count) AS change_count")
+                .append(" FROM sys_data_audit_stats WHERE bucket_time >= ? AND bucket_time < ?");
+        List<Object> params = new ArrayList<>();
+        params.add(Timestamp.valueOf(startTime));
+        params.add(Timestamp.valueOf(endTime));
+
+        if (StringUtils.hasText(tableName)) {
+            sql.append(" AND table_name = ?");
+            params.add(tableName);
+        }
+        if (StringUtils.hasText(operationType)) {
+            sql.append(" AND operation_type = ?");
+            params.add(operationType);
+        }
+        if (StringUtils.hasText(operator)) {
+            sql.append(" AND operator = ?");
+            params.add(operator);
+        }
+
+        sql.append(" GROUP BY bucket, table_name, operation_type");
+        if (groupByOperator) {
+            sql.append(", operator");
+        }
+        sql.append(" ORDER BY bucket");
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new AuditStatsBucket(
+                LocalDateTime.parse(rs.getString("bucket"), BUCKET_FORMATTER),
+                rs.getString("table_name"),
+                rs.getString("operation_type"),
+                rs.getString("operator"),
+                rs.getLong("change_count")
+        ), params.toArray());
+    }
+}
@@ -0,0 +1,82 @@
+package com.duan.repository;
+
+import com.duan.config.AuditDataSources;
+import com.duan.registry.AuditedTable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public class AuditedTableRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public AuditedTableRepository(AuditDataSources auditDataSources) {
+        this.jdbcTemplate = auditDataSources.getWriteJdbcTemplate();
+    }
+
+    public List<AuditedTable> findAll() {
+        String sql = "SELECT table_name, first_seen, last_seen, record_count FROM sys_data_audit_table";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new AuditedTable(
+                rs.getString("table_name"),
+                rs.getTimestamp("first_seen").toLocalDateTime(),
+                rs.getTimestamp("last_seen").toLocalDateTime(),
+                rs.getLong("record_count")
+        ));
+    }
+
+    /**
+     * 合并增量：首次出现时间取较早值，最近出现时间取较晚值，记录数累加
+     */
+    public void upsert(List<AuditedTable> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        String sql = """
+                INSERT INTO sys_data_audit_table (table_name, first_seen, last_seen, record_count)
+                VALUES (?, ?, ?, ?)
+                ON DUPLICATE KEY UPDATE
+                    first_seen = LEAST(first_seen, VALUES(first_seen)),
+                    last_seen = GREATEST(last_seen, VALUES(last_seen)),
+                    record_count = record_count + VALUES(record_count)
+                """;
+        jdbcTemplate.batchUpdate(sql, deltas, deltas.size(), (ps, delta) -> {
+            ps.setString(1, delta.getTableName());
+            ps.setTimestamp(2, Timestamp.valueOf(delta.getFirstSeen()));
+            ps.setTimestamp(3, Timestamp.valueOf(delta.getLastSeen()));
+            ps.setLong(4, delta.getRecordCount());
+        });
+    }
+
+    /**
+     * 从审计日志回填注册表，每个库只执行一次（以 sys_data_audit_table_seed 中的标记为准）。
+     * 回填前已合并的增量也来自审计日志，按较早/较晚时间和较大的记录数合并，不会重复累加
+     *
+     * @return 本次是否执行了回填
+     */
+    public boolean seedFromAuditLogOnce() {
+        int claimed = jdbcTemplate.update("INSERT IGNORE INTO sys_data_audit_table_seed (id, seeded_at) VALUES (1, ?)",
+                new Timestamp(System.currentTimeMillis()));
+        if (claimed == 0) {
+            return false;
+        }
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO sys_data_audit_table (table_name, first_seen, last_seen, record_count)
+                    SELECT table_name, MIN(operate_time), MAX(operate_time), COUNT(*)
+                    FROM sys_data_audit_log
+                    GROUP BY table_name
+                    ON DUPLICATE KEY UPDATE
+                        first_seen = LEAST(first_seen, VALUES(first_seen)),
+                        last_seen = GREATEST(last_seen, VALUES(last_seen)),
+                        record_count = GREATEST(record_count, VALUES(record_count))
+                    """);
+        } catch (RuntimeException e) {
+            // 回填失败时撤销标记，下次启动重试
+            jdbcTemplate.update("DELETE FROM sys_data_audit_table_seed WHERE id = 1");
+            throw e;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,10 @@
+package com.duan.repository;
+
+import com.duan.entity.DataAuditLog;
+
+/**
+ * 审计日志的 id 在本地分配，save 会因为 id 非空走 merge，先按 id 查询一次；这里直接 persist
+ */
+public interface DataAuditLogPersister {
+    void persist(DataAuditLog log);
+}
@@ -0,0 +1,18 @@
+package com.duan.repository;
+
+import com.duan.entity.DataAuditLog;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+public class DataAuditLogPersisterImpl implements DataAuditLogPersister {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void persist(DataAuditLog log) {
+        entityManager.persist(log);
+    }
+}
@@ -12,7 +12,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface DataAuditLogRepository extends JpaRepository<DataAuditLog, Long> {
+public interface DataAuditLogRepository extends JpaRepository<DataAuditLog, Long>, DataAuditLogPersister {
     @Query("SELECT d FROM DataAuditLog d WHERE d.tableName = :tableName " +
             "AND d.operateTime BETWEEN :startTime AND :endTime")
     Page<DataAuditLog> findByTableNameAndTimeRange(
@@ -22,6 +22,28 @@ public interface DataAuditLogRepository extends JpaRepository<DataAuditLog, Long
             Pageable pageable
     );
 
-    @Query("SELECT DISTINCT d.tableName FROM DataAuditLog d")
-    List<String> findAllAuditedTables();
+    /**
+     * changed_columns 上有多值索引，MEMBER OF 直接走索引，不解析前后镜像
+     */
+    @Query(value = "SELECT * FROM sys_data_audit_log WHERE table_name = :tableName " +
+            "AND :columnName MEMBER OF (changed_columns) AND operate_time BETWEEN :startTime AND :endTime " +
+            "ORDER BY operate_time DESC, id DESC",
+            countQuery = "SELECT COUNT(*) FROM sys_data_audit_log WHERE table_name = :tableName " +
+                    "AND :columnName MEMBER OF (changed_columns) AND operate_time BETWEEN :startTime AND :endTime",
+            nativeQuery = true)
+    Page<DataAuditLog> findByTableNameAndChangedColumn(
+            @Param("tableName") String tableName,
+            @Param("columnName") String columnName,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime,
+            Pageable pageable
+    );
+
+    List<DataAuditLog> findByTableNameAndPrimaryKeyValue(String tableName, String primaryKeyValue, Pageable pageable);
+
+    List<DataAuditLog> findByTableName(String tableName, Pageable pageable);
+
+    List<DataAuditLog> findByOperator(String operator, Pageable pageable);
+
+    List<DataAuditLog> findByIdGreaterThan(Long id, Pageable pageable);
 }
@@ -0,0 +1,208 @@
+package com.duan.row;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * 审计镜像中的一行：按 {@link RowSchema} 的列下标保存值，整数列以 long 原样保存，不装箱
+ * <p>
+ * 未出现的列（如 UPDATE 只 SET 了部分列）与值为 NULL 的列分开标记，序列化时不输出未出现的列，
+ * NULL 写成显式的 null，重放 UPDATE 时才能把列置空
+ */
+public final class Row {
+    private static final byte ABSENT = 0;
+    private static final byte NULL = 1;
+    private static final byte OBJECT = 2;
+    private static final byte LONG = 3;
+
+    private final RowSchema schema;
+    private final Object[] values;
+    private final byte[] states;
+    private long[] longs;
+
+    public Row(RowSchema schema) {
+        this.schema = schema;
+        this.values = new Object[schema.size()];
+        this.states = new byte[schema.size()];
+    }
+
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * 按列名赋值，列不在表结构中时返回 false
+     */
+    public boolean set(String columnName, Object value) {
+        int index = schema.indexOf(columnName);
+        if (index < 0) {
+            return false;
+        }
+        set(index, value);
+        return true;
+    }
+
+    public void set(int index, Object value) {
+        if (value == null) {
+            values[index] = null;
+            states[index] = NULL;
+        } else if (schema.isIntegral(index) && (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte)) {
+            setLong(index, ((Number) value).longValue());
+        } else {
+            values[index] = value;
+            states[index] = OBJECT;
+        }
+    }
+
+    public void setLong(int index, long value) {
+        if (longs == null) {
+            longs = new long[values.length];
+        }
+        longs[index] = value;
+        values[index] = null;
+        states[index] = LONG;
+    }
+
+    public void remove(int index) {
+        values[index] = null;
+        states[index] = ABSENT;
+    }
+
+    public boolean isPresent(int index) {
+        return states[index] != ABSENT;
+    }
+
+    /**
+     * 列存在且值不为 NULL
+     */
+    public boolean hasValue(int index) {
+        return states[index] == OBJECT || states[index] == LONG;
+    }
+
+    public Object get(int index) {
+        return states[index] == LONG ? Long.valueOf(longs[index]) : values[index];
+    }
+
+    public Object get(String columnName) {
+        int index = schema.indexOf(columnName);
+        return index >= 0 ? get(index) : null;
+    }
+
+    public boolean isEmpty() {
+        for (byte state : states) {
+            if (state != ABSENT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Row copy() {
+        Row copy = new Row(schema);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        System.arraycopy(states, 0, copy.states, 0, states.length);
+        if (longs != null) {
+            copy.longs = longs.clone();
+        }
+        return copy;
+    }
+
+    /**
+     * 用另一行中出现的列覆盖本行
+     */
+    public void overlay(Row other) {
+        boolean sameSchema = other.schema == schema;
+        for (int i = 0; i < other.states.length; i++) {
+            if (other.states[i] == ABSENT) {
+                continue;
+            }
+            int index = sameSchema ? i : schema.indexOf(other.schema.columnName(i));
+            if (index < 0) {
+                continue;
+            }
+            if (other.states[i] == LONG) {
+                setLong(index, other.longs[i]);
+            } else {
+                set(index, other.values[i]);
+            }
+        }
+    }
+
+    /**
+     * 以 JSON 对象写出出现的列
+     *
+     * @param include 列过滤条件，为 null 时写出全部列
+     */
+    public void writeTo(JsonGenerator generator, Predicate<String> include) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < states.length; i++) {
+            if (!isPresent(i)) {
+                continue;
+            }
+            String columnName = schema.columnName(i);
+            if (include != null && !include.test(columnName)) {
+                continue;
+            }
+            generator.writeFieldName(columnName);
+            writeValue(generator, i);
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * 以位置数组写出出现的列：[版本号, [值...], [列下标...]]，列名由版本号对应的列表给出。
+     * 从第一列起连续出现时省略列下标（稠密形式），值数组中的 null 都表示 NULL
+     *
+     * @param schemaVersion 本行结构在 sys_data_audit_schema_version 中的版本号
+     * @param include       列过滤条件，为 null 时写出全部列
+     */
+    public void writePositionalTo(JsonGenerator generator, long schemaVersion, Predicate<String> include)
+            throws IOException {
+        int present = 0;
+        int last = -1;
+        for (int i = 0; i < states.length; i++) {
+            if (written(i, include)) {
+                present++;
+                last = i;
+            }
+        }
+        boolean dense = present == last + 1;
+
+        generator.writeStartArray();
+        generator.writeNumber(schemaVersion);
+        generator.writeStartArray();
+        for (int i = 0; i <= last; i++) {
+            if (written(i, include)) {
+                writeValue(generator, i);
+            }
+        }
+        generator.writeEndArray();
+        if (!dense) {
+            generator.writeStartArray();
+            for (int i = 0; i <= last; i++) {
+                if (written(i, include)) {
+                    generator.writeNumber(i);
+                }
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+    }
+
+    private boolean written(int index, Predicate<String> include) {
+        return isPresent(index) && (include == null || include.test(schema.columnName(index)));
+    }
+
+    private void writeValue(JsonGenerator generator, int index) throws IOException {
+        if (states[index] == NULL) {
+            generator.writeNull();
+        } else if (states[index] == LONG) {
+            generator.writeNumber(longs[index]);
+        } else {
+            generator.writeObject(values[index]);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.duan.row;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 一张表的列布局：列下标与列名的对应关系，以及哪些列是整数列
+ * <p>
+ * 按表缓存、所有行共享，{@link Row} 只保存值数组，不再为每行保存列名
+ */
+public final class RowSchema {
+    private static final Set<String> INTEGRAL_TYPES =
+            Set.of("tinyint", "smallint", "mediumint", "int", "integer", "bigint");
+
+    private final String tableName;
+    private final String[] columns;
+    private final boolean[] integral;
+    private final Map<String, Integer> positions;   // 列名 -> 下标
+    private final Map<String, Integer> lowerCasePositions;  // 小写列名 -> 下标，MySQL 列名不区分大小写
+
+    private RowSchema(String tableName, String[] columns, boolean[] integral) {
+        this.tableName = tableName;
+        this.columns = columns;
+        this.integral = integral;
+        this.positions = new HashMap<>(columns.length * 2);
+        this.lowerCasePositions = new HashMap<>(columns.length * 2);
+        for (int i = 0; i < columns.length; i++) {
+            positions.put(columns[i], i);
+            lowerCasePositions.put(columns[i].toLowerCase(Locale.ROOT), i);
+        }
+    }
+
+    /**
+     * @param dataTypes 与列一一对应的 INFORMATION_SCHEMA.COLUMNS.DATA_TYPE，未知时为 null
+     */
+    public static RowSchema of(String tableName, List<String> columns, List<String> dataTypes) {
+        String[] names = columns.toArray(new String[0]);
+        boolean[] integral = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String dataType = dataTypes != null ? dataTypes.get(i) : null;
+            integral[i] = dataType != null && INTEGRAL_TYPES.contains(dataType.toLowerCase(Locale.ROOT));
+        }
+        return new RowSchema(tableName, names, integral);
+    }
+
+    /**
+     * 没有表元数据时按实际出现的列临时构建
+     */
+    public static RowSchema adhoc(String tableName, List<String> columns) {
+        return of(tableName, columns, null);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public int size() {
+        return columns.length;
+    }
+
+    public String columnName(int index) {
+        return columns[index];
+    }
+
+    public boolean isIntegral(int index) {
+        return integral[index];
+    }
+
+    /**
+     * 列名对应的下标，不存在时返回 -1
+     */
+    public int indexOf(String columnName) {
+        Integer index = positions.get(columnName);
+        if (index == null) {
+            index = lowerCasePositions.get(columnName.toLowerCase(Locale.ROOT));
+        }
+        return index != null ? index : -1;
+    }
+}
@@ -0,0 +1,74 @@
+package com.duan.row;
+
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把单行查询结果直接读成 {@link Row}，没有结果时返回空行，多于一行时抛出异常（与 queryForMap 一致）
+ */
+public class SingleRowExtractor implements ResultSetExtractor<Row> {
+    private final RowSchema schema;
+
+    /**
+     * @param schema 表结构，没有列时按结果集的列临时构建
+     */
+    public SingleRowExtractor(RowSchema schema) {
+        this.schema = schema;
+    }
+
+    @Override
+    public Row extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        RowSchema rowSchema = schema.size() > 0 ? schema : adhocSchema(schema.getTableName(), metaData);
+
+        if (!rs.next()) {
+            return new Row(rowSchema);
+        }
+
+        Row row = new Row(rowSchema);
+        for (int i = 1; i <= columnCount; i++) {
+            int index = rowSchema.indexOf(JdbcUtils.lookupColumnName(metaData, i));
+            if (index < 0) {
+                continue;
+            }
+            if (rowSchema.isIntegral(index) && isPrimitiveLong(metaData.getColumnClassName(i))) {
+                // 整数列直接读 long，不经过包装对象
+                long value = rs.getLong(i);
+                if (rs.wasNull()) {
+                    row.set(index, null);
+                } else {
+                    row.setLong(index, value);
+                }
+            } else {
+                row.set(index, JdbcUtils.getResultSetValue(rs, i));
+            }
+        }
+
+        if (rs.next()) {
+            throw new IncorrectResultSizeDataAccessException(1, 2);
+        }
+        return row;
+    }
+
+    static RowSchema adhocSchema(String tableName, ResultSetMetaData metaData) throws SQLException {
+        List<String> columns = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.add(JdbcUtils.lookupColumnName(metaData, i));
+        }
+        return RowSchema.adhoc(tableName, columns);
+    }
+
+    static boolean isPrimitiveLong(String className) {
+        // BIGINT UNSIGNED 为 BigInteger，TINYINT(1) 为 Boolean，这些仍按对象读取
+        return "java.lang.Integer".equals(className) || "java.lang.Long".equals(className)
+                || "java.lang.Short".equals(className) || "java.lang.Byte".equals(className);
+    }
+}
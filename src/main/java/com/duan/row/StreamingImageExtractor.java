@@ -0,0 +1,173 @@
+package com.duan.row;
+
+import com.duan.utils.JsonUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 把单行查询结果直接写成镜像 JSON，整行不在内存中落成任何集合
+ * <p>
+ * 列值读出后立即按列过滤写入 JsonGenerator；只有 retain 指定的列（如主键）同时保存到返回的 {@link Row}。
+ * 每次查询使用一个实例，查询后通过 {@link #getJson()} 取结果
+ */
+public class StreamingImageExtractor implements ResultSetExtractor<Row> {
+    private final RowSchema schema;
+    private final Predicate<String> include;
+    private final Predicate<String> retain;
+    private final BiFunction<String, Object, Object> transform;
+    private final Function<RowSchema, Long> schemaVersion;
+    private String json;
+
+    /**
+     * @param include   写入 JSON 的列，为 null 时全部列
+     * @param retain    需要保留在返回行中的列
+     * @param transform     写出前对非整数列值的处理（列名, 值），为 null 时原样写出
+     * @param schemaVersion 行结构对应的版本号，返回非 null 时写成位置数组（见 {@link Row#writePositionalTo}）
+     */
+    public StreamingImageExtractor(RowSchema schema,
+                                   Predicate<String> include,
+                                   Predicate<String> retain,
+                                   BiFunction<String, Object, Object> transform,
+                                   Function<RowSchema, Long> schemaVersion) {
+        this.schema = schema;
+        this.include = include;
+        this.retain = retain;
+        this.transform = transform;
+        this.schemaVersion = schemaVersion;
+    }
+
+    @Override
+    public Row extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        RowSchema rowSchema = schema.size() > 0 ? schema : SingleRowExtractor.adhocSchema(schema.getTableName(), metaData);
+        Row row = new Row(rowSchema);
+        if (!rs.next()) {
+            return row;
+        }
+
+        Long version = schemaVersion.apply(rowSchema);
+        json = JsonUtils.toJson(generator -> writeRow(rs, metaData, row, version, generator));
+
+        if (rs.next()) {
+            throw new IncorrectResultSizeDataAccessException(1, 2);
+        }
+        return row;
+    }
+
+    /**
+     * 镜像 JSON，查询没有结果时为 null
+     */
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * 以列名为键写出；有版本号时写成稀疏的位置数组，列下标在读取结果集时收集、最后写出
+     */
+    private void writeRow(ResultSet rs, ResultSetMetaData metaData, Row row, Long version, JsonGenerator generator)
+            throws SQLException, IOException {
+        RowSchema rowSchema = row.getSchema();
+        List<Integer> positions = version != null ? new ArrayList<>() : null;
+        if (version != null) {
+            generator.writeStartArray();
+            generator.writeNumber(version);
+            generator.writeStartArray();
+        } else {
+            generator.writeStartObject();
+        }
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            int index = rowSchema.indexOf(JdbcUtils.lookupColumnName(metaData, i));
+            if (index < 0) {
+                continue;
+            }
+            String columnName = rowSchema.columnName(index);
+            boolean write = include == null || include.test(columnName);
+            boolean keep = retain.test(columnName);
+            if (!write && !keep) {
+                // 不需要的列不从结果集中取值
+                continue;
+            }
+
+            if (rowSchema.isIntegral(index) && SingleRowExtractor.isPrimitiveLong(metaData.getColumnClassName(i))) {
+                long value = rs.getLong(i);
+                if (rs.wasNull()) {
+                    writeNull(generator, columnName, index, positions, write);
+                    if (keep) {
+                        row.set(index, null);
+                    }
+                    continue;
+                }
+                if (write) {
+                    writeName(generator, columnName, index, positions);
+                    generator.writeNumber(value);
+                }
+                if (keep) {
+                    row.setLong(index, value);
+                }
+                continue;
+            }
+
+            Object value = JdbcUtils.getResultSetValue(rs, i);
+            if (value == null) {
+                writeNull(generator, columnName, index, positions, write);
+                if (keep) {
+                    row.set(index, null);
+                }
+                continue;
+            }
+            if (transform != null) {
+                value = transform.apply(columnName, value);
+            }
+            if (write) {
+                writeName(generator, columnName, index, positions);
+                generator.writeObject(value);
+            }
+            if (keep) {
+                row.set(index, value);
+            }
+        }
+        if (version != null) {
+            generator.writeEndArray();
+            generator.writeStartArray();
+            for (int position : positions) {
+                generator.writeNumber(position);
+            }
+            generator.writeEndArray();
+            generator.writeEndArray();
+        } else {
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * NULL 写成显式的 null，重放时才能把列置空
+     */
+    private static void writeNull(JsonGenerator generator, String columnName, int index, List<Integer> positions,
+                                  boolean write) throws IOException {
+        if (write) {
+            writeName(generator, columnName, index, positions);
+            generator.writeNull();
+        }
+    }
+
+    private static void writeName(JsonGenerator generator, String columnName, int index, List<Integer> positions)
+            throws IOException {
+        if (positions != null) {
+            positions.add(index);
+        } else {
+            generator.writeFieldName(columnName);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.duan.schema;
+
+import com.duan.row.RowSchema;
+import com.duan.utils.JsonUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 表结构版本注册表：每张表的每一种列布局对应一个版本号，位置数组形式的镜像通过版本号找到列名
+ * <p>
+ * 版本按（表名, 列名列表的摘要）去重，表结构变化后元数据中的列布局不同，第一次写入时自动登记新版本。
+ * 版本一经登记不再修改，多实例并发登记同一布局时得到同一个版本号
+ */
+public class AuditSchemaRegistry {
+    private static final TypeReference<List<String>> COLUMNS_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    // 元数据按表缓存 RowSchema，按实例识别即可，不必每次拼接列名
+    private final Map<RowSchema, Long> versionsBySchema = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<Long, List<String>> columnsByVersion = new ConcurrentHashMap<>();
+
+    public AuditSchemaRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 行结构对应的版本号，尚未登记时登记
+     */
+    public long versionOf(RowSchema schema) {
+        Long version = versionsBySchema.get(schema);
+        if (version != null) {
+            return version;
+        }
+        List<String> columns = new ArrayList<>(schema.size());
+        for (int i = 0; i < schema.size(); i++) {
+            columns.add(schema.columnName(i));
+        }
+        String columnNames = JsonUtils.toJson(columns);
+        String hash = DigestUtils.md5DigestAsHex(columnNames.getBytes(StandardCharsets.UTF_8));
+
+        jdbcTemplate.update("INSERT IGNORE INTO sys_data_audit_schema_version " +
+                        "(table_name, columns_hash, column_names, created_at) VALUES (?, ?, ?, ?)",
+                schema.getTableName(), hash, columnNames, Timestamp.valueOf(LocalDateTime.now()));
+        version = jdbcTemplate.queryForObject("SELECT id FROM sys_data_audit_schema_version " +
+                "WHERE table_name = ? AND columns_hash = ?", Long.class, schema.getTableName(), hash);
+
+        columnsByVersion.putIfAbsent(version, List.copyOf(columns));
+        versionsBySchema.put(schema, version);
+        return version;
+    }
+
+    /**
+     * 版本号对应的列名，按列下标排列
+     */
+    public List<String> columnsOf(long version) {
+        List<String> columns = columnsByVersion.get(version);
+        if (columns != null) {
+            return columns;
+        }
+        List<String> loaded = jdbcTemplate.query("SELECT column_names FROM sys_data_audit_schema_version WHERE id = ?",
+                rs -> rs.next() ? JsonUtils.fromJson(rs.getString(1), COLUMNS_TYPE) : null, version);
+        if (loaded == null) {
+            throw new IllegalStateException("Unknown audit schema version: " + version);
+        }
+        columns = List.copyOf(loaded);
+        columnsByVersion.putIfAbsent(version, columns);
+        return columns;
+    }
+}
@@ -3,30 +3,41 @@ package com.duan.service;
 import com.duan.config.AuditConfig;
 import com.duan.entity.DataAuditLog;
 import com.duan.enums.OperationType;
+import com.duan.id.AuditIdGenerator;
 import com.duan.repository.DataAuditLogRepository;
+import com.duan.row.Row;
+import com.duan.row.RowSchema;
+import com.duan.row.SingleRowExtractor;
+import com.duan.row.StreamingImageExtractor;
 import com.duan.utils.JsonUtils;
 import com.duan.utils.SQLInfo;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AuditService {
+    // 组件自身的表（审计日志、统计汇总等）统一使用该前缀，不参与审计
+    public static final String AUDIT_TABLE_PREFIX = "sys_data_audit";
+
     protected final AuditConfig auditConfig;
     protected final DataAuditLogRepository dataAuditLogRepository;
     protected final JdbcTemplate jdbcTemplate;
+    protected final AuditIdGenerator auditIdGenerator;
 
     //    @Async("auditExecutor")
     public void saveAuditLog(SQLInfo sqlInfo) {
@@ -37,7 +48,7 @@ public class AuditService {
         log.debug("needAudit");
         try {
             DataAuditLog log = createAuditLog(sqlInfo);
-            dataAuditLogRepository.save(log);
+            dataAuditLogRepository.persist(log);
         } catch (Exception e) {
             log.error("Save audit log failed", e);
             // 重试机制
@@ -45,30 +56,74 @@ public class AuditService {
         }
     }
 
-    public Map<String, Object> getBeforeData(SQLInfo sqlInfo) {
-        String selectSql = String.format("SELECT * FROM %s WHERE %s",
-                sqlInfo.getTableName(), sqlInfo.getWhereClause());
-        try {
-            return jdbcTemplate.queryForMap(selectSql);
-        } catch (EmptyResultDataAccessException e) {
-            return Collections.emptyMap();
+    public Row getBeforeData(SQLInfo sqlInfo) {
+        String tableName = sqlInfo.getTableName();
+        String selectSql = String.format("SELECT %s FROM %s WHERE %s",
+                imageColumns(tableName), tableName, sqlInfo.getWhereClause());
+        if (sqlInfo.getOperationType() == OperationType.DELETE) {
+            // DELETE 的前镜像只用于生成审计日志，直接从结果集写成 JSON
+            StreamingImageExtractor extractor = new StreamingImageExtractor(rowSchema(tableName),
+                    columnFilter(tableName), retainedImageColumns(tableName), imageValueTransform(tableName),
+                    schema -> imageSchemaVersion(tableName, schema));
+            Row keys = jdbcTemplate.query(selectSql, extractor);
+            sqlInfo.setOldJson(extractor.getJson());
+            return keys;
         }
+        return jdbcTemplate.query(selectSql, new SingleRowExtractor(rowSchema(tableName)));
     }
 
-    public Map<String, Object> getAfterData(SQLInfo sqlInfo) {
+    public Row getAfterData(SQLInfo sqlInfo) {
         if (sqlInfo.getOperationType() == OperationType.INSERT) {
             String selectSql = String.format("SELECT * FROM %s WHERE %s",
                     sqlInfo.getTableName(),
                     buildPrimaryKeyWhere(sqlInfo.getNewData()));
-            try {
-                return jdbcTemplate.queryForMap(selectSql);
-            } catch (EmptyResultDataAccessException e) {
-                return Collections.emptyMap();
-            }
+            return jdbcTemplate.query(selectSql, new SingleRowExtractor(rowSchema(sqlInfo.getTableName())));
         }
         return getBeforeData(sqlInfo);
     }
 
+    /**
+     * 镜像查询的 SELECT 列表
+     */
+    protected String imageColumns(String tableName) {
+        return "*";
+    }
+
+    /**
+     * 镜像查询结果使用的行结构，默认按查询结果的列构建
+     */
+    protected RowSchema rowSchema(String tableName) {
+        return RowSchema.adhoc(tableName, List.of());
+    }
+
+    /**
+     * 直接写成 JSON 的镜像中仍需保留在行里的列
+     */
+    protected Predicate<String> retainedImageColumns(String tableName) {
+        return columnName -> false;
+    }
+
+    /**
+     * 直接写成 JSON 的镜像对列值的处理（列名, 值），为 null 时原样写出
+     */
+    protected BiFunction<String, Object, Object> imageValueTransform(String tableName) {
+        return null;
+    }
+
+    /**
+     * 镜像以位置数组存储时引用的表结构版本号，返回 null 时以列名为键存储
+     */
+    protected Long imageSchemaVersion(String tableName, RowSchema schema) {
+        return null;
+    }
+
+    /**
+     * 镜像写入审计日志前的处理
+     */
+    protected Row prepareImage(String tableName, Row image) {
+        return image;
+    }
+
     protected boolean needAudit(SQLInfo sqlInfo) {
         if (!auditConfig.isEnabled()) {
             return false;
@@ -76,7 +131,7 @@ public class AuditService {
 
         String tableName = sqlInfo.getTableName();
 
-        if (tableName.equals("sys_data_audit_log")) {
+        if (tableName.startsWith(AUDIT_TABLE_PREFIX)) {
             return false;
         }
 
@@ -97,36 +152,88 @@ public class AuditService {
 
     protected DataAuditLog createAuditLog(SQLInfo sqlInfo) {
         DataAuditLog log = new DataAuditLog();
+        log.setId(auditIdGenerator.nextId());
         log.setTableName(sqlInfo.getTableName());
         log.setOperationType(sqlInfo.getOperationType().toString());
         log.setOperateTime(LocalDateTime.now());
         log.setOperator(getCurrentOperator());
+        // 在镜像截断、外置等处理之前比较原始值
+        log.setChangedColumns(changedColumns(sqlInfo, columnFilter(sqlInfo.getTableName())));
 
-        if (sqlInfo.getOldData() != null) {
-            log.setOldValue(JsonUtils.toJson(filterColumns(
-                    sqlInfo.getTableName(), sqlInfo.getOldData())));
+        if (sqlInfo.getOldJson() != null) {
+            log.setOldValue(sqlInfo.getOldJson());
+        } else if (sqlInfo.getOldData() != null) {
+            log.setOldValue(imageJson(sqlInfo.getTableName(), prepareImage(sqlInfo.getTableName(), sqlInfo.getOldData())));
         }
 
         if (sqlInfo.getNewData() != null) {
-            log.setNewValue(JsonUtils.toJson(filterColumns(
-                    sqlInfo.getTableName(), sqlInfo.getNewData())));
+            log.setNewValue(imageJson(sqlInfo.getTableName(), prepareImage(sqlInfo.getTableName(), sqlInfo.getNewData())));
         }
 
         return log;
     }
 
-    private Map<String, Object> filterColumns(String tableName, Map<String, Object> data) {
+    private String imageJson(String tableName, Row image) {
+        Long schemaVersion = imageSchemaVersion(tableName, image.getSchema());
+        return schemaVersion != null
+                ? JsonUtils.toPositionalJson(image, schemaVersion, columnFilter(tableName))
+                : JsonUtils.toJson(image, columnFilter(tableName));
+    }
+
+    /**
+     * UPDATE 中值有变化的列，按后镜像的列顺序写成 JSON 数组；前镜像中没有的列也算作变化。
+     * 其他操作涉及整行，返回 null
+     */
+    private String changedColumns(SQLInfo sqlInfo, Predicate<String> include) {
+        Row oldData = sqlInfo.getOldData();
+        Row newData = sqlInfo.getNewData();
+        if (sqlInfo.getOperationType() != OperationType.UPDATE || oldData == null || newData == null) {
+            return null;
+        }
+        List<String> changed = new ArrayList<>();
+        for (int i = 0; i < newData.getSchema().size(); i++) {
+            String columnName = newData.getSchema().columnName(i);
+            if (!newData.isPresent(i) || (include != null && !include.test(columnName))) {
+                continue;
+            }
+            int oldIndex = oldData.getSchema().indexOf(columnName);
+            if (oldIndex < 0 || !oldData.isPresent(oldIndex) || !sameValue(oldData.get(oldIndex), newData.get(i))) {
+                changed.add(columnName);
+            }
+        }
+        return changed.isEmpty() ? null : JsonUtils.toJson(changed);
+    }
+
+    /**
+     * 后镜像可能直接取自 SQL 中的字面量，类型与查询结果不同时按字符串比较；小数按数值比较，忽略小数位数
+     */
+    private static boolean sameValue(Object oldValue, Object newValue) {
+        if (Objects.deepEquals(oldValue, newValue)) {
+            return true;
+        }
+        if (oldValue instanceof BigDecimal oldDecimal && newValue instanceof Number) {
+            try {
+                return oldDecimal.compareTo(new BigDecimal(newValue.toString())) == 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return oldValue != null && newValue != null && !(oldValue instanceof byte[])
+                && String.valueOf(oldValue).equals(String.valueOf(newValue));
+    }
+
+    /**
+     * 配置的审计列过滤条件，未配置时返回 null（全部列）
+     */
+    private Predicate<String> columnFilter(String tableName) {
         if (auditConfig.getIncludeColumns() == null) {
-            return data;
+            return null;
         }
         List<String> includeColumns = auditConfig.getIncludeColumns().get(tableName);
         if (includeColumns == null || includeColumns.isEmpty()) {
-            return data;
+            return null;
         }
-
-        return data.entrySet().stream()
-                .filter(entry -> includeColumns.contains(entry.getKey()))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        return includeColumns::contains;
     }
 
     private void retrySaveAuditLog(SQLInfo sqlInfo) {
@@ -135,7 +242,7 @@ public class AuditService {
             try {
                 Thread.sleep(1000 * (retryCount + 1));
                 DataAuditLog log = createAuditLog(sqlInfo);
-                dataAuditLogRepository.save(log);
+                dataAuditLogRepository.persist(log);
                 return;
             } catch (Exception e) {
                 log.error("Retry save audit log failed, attempt: {}", retryCount + 1, e);
@@ -156,9 +263,13 @@ public class AuditService {
         }
     }
 
-    private String buildPrimaryKeyWhere(Map<String, Object> data) {
-        return data.entrySet().stream()
-                .map(e -> String.format("%s = '%s'", e.getKey(), e.getValue()))
-                .collect(Collectors.joining(" AND "));
+    private String buildPrimaryKeyWhere(Row data) {
+        StringJoiner where = new StringJoiner(" AND ");
+        for (int i = 0; i < data.getSchema().size(); i++) {
+            if (data.isPresent(i)) {
+                where.add(String.format("%s = '%s'", data.getSchema().columnName(i), data.get(i)));
+            }
+        }
+        return where.toString();
     }
 }
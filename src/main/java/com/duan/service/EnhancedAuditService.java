@@ -1,45 +1,304 @@
 package com.duan.service;
 
 import com.duan.config.AuditConfig;
+import com.duan.entity.DataAuditLog;
 import com.duan.enums.OperationType;
+import com.duan.id.AuditIdGenerator;
+import com.duan.image.LargeColumnPolicies;
 import com.duan.metadata.ColumnMetadata;
+import com.duan.metadata.ColumnValues;
 import com.duan.metadata.TableMetadataProvider;
 import com.duan.repository.DataAuditLogRepository;
+import com.duan.row.Row;
+import com.duan.row.RowSchema;
+import com.duan.row.SingleRowExtractor;
+import com.duan.schema.AuditSchemaRegistry;
 import com.duan.utils.SQLInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class EnhancedAuditService extends AuditService {
     private final TableMetadataProvider metadataProvider;
+    private final LargeColumnPolicies largeColumnPolicies;
+    private final AuditSchemaRegistry schemaRegistry;
 
-    public EnhancedAuditService(AuditConfig auditConfig, DataAuditLogRepository dataAuditLogRepository, JdbcTemplate jdbcTemplate, TableMetadataProvider metadataProvider) {
-        super(auditConfig, dataAuditLogRepository, jdbcTemplate);
+    public EnhancedAuditService(AuditConfig auditConfig, DataAuditLogRepository dataAuditLogRepository, JdbcTemplate jdbcTemplate, AuditIdGenerator auditIdGenerator, TableMetadataProvider metadataProvider, LargeColumnPolicies largeColumnPolicies, AuditSchemaRegistry schemaRegistry) {
+        super(auditConfig, dataAuditLogRepository, jdbcTemplate, auditIdGenerator);
         this.metadataProvider = metadataProvider;
+        this.largeColumnPolicies = largeColumnPolicies;
+        this.schemaRegistry = schemaRegistry;
     }
 
     @Override
-    public Map<String, Object> getAfterData(SQLInfo sqlInfo) {
+    protected String imageColumns(String tableName) {
+        return largeColumnPolicies.projection(tableName, metadataProvider.getTableMetadata(tableName));
+    }
+
+    @Override
+    protected RowSchema rowSchema(String tableName) {
+        return metadataProvider.getRowSchema(tableName);
+    }
+
+    @Override
+    protected Long imageSchemaVersion(String tableName, RowSchema schema) {
+        // 只有元数据中的表结构才有稳定的列下标，临时拼出的行结构仍以列名存储
+        if (!auditConfig.isPositionalImages() || schema.size() == 0
+                || schema != metadataProvider.getRowSchema(tableName)) {
+            return null;
+        }
+        try {
+            return schemaRegistry.versionOf(schema);
+        } catch (Exception e) {
+            log.warn("Register audit schema version for {} failed, storing named image", tableName, e);
+            return null;
+        }
+    }
+
+    @Override
+    protected Predicate<String> retainedImageColumns(String tableName) {
+        // 主键列用于填充审计日志的主键
+        Map<String, ColumnMetadata> metadata = metadataProvider.getTableMetadata(tableName);
+        return columnName -> {
+            ColumnMetadata column = metadata.get(columnName);
+            return column != null && isPrimaryKey(column);
+        };
+    }
+
+    @Override
+    protected BiFunction<String, Object, Object> imageValueTransform(String tableName) {
+        Map<String, ColumnMetadata> metadata = metadataProvider.getTableMetadata(tableName);
+        return (columnName, value) -> largeColumnPolicies.apply(tableName, metadata.get(columnName), value);
+    }
+
+    @Override
+    protected Row prepareImage(String tableName, Row image) {
+        // 查询得到的镜像已经在 SQL 中处理过，这里处理 SQL 字面量、实体状态等其他来源的值
+        return super.prepareImage(tableName,
+                largeColumnPolicies.apply(tableName, metadataProvider.getTableMetadata(tableName), image));
+    }
+
+    @Override
+    public Row getAfterData(SQLInfo sqlInfo) {
+        Row afterData = deriveAfterData(sqlInfo);
+        if (afterData != null) {
+            return afterData;
+        }
+
         // 获取完整的行数据（包括默认值和计算列）
         Map<String, Object> primaryKeyData = extractPrimaryKeyData(sqlInfo);
         if (primaryKeyData.isEmpty()) {
-            return Collections.emptyMap();
+            return new Row(metadataProvider.getRowSchema(sqlInfo.getTableName()));
         }
 
         return metadataProvider.getCompleteRowData(sqlInfo.getTableName(), primaryKeyData);
     }
 
+    /**
+     * 只查询 UPDATE 的 SET 列和主键列的前镜像
+     */
+    protected Row getChangedColumnsBeforeData(SQLInfo sqlInfo) {
+        String tableName = sqlInfo.getTableName();
+        Row setValues = sqlInfo.getNewData();
+        Map<String, ColumnMetadata> columns = new LinkedHashMap<>();
+        metadataProvider.getTableMetadata(tableName).forEach((columnName, column) -> {
+            // SET x = NULL 也要保留 x 的前值
+            if (isPrimaryKey(column) || (setValues != null && isSet(setValues, columnName))) {
+                columns.put(columnName, column);
+            }
+        });
+        if (setValues == null || columns.isEmpty()) {
+            return getBeforeData(sqlInfo);
+        }
+        String selectSql = String.format("SELECT %s FROM %s WHERE %s",
+                largeColumnPolicies.projection(tableName, columns), tableName, sqlInfo.getWhereClause());
+        return jdbcTemplate.query(selectSql, new SingleRowExtractor(rowSchema(tableName)));
+    }
+
+    /**
+     * 只含主键列的镜像：INSERT 取自 SQL 中的值，其余取自 WHERE 条件，不查询数据库
+     */
+    protected Row getKeyData(SQLInfo sqlInfo) {
+        return keyRow(sqlInfo.getTableName(), extractPrimaryKeyData(sqlInfo));
+    }
+
+    protected Row keyRow(String tableName, Map<String, Object> primaryKeyData) {
+        Row row = new Row(metadataProvider.getRowSchema(tableName));
+        primaryKeyData.forEach(row::set);
+        return row;
+    }
+
+    /**
+     * 前后镜像只保留主键列
+     */
+    protected void keepKeysOnly(SQLInfo sqlInfo) {
+        Map<String, ColumnMetadata> metadata = metadataProvider.getTableMetadata(sqlInfo.getTableName());
+        retainColumns(sqlInfo.getOldData(), columnName -> isKey(metadata, columnName));
+        retainColumns(sqlInfo.getNewData(), columnName -> isKey(metadata, columnName));
+        sqlInfo.setOldJson(null);
+    }
+
+    /**
+     * UPDATE 的前后镜像只保留值有变化的列和主键列
+     */
+    protected void keepChangedColumns(SQLInfo sqlInfo) {
+        Row oldData = sqlInfo.getOldData();
+        Row newData = sqlInfo.getNewData();
+        if (sqlInfo.getOperationType() != OperationType.UPDATE || oldData == null || newData == null) {
+            return;
+        }
+        Map<String, ColumnMetadata> metadata = metadataProvider.getTableMetadata(sqlInfo.getTableName());
+        Predicate<String> changedOrKey = columnName -> isKey(metadata, columnName)
+                || !Objects.equals(oldData.get(columnName), newData.get(columnName));
+        // 先判断再删除，两边基于同一份比较结果
+        Set<String> retained = new HashSet<>();
+        collectColumns(oldData, changedOrKey, retained);
+        collectColumns(newData, changedOrKey, retained);
+        retainColumns(oldData, retained::contains);
+        retainColumns(newData, retained::contains);
+    }
+
+    private static boolean isSet(Row setValues, String columnName) {
+        int index = setValues.getSchema().indexOf(columnName);
+        return index >= 0 && setValues.isPresent(index);
+    }
+
+    private boolean isKey(Map<String, ColumnMetadata> metadata, String columnName) {
+        ColumnMetadata column = metadata.get(columnName);
+        return column != null && isPrimaryKey(column);
+    }
+
+    private static void collectColumns(Row row, Predicate<String> condition, Set<String> columns) {
+        for (int i = 0; i < row.getSchema().size(); i++) {
+            String columnName = row.getSchema().columnName(i);
+            if (row.isPresent(i) && condition.test(columnName)) {
+                columns.add(columnName);
+            }
+        }
+    }
+
+    private static void retainColumns(Row row, Predicate<String> condition) {
+        if (row == null) {
+            return;
+        }
+        for (int i = 0; i < row.getSchema().size(); i++) {
+            if (row.isPresent(i) && !condition.test(row.getSchema().columnName(i))) {
+                row.remove(i);
+            }
+        }
+    }
+
+    /**
+     * SET 中的字面量按列类型转换，与回表查询得到的值一致；有无法转换的值时返回 null，改为回表查询
+     */
+    protected Row toColumnTypes(String tableName, Row literals) {
+        Map<String, ColumnMetadata> metadata = metadataProvider.getTableMetadata(tableName);
+        RowSchema schema = literals.getSchema();
+        Row converted = literals.copy();
+        for (int i = 0; i < schema.size(); i++) {
+            if (!literals.isPresent(i)) {
+                continue;
+            }
+            ColumnMetadata column = metadata.get(schema.columnName(i));
+            if (column == null) {
+                return null;
+            }
+            try {
+                converted.set(i, ColumnValues.fromLiteral(column, literals.get(i)));
+            } catch (IllegalArgumentException e) {
+                log.debug("Derive after image of {} failed, reading row instead: {}", tableName, e.getMessage());
+                return null;
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * 前镜像叠加 SET 值即为后镜像，省掉一次回表查询；不满足推导条件时返回 null
+     */
+    protected Row deriveAfterData(SQLInfo sqlInfo) {
+        Row setValues = canDeriveAfterData(sqlInfo) ? toColumnTypes(sqlInfo.getTableName(), sqlInfo.getNewData()) : null;
+        if (setValues == null) {
+            return null;
+        }
+        Row afterData = sqlInfo.getOldData().copy();
+        afterData.overlay(setValues);
+        return afterData;
+    }
+
+    protected boolean canDeriveAfterData(SQLInfo sqlInfo) {
+        return sqlInfo.getOperationType() == OperationType.UPDATE
+                && sqlInfo.isLiteralSetValues()
+                && sqlInfo.getOldData() != null
+                && !sqlInfo.getOldData().isEmpty()
+                && metadataProvider.isUpdateImageDerivable(sqlInfo.getTableName());
+    }
+
+    /**
+     * 镜像中带齐了表的全部主键列（自增主键的 INSERT 通常不带）
+     */
+    protected boolean hasPrimaryKey(String tableName, Row image) {
+        boolean hasKeyColumn = false;
+        for (Map.Entry<String, ColumnMetadata> entry : metadataProvider.getTableMetadata(tableName).entrySet()) {
+            if (isPrimaryKey(entry.getValue())) {
+                if (image.get(entry.getKey()) == null) {
+                    return false;
+                }
+                hasKeyColumn = true;
+            }
+        }
+        return hasKeyColumn;
+    }
+
+    @Override
+    protected DataAuditLog createAuditLog(SQLInfo sqlInfo) {
+        DataAuditLog log = super.createAuditLog(sqlInfo);
+        fillPrimaryKey(log, sqlInfo);
+        return log;
+    }
+
+    /**
+     * 从前后镜像中取出主键，联合主键按列名排序后以逗号拼接
+     */
+    private void fillPrimaryKey(DataAuditLog log, SQLInfo sqlInfo) {
+        Row image = sqlInfo.getNewData() != null && !sqlInfo.getNewData().isEmpty()
+                ? sqlInfo.getNewData()
+                : sqlInfo.getOldData();
+        if (image == null || image.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> primaryKey = new TreeMap<>();
+        metadataProvider.getTableMetadata(sqlInfo.getTableName()).forEach((columnName, columnMetadata) -> {
+            if (isPrimaryKey(columnMetadata) && image.get(columnName) != null) {
+                primaryKey.put(columnName, image.get(columnName));
+            }
+        });
+        if (primaryKey.isEmpty()) {
+            return;
+        }
+
+        log.setPrimaryKeyName(String.join(",", primaryKey.keySet()));
+        log.setPrimaryKeyValue(primaryKey.values().stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",")));
+    }
+
     private Map<String, Object> extractPrimaryKeyData(SQLInfo sqlInfo) {
         if (sqlInfo.getOperationType() == OperationType.INSERT) {
             return extractPrimaryKeyFromNewData(sqlInfo);
@@ -67,22 +326,8 @@ public class EnhancedAuditService extends AuditService {
     }
 
     private boolean isPrimaryKey(ColumnMetadata metadata) {
-        // 实现主键判断逻辑
-        // 可以通过查询INFORMATION_SCHEMA.KEY_COLUMN_USAGE获取
-        try {
-            DatabaseMetaData databaseMetaData = jdbcTemplate.getDataSource().getConnection().getMetaData();
-            ResultSet primaryKeys = databaseMetaData.getPrimaryKeys(null, null, metadata.getColumnName());
-
-            while (primaryKeys.next()) {
-                String columnName = primaryKeys.getString("COLUMN_NAME");
-                if (columnName.equalsIgnoreCase(metadata.getColumnName())) {
-                    return true;
-                }
-            }
-        } catch (SQLException e) {
-            log.error("Failed to check primary key for column: {}", metadata.getColumnName(), e);
-        }
-        return false;
+        // 主键信息随表元数据一起从 INFORMATION_SCHEMA.COLUMNS.COLUMN_KEY 获取并缓存
+        return metadata.isPrimaryKey();
     }
 
     private Map<String, Object> extractPrimaryKeyFromWhereClause(SQLInfo sqlInfo) {
@@ -2,38 +2,140 @@ package com.duan.service;
 
 import com.duan.config.AuditConfig;
 import com.duan.entity.DataAuditLog;
+import com.duan.enums.AuditFidelity;
+import com.duan.enums.OperationType;
+import com.duan.event.AuditEventBus;
+import com.duan.id.AuditIdGenerator;
+import com.duan.image.LargeColumnPolicies;
 import com.duan.metadata.TableMetadataProvider;
+import com.duan.overload.AuditOverloadController;
 import com.duan.repository.DataAuditLogRepository;
+import com.duan.row.Row;
+import com.duan.schema.AuditSchemaRegistry;
+import com.duan.transaction.AuditTransactionContext;
+import com.duan.transaction.AuditTransactionSynchronization;
+import com.duan.utils.AuditLogImages;
 import com.duan.utils.SQLInfo;
+import com.duan.writer.AuditLogWriter;
+import com.duan.writer.PartialWriteException;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import javax.annotation.PreDestroy;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 public class TransactionAwareEnhancedAuditService extends EnhancedAuditService {
-    private final ApplicationEventPublisher eventPublisher;
-    private final ThreadLocal<Map<String, List<DataAuditLog>>> transactionAuditLogs =
-            ThreadLocal.withInitial(ConcurrentHashMap::new);
+    private final AuditEventBus auditEventBus;
+    private final AuditLogWriter auditLogWriter;
+    private final AuditOverloadController overloadController;
+    private final TableMetadataProvider metadataProvider;
+    private final AuditLogImages auditLogImages;
+    // 事务资源的 key，每个服务实例一个
+    private final Object transactionResourceKey = new Object();
 
     public TransactionAwareEnhancedAuditService(AuditConfig auditConfig,
                                                 DataAuditLogRepository dataAuditLogRepository,
                                                 JdbcTemplate jdbcTemplate,
+                                                AuditIdGenerator auditIdGenerator,
                                                 TableMetadataProvider metadataProvider,
-                                                ApplicationEventPublisher eventPublisher) {
-        super(auditConfig, dataAuditLogRepository, jdbcTemplate, metadataProvider);
-        this.eventPublisher = eventPublisher;
+                                                LargeColumnPolicies largeColumnPolicies,
+                                                AuditSchemaRegistry schemaRegistry,
+                                                AuditLogImages auditLogImages,
+                                                AuditEventBus auditEventBus,
+                                                AuditLogWriter auditLogWriter,
+                                                AuditOverloadController overloadController) {
+        super(auditConfig, dataAuditLogRepository, jdbcTemplate, auditIdGenerator, metadataProvider, largeColumnPolicies,
+                schemaRegistry);
+        this.auditLogImages = auditLogImages;
+        this.auditEventBus = auditEventBus;
+        this.auditLogWriter = auditLogWriter;
+        this.overloadController = overloadController;
+        this.metadataProvider = metadataProvider;
+    }
+
+    /**
+     * 表当前的审计记录级别，由过载控制按负载调整
+     */
+    public AuditFidelity fidelity(String tableName) {
+        return overloadController.fidelity(tableName);
+    }
+
+    @Override
+    public Row getBeforeData(SQLInfo sqlInfo) {
+        AuditFidelity fidelity = fidelity(sqlInfo.getTableName());
+        if (fidelity.compareTo(AuditFidelity.KEYS_ONLY) >= 0) {
+            return getKeyData(sqlInfo);
+        }
+        if (fidelity == AuditFidelity.DIFF && sqlInfo.getOperationType() == OperationType.UPDATE) {
+            return timed(sqlInfo.getTableName(), () -> getChangedColumnsBeforeData(sqlInfo));
+        }
+        return timed(sqlInfo.getTableName(), () -> super.getBeforeData(sqlInfo));
+    }
+
+    @Override
+    public Row getAfterData(SQLInfo sqlInfo) {
+        AuditFidelity fidelity = fidelity(sqlInfo.getTableName());
+        if (fidelity.compareTo(AuditFidelity.KEYS_ONLY) >= 0) {
+            return getKeyData(sqlInfo);
+        }
+        if (fidelity == AuditFidelity.DIFF) {
+            // 能直接由 SQL 中的值得到的后镜像不再回表：INSERT 要带齐主键才能定位行，
+            // UPDATE 与完整模式使用同样的推导条件，其余情况仍按主键回表
+            Row newData = sqlInfo.getNewData();
+            if (sqlInfo.getOperationType() == OperationType.INSERT && newData != null
+                    && hasPrimaryKey(sqlInfo.getTableName(), newData)) {
+                return newData;
+            }
+            Row afterData = deriveAfterData(sqlInfo);
+            if (afterData != null) {
+                return afterData;
+            }
+        }
+        return timed(sqlInfo.getTableName(), () -> super.getAfterData(sqlInfo));
+    }
+
+    /**
+     * 按主键回表读取整行，降级到只记录主键时不查询
+     */
+    public Row getRowData(String tableName, Map<String, Object> primaryKeyData) {
+        if (fidelity(tableName).compareTo(AuditFidelity.KEYS_ONLY) >= 0) {
+            return keyRow(tableName, primaryKeyData);
+        }
+        return timed(tableName, () -> metadataProvider.getCompleteRowData(tableName, primaryKeyData));
+    }
+
+    @Override
+    protected DataAuditLog createAuditLog(SQLInfo sqlInfo) {
+        // 事件采集等不经过镜像查询的来源，在这里按当前级别裁剪镜像
+        switch (fidelity(sqlInfo.getTableName())) {
+            case DIFF -> keepChangedColumns(sqlInfo);
+            case KEYS_ONLY, DROP -> keepKeysOnly(sqlInfo);
+            default -> {
+            }
+        }
+        return super.createAuditLog(sqlInfo);
+    }
+
+    private Row timed(String tableName, Supplier<Row> query) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Row row = query.get();
+            failed = false;
+            return row;
+        } finally {
+            overloadController.recordCapture(tableName, System.nanoTime() - start, failed);
+        }
     }
 
     @Override
@@ -42,15 +144,20 @@ public class TransactionAwareEnhancedAuditService extends EnhancedAuditService {
         if (!needAudit(sqlInfo)) {
             return;
         }
+        if (fidelity(sqlInfo.getTableName()) == AuditFidelity.DROP) {
+            overloadController.recordDrop(sqlInfo.getTableName());
+            return;
+        }
 
         try {
+            // 降级时的镜像只有部分列，不能与同一行的其他变更合并
+            boolean fullFidelity = fidelity(sqlInfo.getTableName()) == AuditFidelity.FULL;
             DataAuditLog log = createAuditLog(sqlInfo);
 
-            if (TransactionSynchronizationManager.isActualTransactionActive()) {
-                // 在事务中，将日志添加到当前事务的集合中
-                String txId = TransactionSynchronizationManager.getCurrentTransactionName();
-                addLogToCurrentTransaction(txId, log);
-                registerSynchronizationIfNeeded(txId);
+            if (TransactionSynchronizationManager.isSynchronizationActive()
+                    && TransactionSynchronizationManager.isActualTransactionActive()) {
+                // 在事务中，将日志添加到当前事务的缓冲区，提交后统一保存
+                currentTransactionContext().add(log, fullFidelity && needCoalesce(log.getTableName()));
             } else {
                 // 不在事务中，直接保存
                 directSave(log);
@@ -60,58 +167,30 @@ public class TransactionAwareEnhancedAuditService extends EnhancedAuditService {
         }
     }
 
-    private void addLogToCurrentTransaction(String txId, DataAuditLog log) {
-        Map<String, List<DataAuditLog>> currentTransactionLogs = transactionAuditLogs.get();
-        currentTransactionLogs.computeIfAbsent(txId, k -> new ArrayList<>()).add(log);
-    }
-
-    private void registerSynchronizationIfNeeded(String txId) {
-        if (!isSynchronizationRegistered()) {
+    /**
+     * 获取当前事务绑定的审计上下文，首次使用时绑定并注册事务同步（每个事务只注册一次）
+     */
+    private AuditTransactionContext currentTransactionContext() {
+        AuditTransactionContext context =
+                (AuditTransactionContext) TransactionSynchronizationManager.getResource(transactionResourceKey);
+        if (context == null) {
+            context = new AuditTransactionContext(auditLogImages);
+            TransactionSynchronizationManager.bindResource(transactionResourceKey, context);
             TransactionSynchronizationManager.registerSynchronization(
-                    new TransactionSynchronization() {
-                        @Override
-                        public void afterCommit() {
-                            // 只在事务提交时保存审计日志
-                            Map<String, List<DataAuditLog>> allLogs = transactionAuditLogs.get();
-                            List<DataAuditLog> logs = allLogs.get(txId);
-                            if (logs != null && !logs.isEmpty()) {
-                                saveAll(logs);
-                            }
-                        }
-
-                        @Override
-                        public void afterCompletion(int status) {
-                            // 清理资源
-                            cleanupThreadLocal(txId);
-                        }
-                    }
-            );
-        }
-    }
-
-    private boolean isSynchronizationRegistered() {
-        return TransactionSynchronizationManager.getSynchronizations().stream()
-                .anyMatch(sync -> sync.getClass().getName().contains(
-                        TransactionAwareEnhancedAuditService.class.getName()));
-    }
-
-    private void cleanupThreadLocal(String txId) {
-        try {
-            Map<String, List<DataAuditLog>> allLogs = transactionAuditLogs.get();
-            allLogs.remove(txId);
-            if (allLogs.isEmpty()) {
-                transactionAuditLogs.remove();
-            }
-        } catch (Exception e) {
-            log.error("Error cleaning up ThreadLocal resources", e);
+                    new AuditTransactionSynchronization(transactionResourceKey, context, this::saveAll));
         }
+        return context;
+    }
+
+    private boolean needCoalesce(String tableName) {
+        return auditConfig.getCoalesceTables() != null && auditConfig.getCoalesceTables().contains(tableName);
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void directSave(DataAuditLog dataAuditLog) {
         try {
-            dataAuditLogRepository.save(dataAuditLog);
-            eventPublisher.publishEvent(new AuditLogCommittedEvent(this, dataAuditLog));
+            write(List.of(dataAuditLog));
+            auditEventBus.publish(List.of(dataAuditLog));
         } catch (Exception e) {
             log.error("Failed to save audit log directly", e);
             retryDirectSave(dataAuditLog);
@@ -121,21 +200,48 @@ public class TransactionAwareEnhancedAuditService extends EnhancedAuditService {
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void saveAll(List<DataAuditLog> logs) {
         try {
-            dataAuditLogRepository.saveAll(logs);
-            eventPublisher.publishEvent(new AuditLogsCommittedEvent(this, logs));
+            write(logs);
+            auditEventBus.publish(logs);
+        } catch (PartialWriteException e) {
+            // 分片或写入线程各自提交，已经写入的日志照常发布，只重试失败的部分
+            log.error("Failed to save {} of {} audit logs in batch", e.getFailed().size(), logs.size(), e);
+            Set<DataAuditLog> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+            failed.addAll(e.getFailed());
+            List<DataAuditLog> written = logs.stream().filter(auditLog -> !failed.contains(auditLog)).toList();
+            if (!written.isEmpty()) {
+                auditEventBus.publish(written);
+            }
+            e.getFailed().forEach(this::retryDirectSave);
         } catch (Exception e) {
             log.error("Failed to save audit logs in batch", e);
             logs.forEach(this::retryDirectSave);
         }
     }
 
+    private void write(List<DataAuditLog> logs) {
+        overloadController.writeStarted(logs.size());
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            auditLogWriter.write(logs);
+            failed = false;
+        } finally {
+            overloadController.writeFinished(logs.size(), System.nanoTime() - start, failed);
+        }
+    }
+
     private void retryDirectSave(DataAuditLog dataAuditLog) {
+        if (fidelity(dataAuditLog.getTableName()) != AuditFidelity.FULL) {
+            // 已经降级时不再在提交线程上休眠重试，计为丢弃
+            overloadController.recordDrop(dataAuditLog.getTableName());
+            return;
+        }
         int retryCount = 0;
         while (retryCount < auditConfig.getMaxRetries()) {
             try {
                 Thread.sleep(1000 * (retryCount + 1));
-                dataAuditLogRepository.save(dataAuditLog);
-                eventPublisher.publishEvent(new AuditLogCommittedEvent(this, dataAuditLog));
+                write(List.of(dataAuditLog));
+                auditEventBus.publish(List.of(dataAuditLog));
                 return;
             } catch (Exception e) {
                 log.error("Retry save audit log failed, attempt: {}", retryCount + 1, e);
@@ -144,12 +250,7 @@ public class TransactionAwareEnhancedAuditService extends EnhancedAuditService {
         }
     }
 
-    @PreDestroy
-    public void cleanup() {
-        transactionAuditLogs.remove();
-    }
-
-    // 审计事件类
+    // 审计事件类，由 AuditEventBus 在独立线程上异步发布
     public static class AuditLogCommittedEvent {
         private final Object source;
         private final DataAuditLog auditLog;
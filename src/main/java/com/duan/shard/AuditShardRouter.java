@@ -0,0 +1,22 @@
+package com.duan.shard;
+
+import com.duan.entity.DataAuditLog;
+
+import java.util.OptionalInt;
+
+/**
+ * 审计日志的分片路由，可以声明同类型的 Bean 替换默认的按表名路由
+ */
+public interface AuditShardRouter {
+    /**
+     * 计算审计日志写入的分片号，取值范围 [0, shardCount)
+     */
+    int route(DataAuditLog log, int shardCount);
+
+    /**
+     * 某张表的审计日志是否全部位于同一个分片，能确定时按表查询只访问该分片，否则扇出到全部分片
+     */
+    default OptionalInt routeTable(String tableName, int shardCount) {
+        return OptionalInt.empty();
+    }
+}
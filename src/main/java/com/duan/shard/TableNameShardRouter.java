@@ -0,0 +1,26 @@
+package com.duan.shard;
+
+import com.duan.entity.DataAuditLog;
+
+import java.util.OptionalInt;
+
+/**
+ * 按表名哈希路由，同一张表的审计日志始终落在同一个分片
+ */
+public class TableNameShardRouter implements AuditShardRouter {
+
+    @Override
+    public int route(DataAuditLog log, int shardCount) {
+        return shardOf(log.getTableName(), shardCount);
+    }
+
+    @Override
+    public OptionalInt routeTable(String tableName, int shardCount) {
+        return OptionalInt.of(shardOf(tableName, shardCount));
+    }
+
+    private static int shardOf(String tableName, int shardCount) {
+        // String.hashCode 在不同 JVM 间稳定，分片数不变时路由结果不变
+        return Math.floorMod(tableName.hashCode(), shardCount);
+    }
+}
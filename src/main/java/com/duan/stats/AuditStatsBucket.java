@@ -0,0 +1,18 @@
+package com.duan.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditStatsBucket {
+    private LocalDateTime bucketTime;  // 时间桶起点
+    private String tableName;
+    private String operationType;
+    private String operator;           // 按操作人聚合时才有值
+    private long changeCount;
+}
@@ -0,0 +1,105 @@
+package com.duan.stats;
+
+import com.duan.config.AuditConfig;
+import com.duan.entity.DataAuditLog;
+import com.duan.event.AuditLogListener;
+import com.duan.repository.AuditStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在审计日志落库路径上维护按分钟聚合的计数（表、操作类型、操作人），
+ * 定期累加到 sys_data_audit_stats 汇总表，监控查询不再需要扫描原始日志
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AuditStatsCollector implements AuditLogListener {
+    private final AuditConfig auditConfig;
+    private final AuditStatsRepository auditStatsRepository;
+
+    // LongAdder 内部按线程分段计数，高并发下不会在同一个计数器上争用
+    private final Map<RollupKey, LongAdder> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void onAuditLogsCommitted(List<DataAuditLog> logs) {
+        logs.forEach(this::record);
+    }
+
+    public void record(DataAuditLog auditLog) {
+        if (!auditConfig.getStats().isEnabled()) {
+            return;
+        }
+        LocalDateTime operateTime = auditLog.getOperateTime() != null
+                ? auditLog.getOperateTime()
+                : LocalDateTime.now();
+        RollupKey key = new RollupKey(
+                operateTime.truncatedTo(ChronoUnit.MINUTES),
+                auditLog.getTableName(),
+                auditLog.getOperationType(),
+                auditLog.getOperator());
+        LongAdder adder = counters.computeIfAbsent(key, k -> new LongAdder());
+        adder.increment();
+        if (counters.get(key) != adder) {
+            // 计数器已被 flush 移出，这次计数可能没被汇总到，取出剩余计数放回当前的计数器
+            long leftover = adder.sumThenReset();
+            if (leftover > 0) {
+                counters.computeIfAbsent(key, k -> new LongAdder()).add(leftover);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${audit.stats.flush-interval-ms:60000}")
+    public void flush() {
+        if (counters.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime currentMinute = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        List<AuditStatsBucket> buckets = new ArrayList<>();
+        for (Map.Entry<RollupKey, LongAdder> entry : counters.entrySet()) {
+            RollupKey key = entry.getKey();
+            LongAdder adder = entry.getValue();
+            // 已经结束的分钟桶移出内存，当前分钟的桶只清零继续累加。
+            // 先移出再汇总：移出后才累加到旧计数器的线程会自行把剩余计数放回（见 record）
+            if (key.bucketTime().isBefore(currentMinute)) {
+                counters.remove(key, adder);
+            }
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                buckets.add(new AuditStatsBucket(key.bucketTime(), key.tableName(),
+                        key.operationType(), key.operator(), count));
+            }
+        }
+
+        try {
+            auditStatsRepository.upsert(buckets);
+        } catch (Exception e) {
+            log.error("Flush audit stats failed, {} buckets will be retried", buckets.size(), e);
+            // 刷入失败时把计数放回内存，下次再试
+            buckets.forEach(bucket -> counters.computeIfAbsent(
+                    new RollupKey(bucket.getBucketTime(), bucket.getTableName(),
+                            bucket.getOperationType(), bucket.getOperator()),
+                    k -> new LongAdder()).add(bucket.getChangeCount()));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private record RollupKey(LocalDateTime bucketTime, String tableName, String operationType, String operator) {
+    }
+}
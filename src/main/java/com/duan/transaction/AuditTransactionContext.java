@@ -0,0 +1,148 @@
+package com.duan.transaction;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.enums.OperationType;
+import com.duan.utils.AuditLogImages;
+import com.duan.utils.JsonUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 绑定在当前事务上的审计日志缓冲区，事务提交后统一落库
+ * <p>
+ * 对开启合并的表，同一事务内对同一行 (表, 主键) 的多次变更合并为一条净变更：
+ * 保留第一次的前镜像和最后一次的后镜像。过载降级时只记录部分列的变更不参与合并。
+ */
+public class AuditTransactionContext {
+    private final List<DataAuditLog> logs = new ArrayList<>();
+    // 行 -> 该行当前净变更在 logs 中的位置
+    private final Map<RowKey, Integer> rowPositions = new HashMap<>();
+    private final Map<Integer, Integer> mergedCounts = new HashMap<>();
+    private final AuditLogImages auditLogImages;
+
+    public AuditTransactionContext(AuditLogImages auditLogImages) {
+        this.auditLogImages = auditLogImages;
+    }
+
+    public void add(DataAuditLog log, boolean coalesce) {
+        if (!coalesce || log.getPrimaryKeyValue() == null) {
+            if (log.getPrimaryKeyValue() != null) {
+                // 不参与合并的变更截断该行之前的净变更，之后的变更不能越过它合并到更早的记录上
+                rowPositions.remove(new RowKey(log.getTableName(), log.getPrimaryKeyValue()));
+            }
+            logs.add(log);
+            return;
+        }
+
+        RowKey rowKey = new RowKey(log.getTableName(), log.getPrimaryKeyValue());
+        Integer position = rowPositions.get(rowKey);
+        DataAuditLog previous = position != null ? logs.get(position) : null;
+        if (previous == null || !merge(previous, log)) {
+            rowPositions.put(rowKey, logs.size());
+            logs.add(log);
+            return;
+        }
+
+        mergedCounts.merge(position, 2, (count, ignored) -> count + 1);
+        if (previous.getOperationType() == null) {
+            // INSERT 后又 DELETE，净变更为空
+            logs.set(position, null);
+            rowPositions.remove(rowKey);
+        }
+    }
+
+    /**
+     * 按变更发生的顺序返回合并后的审计日志
+     */
+    public List<DataAuditLog> getLogs() {
+        List<DataAuditLog> result = new ArrayList<>(logs.size());
+        for (int i = 0; i < logs.size(); i++) {
+            DataAuditLog log = logs.get(i);
+            if (log == null) {
+                continue;
+            }
+            Integer mergedCount = mergedCounts.get(i);
+            if (mergedCount != null && log.getRemark() == null) {
+                log.setRemark("coalesced " + mergedCount + " changes");
+            }
+            result.add(log);
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return logs.isEmpty();
+    }
+
+    /**
+     * 将后一次变更合并到前一次变更上，无法合并时返回 false
+     */
+    private boolean merge(DataAuditLog previous, DataAuditLog next) {
+        OperationType first = OperationType.valueOf(previous.getOperationType());
+        OperationType second = OperationType.valueOf(next.getOperationType());
+
+        switch (first) {
+            case INSERT:
+                if (second == OperationType.UPDATE) {
+                    previous.setNewValue(next.getNewValue());
+                } else if (second == OperationType.DELETE) {
+                    previous.setOperationType(null);
+                } else {
+                    return false;
+                }
+                break;
+            case UPDATE:
+                if (second == OperationType.UPDATE) {
+                    previous.setNewValue(next.getNewValue());
+                    previous.setChangedColumns(diffColumns(previous));
+                } else if (second == OperationType.DELETE) {
+                    previous.setOperationType(OperationType.DELETE.toString());
+                    previous.setNewValue(null);
+                    previous.setChangedColumns(null);
+                } else {
+                    return false;
+                }
+                break;
+            case DELETE:
+                if (second == OperationType.INSERT) {
+                    previous.setOperationType(OperationType.UPDATE.toString());
+                    previous.setNewValue(next.getNewValue());
+                    previous.setChangedColumns(diffColumns(previous));
+                } else {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+        }
+
+        previous.setOperator(next.getOperator());
+        previous.setOperateTime(next.getOperateTime());
+        return true;
+    }
+
+    /**
+     * 合并后的 UPDATE 按首次前镜像和最后后镜像重新比较，改过又改回的列不算变化
+     */
+    private String diffColumns(DataAuditLog log) {
+        Map<String, Object> oldImage = auditLogImages.oldImage(log);
+        Map<String, Object> newImage = auditLogImages.newImage(log);
+        Set<String> columns = new LinkedHashSet<>(oldImage.keySet());
+        columns.addAll(newImage.keySet());
+        columns.removeIf(column -> Objects.equals(oldImage.get(column), newImage.get(column)));
+        return columns.isEmpty() ? null : JsonUtils.toJson(columns);
+    }
+
+    private record RowKey(String tableName, String primaryKeyValue) {
+        RowKey {
+            Objects.requireNonNull(tableName);
+            Objects.requireNonNull(primaryKeyValue);
+        }
+    }
+}
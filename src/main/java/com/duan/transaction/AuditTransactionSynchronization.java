@@ -1,25 +1,52 @@
 package com.duan.transaction;
 
+import com.duan.entity.DataAuditLog;
 import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 每个事务只注册一次：把 {@link AuditTransactionContext} 绑定为事务资源，
+ * 事务挂起/恢复时随之解绑/重新绑定，提交后回调落库
+ */
 public class AuditTransactionSynchronization implements TransactionSynchronization {
-    private final String txId;
-    private final java.util.function.Consumer<String> commitCallback;
-    private final java.util.function.Consumer<String> clearCallback;
-
-    public AuditTransactionSynchronization(String txId,
-                                           java.util.function.Consumer<String> commitCallback,
-                                           java.util.function.Consumer<String> clearCallback) {
-        this.txId = txId;
+    private final Object resourceKey;
+    private final AuditTransactionContext context;
+    private final Consumer<List<DataAuditLog>> commitCallback;
+
+    public AuditTransactionSynchronization(Object resourceKey,
+                                           AuditTransactionContext context,
+                                           Consumer<List<DataAuditLog>> commitCallback) {
+        this.resourceKey = resourceKey;
+        this.context = context;
         this.commitCallback = commitCallback;
-        this.clearCallback = clearCallback;
     }
 
     @Override
-    public void afterCompletion(int status) {
-        if (status == STATUS_COMMITTED) {
-            commitCallback.accept(txId);
+    public void suspend() {
+        TransactionSynchronizationManager.unbindResourceIfPossible(resourceKey);
+    }
+
+    @Override
+    public void resume() {
+        TransactionSynchronizationManager.bindResource(resourceKey, context);
+    }
+
+    @Override
+    public void afterCommit() {
+        // 只在事务提交时保存审计日志
+        if (!context.isEmpty()) {
+            List<DataAuditLog> logs = context.getLogs();
+            if (!logs.isEmpty()) {
+                commitCallback.accept(logs);
+            }
         }
-        clearCallback.accept(txId);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(resourceKey);
     }
 }
@@ -0,0 +1,32 @@
+package com.duan.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+
+/**
+ * 接口返回审计日志时把位置数组形式的镜像还原为以列名为键的 JSON
+ * <p>
+ * Spring 管理的 ObjectMapper 通过 SpringHandlerInstantiator 创建本类并注入 {@link AuditLogImages}；
+ * 其它 ObjectMapper（如 {@link JsonUtils}）用无参构造，镜像按存储形式原样输出
+ */
+public class AuditImageSerializer extends JsonSerializer<String> {
+    private final AuditLogImages auditLogImages;
+
+    public AuditImageSerializer() {
+        this(null);
+    }
+
+    @Autowired
+    public AuditImageSerializer(AuditLogImages auditLogImages) {
+        this.auditLogImages = auditLogImages;
+    }
+
+    @Override
+    public void serialize(String value, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeString(auditLogImages != null ? auditLogImages.toNamedJson(value) : value);
+    }
+}
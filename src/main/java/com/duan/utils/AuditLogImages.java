@@ -0,0 +1,109 @@
+package com.duan.utils;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.enums.OperationType;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * 审计日志中前后镜像的统一读取入口
+ * <p>
+ * 镜像有两种存储形式：以列名为键的 JSON 对象，以及引用表结构版本的位置数组 [版本号, [值...], [列下标...]]，
+ * 读取时都还原为以列名为键的 Map。位置数组需要按版本号查列名，查找方式随实例传入，
+ * 由 {@link com.duan.schema.AuditSchemaRegistry} 所在的上下文创建
+ */
+public class AuditLogImages {
+    private static final TypeReference<Map<String, Object>> IMAGE_TYPE = new TypeReference<>() {
+    };
+    private static final TypeReference<List<Object>> POSITIONAL_TYPE = new TypeReference<>() {
+    };
+    private static final TypeReference<List<String>> COLUMNS_TYPE = new TypeReference<>() {
+    };
+
+    private final LongFunction<List<String>> schemaVersions;
+
+    /**
+     * @param schemaVersions 按版本号查找列名，列名按列下标排列
+     */
+    public AuditLogImages(LongFunction<List<String>> schemaVersions) {
+        this.schemaVersions = schemaVersions;
+    }
+
+    public Map<String, Object> oldImage(DataAuditLog auditLog) {
+        return parse(auditLog.getOldValue());
+    }
+
+    public Map<String, Object> newImage(DataAuditLog auditLog) {
+        return parse(auditLog.getNewValue());
+    }
+
+    /**
+     * 把一条审计日志应用到行数据上，返回应用后的行数据，行被删除时返回 null
+     * <p>
+     * INSERT 带完整的行数据；UPDATE 的后镜像可能只有变更的列，覆盖到已有数据上。
+     * 置为 NULL 的列在后镜像中是显式的 null；较早的镜像省略了 NULL，按 changed_columns 中列出但后镜像中没有的列置空。
+     * 传入的 state 可能被修改
+     *
+     * @param state 应用前的行数据，行不存在时为 null
+     */
+    public Map<String, Object> replay(Map<String, Object> state, DataAuditLog auditLog) {
+        String operationType = auditLog.getOperationType();
+        if (OperationType.DELETE.name().equals(operationType)) {
+            return null;
+        }
+        Map<String, Object> next = state == null || OperationType.INSERT.name().equals(operationType)
+                ? new LinkedHashMap<>()
+                : state;
+        Map<String, Object> newImage = newImage(auditLog);
+        next.putAll(newImage);
+        if (auditLog.getChangedColumns() != null) {
+            for (String column : JsonUtils.fromJson(auditLog.getChangedColumns(), COLUMNS_TYPE)) {
+                if (!newImage.containsKey(column)) {
+                    next.put(column, null);
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * 把存储形式的镜像转换为以列名为键的 JSON，已经是该形式时原样返回
+     */
+    public String toNamedJson(String json) {
+        return isPositional(json) ? JsonUtils.toJson(parse(json)) : json;
+    }
+
+    private Map<String, Object> parse(String json) {
+        if (json == null || json.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (isPositional(json)) {
+            return parsePositional(json);
+        }
+        Map<String, Object> image = JsonUtils.fromJson(json, IMAGE_TYPE);
+        return image != null ? image : Collections.emptyMap();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parsePositional(String json) {
+        List<Object> encoded = JsonUtils.fromJson(json, POSITIONAL_TYPE);
+        List<String> columns = schemaVersions.apply(((Number) encoded.get(0)).longValue());
+        List<Object> values = (List<Object>) encoded.get(1);
+        List<Number> positions = encoded.size() > 2 ? (List<Number>) encoded.get(2) : null;
+
+        Map<String, Object> image = new LinkedHashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            image.put(columns.get(positions != null ? positions.get(i).intValue() : i), values.get(i));
+        }
+        return image;
+    }
+
+    private static boolean isPositional(String json) {
+        return json != null && !json.isEmpty() && json.charAt(0) == '[';
+    }
+}
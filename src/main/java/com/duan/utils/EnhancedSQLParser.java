@@ -3,9 +3,11 @@ package com.duan.utils;
 import com.duan.enums.OperationType;
 import com.duan.metadata.ColumnMetadata;
 import com.duan.metadata.TableMetadataProvider;
+import com.duan.row.Row;
+import com.duan.row.RowSchema;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -19,8 +21,9 @@ public class EnhancedSQLParser extends SQLParser {
     @Override
     public SQLInfo parseSql(String sql) {
         SQLInfo sqlInfo = super.parseSql(sql);
-        if (sqlInfo == null) {
-            return null;
+        if (sqlInfo == null || sqlInfo.getOperationType() == null) {
+            // 非 DML 语句（如查询）不需要补充元数据
+            return sqlInfo;
         }
 
         // 获取表的元数据信息
@@ -37,37 +40,42 @@ public class EnhancedSQLParser extends SQLParser {
         return sqlInfo;
     }
 
+    @Override
+    protected RowSchema rowSchema(String tableName, List<String> columns) {
+        // 使用表的行结构，解析结果和镜像查询结果可以按下标直接合并
+        RowSchema schema = metadataProvider.getRowSchema(tableName);
+        return schema.size() > 0 ? schema : super.rowSchema(tableName, columns);
+    }
+
     private void enhanceInsertData(SQLInfo sqlInfo, Map<String, ColumnMetadata> tableMetadata) {
-        Map<String, Object> enhancedData = new HashMap<>(sqlInfo.getNewData());
+        Row newData = sqlInfo.getNewData();
+        RowSchema schema = newData.getSchema();
 
         // 补充默认值
         tableMetadata.forEach((columnName, metadata) -> {
-            if (!enhancedData.containsKey(columnName)) {
+            int index = schema.indexOf(columnName);
+            if (index >= 0 && !newData.isPresent(index)) {
                 if (metadata.isHasDefaultValue()) {
-                    enhancedData.put(columnName, metadata.getDefaultValue());
+                    newData.set(index, metadata.getDefaultValue());
                 } else if (metadata.isAutoIncrement()) {
                     // 自增列将在插入后获取
-                    enhancedData.put(columnName, null);
+                    newData.set(index, null);
                 } else if (metadata.isComputed()) {
                     // 计算列将在插入后获取
-                    enhancedData.put(columnName, null);
+                    newData.set(index, null);
                 }
             }
         });
-
-        sqlInfo.setNewData(enhancedData);
     }
 
     private void enhanceUpdateData(SQLInfo sqlInfo, Map<String, ColumnMetadata> tableMetadata) {
-        Map<String, Object> enhancedData = new HashMap<>(sqlInfo.getNewData());
+        Row newData = sqlInfo.getNewData();
 
         // 处理计算列
         tableMetadata.forEach((columnName, metadata) -> {
             if (metadata.isComputed()) {
-                enhancedData.put(columnName, null);
+                newData.set(columnName, null);
             }
         });
-
-        sqlInfo.setNewData(enhancedData);
     }
 }
@@ -1,18 +1,29 @@
 package com.duan.utils;
 
+import com.duan.row.Row;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.function.Predicate;
+
 public class JsonUtils {
     private static final ObjectMapper objectMapper = new ObjectMapper()
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
             .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
             .setSerializationInclusion(JsonInclude.Include.NON_NULL)
             .registerModule(new JavaTimeModule());
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final ThreadLocal<JsonBuffer> BUFFER = ThreadLocal.withInitial(JsonBuffer::new);
 
     public static String toJson(Object object) {
         try {
@@ -22,6 +33,58 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * 行镜像直接写成 JSON，不经过 Map
+     *
+     * @param include 列过滤条件，为 null 时写出全部列
+     */
+    public static String toJson(Row row, Predicate<String> include) {
+        return toJson(generator -> row.writeTo(generator, include));
+    }
+
+    /**
+     * 行镜像写成引用结构版本的位置数组，不重复列名
+     *
+     * @param include 列过滤条件，为 null 时写出全部列
+     */
+    public static String toPositionalJson(Row row, long schemaVersion, Predicate<String> include) {
+        return toJson(generator -> row.writePositionalTo(generator, schemaVersion, include));
+    }
+
+    /**
+     * 通过流式 JsonGenerator 写出 JSON，写入当前线程复用的字节缓冲区
+     */
+    public static String toJson(JsonWriter writer) {
+        JsonBuffer buffer = BUFFER.get();
+        buffer.reset();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer, JsonEncoding.UTF8)) {
+            writer.write(generator);
+        } catch (Exception e) {
+            throw new RuntimeException("Convert to JSON failed", e);
+        }
+        String json = buffer.toString(StandardCharsets.UTF_8);
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            // 偶尔的超大镜像不长期占用线程的缓冲区
+            BUFFER.remove();
+        }
+        return json;
+    }
+
+    @FunctionalInterface
+    public interface JsonWriter {
+        void write(JsonGenerator generator) throws IOException, SQLException;
+    }
+
+    private static final class JsonBuffer extends ByteArrayOutputStream {
+        JsonBuffer() {
+            super(1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
     public static <T> T fromJson(String json, Class<T> clazz) {
         try {
             return objectMapper.readValue(json, clazz);
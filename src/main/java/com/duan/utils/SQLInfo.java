@@ -1,15 +1,16 @@
 package com.duan.utils;
 
 import com.duan.enums.OperationType;
+import com.duan.row.Row;
 import lombok.Data;
 
-import java.util.Map;
-
 @Data
 public class SQLInfo {
     private String tableName;
     private OperationType operationType;
     private String whereClause;
-    private Map<String, Object> newData;
-    private Map<String, Object> oldData;
+    private Row newData;
+    private Row oldData;
+    private String oldJson;             // 直接从结果集写出的前镜像 JSON，存在时 oldData 只保留主键列
+    private boolean literalSetValues;   // UPDATE 的 SET 值是否全部为字面量，决定后镜像能否在内存中推导
 }
@@ -10,11 +10,12 @@ import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlDeleteStatement;
 import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlInsertStatement;
 import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlUpdateStatement;
 import com.duan.enums.OperationType;
+import com.duan.row.Row;
+import com.duan.row.RowSchema;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 @Slf4j
 public class SQLParser {
@@ -39,36 +40,53 @@ public class SQLParser {
         }
     }
 
-    private static void handleInsert(MySqlInsertStatement insert, SQLInfo sqlInfo) {
-        sqlInfo.setTableName(insert.getTableName().getSimpleName());
+    private void handleInsert(MySqlInsertStatement insert, SQLInfo sqlInfo) {
+        String tableName = insert.getTableName().getSimpleName();
+        sqlInfo.setTableName(tableName);
         sqlInfo.setOperationType(OperationType.INSERT);
 
         List<SQLExpr> values = insert.getValues().getValues();
         List<SQLExpr> columns = insert.getColumns();
 
-        Map<String, Object> newData = new HashMap<>();
-        for (int i = 0; i < columns.size(); i++) {
-            String column = ((SQLIdentifierExpr) columns.get(i)).getName();
-            Object value = parseValue(values.get(i));
-            newData.put(column, value);
+        List<String> columnNames = new ArrayList<>(columns.size());
+        for (SQLExpr column : columns) {
+            columnNames.add(SQLUtils.normalize(((SQLIdentifierExpr) column).getName()));
+        }
+        Row newData = new Row(rowSchema(tableName, columnNames));
+        for (int i = 0; i < columnNames.size(); i++) {
+            newData.set(columnNames.get(i), parseValue(values.get(i)));
         }
 
         sqlInfo.setNewData(newData);
     }
 
-    private static void handleUpdate(MySqlUpdateStatement update, SQLInfo sqlInfo) {
-        sqlInfo.setTableName(update.getTableSource().toString());
+    private void handleUpdate(MySqlUpdateStatement update, SQLInfo sqlInfo) {
+        String tableName = update.getTableSource().toString();
+        sqlInfo.setTableName(tableName);
         sqlInfo.setOperationType(OperationType.UPDATE);
         sqlInfo.setWhereClause(update.getWhere().toString());
 
-        Map<String, Object> newData = new HashMap<>();
+        List<String> columnNames = new ArrayList<>(update.getItems().size());
         for (SQLUpdateSetItem item : update.getItems()) {
-            String column = item.getColumn().toString();
-            Object value = parseValue(item.getValue());
-            newData.put(column, value);
+            columnNames.add(SQLUtils.normalize(columnName(item.getColumn())));
+        }
+        Row newData = new Row(rowSchema(tableName, columnNames));
+        boolean literalSetValues = true;
+        for (int i = 0; i < columnNames.size(); i++) {
+            SQLUpdateSetItem item = update.getItems().get(i);
+            newData.set(columnNames.get(i), parseValue(item.getValue()));
+            literalSetValues &= isLiteral(item.getValue());
         }
 
         sqlInfo.setNewData(newData);
+        sqlInfo.setLiteralSetValues(literalSetValues);
+    }
+
+    /**
+     * 解析结果使用的行结构，默认按语句中出现的列构建
+     */
+    protected RowSchema rowSchema(String tableName, List<String> columns) {
+        return RowSchema.adhoc(tableName, columns);
     }
 
     private static void handleDelete(MySqlDeleteStatement delete, SQLInfo sqlInfo) {
@@ -77,6 +95,24 @@ public class SQLParser {
         sqlInfo.setWhereClause(delete.getWhere().toString());
     }
 
+    private static String columnName(SQLExpr column) {
+        // SET t.name = ... 只保留列名
+        if (column instanceof SQLPropertyExpr) {
+            return ((SQLPropertyExpr) column).getName();
+        }
+        return column.toString();
+    }
+
+    /**
+     * 字面量才能直接作为列的新值，表达式、函数和 ? 占位符需要回表读取
+     */
+    private static boolean isLiteral(SQLExpr expr) {
+        return expr instanceof SQLNumericLiteralExpr
+                || expr instanceof SQLCharExpr
+                || expr instanceof SQLBooleanExpr
+                || expr instanceof SQLNullExpr;
+    }
+
     private static Object parseValue(SQLExpr expr) {
         if (expr instanceof SQLNumberExpr) {
             return ((SQLNumberExpr) expr).getNumber();
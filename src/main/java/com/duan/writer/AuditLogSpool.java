@@ -0,0 +1,266 @@
+package com.duan.writer;
+
+import com.duan.entity.DataAuditLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 一个目标库的审计日志落盘文件
+ * <p>
+ * 审计日志按 LOAD DATA 的默认格式（制表符分隔、反斜杠转义、\N 表示 NULL）追加到当前文件，
+ * 文件超过大小或时长后封存为 .ready，由后台用一条 LOAD DATA LOCAL INFILE 导入。
+ * 导入与 sys_data_audit_load_offset 中的记录在同一个事务提交，已记录的文件不会再次导入。
+ */
+@Slf4j
+public class AuditLogSpool {
+    private static final String ACTIVE_SUFFIX = ".active";
+    private static final String READY_SUFFIX = ".ready";
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+    private static final String LOAD_SQL = """
+            LOAD DATA LOCAL INFILE '%s'
+            INTO TABLE sys_data_audit_log
+            CHARACTER SET utf8mb4
+            (id, table_name, operation_type, primary_key_name, primary_key_value,
+             old_value, new_value, operator, operate_time, row_sequence, changed_columns, remark)
+            """;
+
+    private final String name;
+    private final Path directory;
+    private final long maxFileBytes;
+    private final long maxFileAgeMs;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Object lock = new Object();
+    private Path activeFile;
+    private FileChannel activeChannel;
+    private long activeCreatedAt;
+
+    public AuditLogSpool(String name,
+                         Path directory,
+                         long maxFileBytes,
+                         long maxFileAgeMs,
+                         JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate) {
+        this.name = name;
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileAgeMs = maxFileAgeMs;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Open audit spool directory " + directory + " failed", e);
+        }
+    }
+
+    /**
+     * 追加一批已经分配了 id 的审计日志，返回时数据已经刷到磁盘
+     */
+    public void append(List<DataAuditLog> logs) {
+        StringBuilder lines = new StringBuilder(logs.size() * 256);
+        for (DataAuditLog log : logs) {
+            appendLine(lines, log);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+
+        synchronized (lock) {
+            try {
+                if (activeChannel == null) {
+                    openActive(logs.get(0).getId());
+                }
+                long position = activeChannel.size();
+                try {
+                    while (buffer.hasRemaining()) {
+                        activeChannel.write(buffer);
+                    }
+                    activeChannel.force(false);
+                } catch (IOException e) {
+                    // 半截写入会导致重试时重复导入，截断回写入前的位置
+                    activeChannel.truncate(position);
+                    throw e;
+                }
+                if (activeChannel.size() >= maxFileBytes) {
+                    seal();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Append audit logs to spool " + name + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * 封存到期的文件并导入所有已封存的文件
+     */
+    public void load() {
+        synchronized (lock) {
+            if (activeChannel != null && System.currentTimeMillis() - activeCreatedAt >= maxFileAgeMs) {
+                try {
+                    seal();
+                } catch (IOException e) {
+                    log.error("Seal audit spool file {} failed", activeFile, e);
+                }
+            }
+        }
+
+        for (Path file : readyFiles()) {
+            try {
+                loadFile(file);
+            } catch (Exception e) {
+                // 保留文件，下次继续尝试，后面的文件也等待以保持导入顺序
+                log.error("Load audit spool file {} failed", file, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 封存当前文件并导入全部剩余文件，应用关闭时调用
+     */
+    public void close() {
+        synchronized (lock) {
+            try {
+                if (activeChannel != null) {
+                    seal();
+                }
+            } catch (IOException e) {
+                log.error("Seal audit spool file {} failed", activeFile, e);
+            }
+        }
+        load();
+    }
+
+    private void loadFile(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        long bytes = Files.size(file);
+        Integer loaded = transactionTemplate.execute(status -> {
+            List<Long> offsets = jdbcTemplate.queryForList(
+                    "SELECT loaded_bytes FROM sys_data_audit_load_offset WHERE file_name = ?", Long.class, fileName);
+            if (!offsets.isEmpty()) {
+                // 上次已经导入并提交，只是文件还没来得及删除
+                return null;
+            }
+            String path = file.toAbsolutePath().toString().replace("\\", "\\\\").replace("'", "\\'");
+            Integer rows = jdbcTemplate.execute((StatementCallback<Integer>) statement ->
+                    statement.executeUpdate(String.format(LOAD_SQL, path)));
+            jdbcTemplate.update("INSERT INTO sys_data_audit_load_offset (file_name, loaded_bytes, record_count, loaded_at) " +
+                    "VALUES (?, ?, ?, ?)", fileName, bytes, rows, Timestamp.valueOf(LocalDateTime.now()));
+            return rows;
+        });
+        Files.delete(file);
+        if (loaded != null) {
+            log.debug("Loaded {} audit logs from {}", loaded, fileName);
+        } else {
+            log.info("Audit spool file {} was already loaded, removed", fileName);
+        }
+    }
+
+    private void openActive(Long firstId) throws IOException {
+        // 以首条日志的 id 命名，id 全局唯一，文件名也不会和历史导入记录重复
+        activeFile = directory.resolve(String.format("audit-%020d%s", firstId, ACTIVE_SUFFIX));
+        activeChannel = FileChannel.open(activeFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeCreatedAt = System.currentTimeMillis();
+    }
+
+    private void seal() throws IOException {
+        activeChannel.close();
+        Files.move(activeFile, readyPath(activeFile), StandardCopyOption.ATOMIC_MOVE);
+        activeChannel = null;
+        activeFile = null;
+    }
+
+    /**
+     * 上次异常退出时遗留的 .active 文件截断到最后一个完整行后封存
+     */
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(ACTIVE_SUFFIX)).toList()) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    channel.truncate(lastLineEnd(channel));
+                    channel.force(false);
+                }
+                Files.move(file, readyPath(file), StandardCopyOption.ATOMIC_MOVE);
+                log.info("Recovered audit spool file {}", file);
+            }
+        }
+    }
+
+    private static long lastLineEnd(FileChannel channel) throws IOException {
+        ByteBuffer single = ByteBuffer.allocate(1);
+        for (long position = channel.size() - 1; position >= 0; position--) {
+            single.clear();
+            channel.read(single, position);
+            if (single.get(0) == '\n') {
+                return position + 1;
+            }
+        }
+        return 0;
+    }
+
+    private List<Path> readyFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(READY_SUFFIX)).sorted().toList();
+        } catch (IOException e) {
+            log.error("List audit spool directory {} failed", directory, e);
+            return List.of();
+        }
+    }
+
+    private static Path readyPath(Path activeFile) {
+        String fileName = activeFile.getFileName().toString();
+        return activeFile.resolveSibling(fileName.substring(0, fileName.length() - ACTIVE_SUFFIX.length()) + READY_SUFFIX);
+    }
+
+    private static void appendLine(StringBuilder line, DataAuditLog log) {
+        appendField(line, String.valueOf(log.getId())).append('\t');
+        appendField(line, log.getTableName()).append('\t');
+        appendField(line, log.getOperationType()).append('\t');
+        appendField(line, log.getPrimaryKeyName()).append('\t');
+        appendField(line, log.getPrimaryKeyValue()).append('\t');
+        appendField(line, log.getOldValue()).append('\t');
+        appendField(line, log.getNewValue()).append('\t');
+        appendField(line, log.getOperator()).append('\t');
+        appendField(line, log.getOperateTime() != null ? DATE_TIME.format(log.getOperateTime()) : null).append('\t');
+        appendField(line, log.getRowSequence() != null ? String.valueOf(log.getRowSequence()) : null).append('\t');
+        appendField(line, log.getChangedColumns()).append('\t');
+        appendField(line, log.getRemark()).append('\n');
+    }
+
+    private static StringBuilder appendField(StringBuilder line, String value) {
+        if (value == null) {
+            return line.append("\\N");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> line.append("\\\\");
+                case '\t' -> line.append("\\t");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\0' -> line.append("\\0");
+                default -> line.append(c);
+            }
+        }
+        return line;
+    }
+}
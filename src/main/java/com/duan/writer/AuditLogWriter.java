@@ -0,0 +1,23 @@
+package com.duan.writer;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.metrics.LaneMetrics;
+
+import java.util.List;
+
+/**
+ * 审计日志的持久化出口
+ */
+public interface AuditLogWriter {
+    /**
+     * 批量写入审计日志，写入成功后日志的 id 已经回填
+     */
+    void write(List<DataAuditLog> logs);
+
+    /**
+     * 写入线程的队列指标，没有独立写入线程时为空
+     */
+    default List<LaneMetrics> getLaneMetrics() {
+        return List.of();
+    }
+}
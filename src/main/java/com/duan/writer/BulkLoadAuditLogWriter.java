@@ -0,0 +1,89 @@
+package com.duan.writer;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.id.AuditIdGenerator;
+import com.duan.metrics.LaneMetrics;
+import com.duan.shard.AuditShardRouter;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 批量导入模式：指定表的审计日志（创建时已在本地分配 id）追加到落盘文件，由后台通过 LOAD DATA LOCAL INFILE 整文件导入，
+ * 其余表仍交给原来的写入方式
+ * <p>
+ * 写入返回时日志已经落盘并回填 id，但要等到下一次导入后才能在数据库中查到
+ */
+public class BulkLoadAuditLogWriter implements AuditLogWriter {
+    private final AuditLogWriter delegate;
+    private final Collection<String> tables;
+    private final AuditIdGenerator idGenerator;
+    private final List<AuditLogSpool> spools;
+    private final AuditShardRouter router;
+
+    /**
+     * @param tables 走批量导入的表，为空时全部表
+     * @param spools 每个目标库一个，多个时按 router 路由（与分片一一对应）
+     */
+    public BulkLoadAuditLogWriter(AuditLogWriter delegate,
+                                  Collection<String> tables,
+                                  AuditIdGenerator idGenerator,
+                                  List<AuditLogSpool> spools,
+                                  AuditShardRouter router) {
+        this.delegate = delegate;
+        this.tables = tables;
+        this.idGenerator = idGenerator;
+        this.spools = spools;
+        this.router = router;
+    }
+
+    @Override
+    public void write(List<DataAuditLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        int spoolCount = spools.size();
+        List<List<DataAuditLog>> groups = new ArrayList<>(spoolCount);
+        for (int i = 0; i < spoolCount; i++) {
+            groups.add(new ArrayList<>());
+        }
+        List<DataAuditLog> others = new ArrayList<>();
+        for (DataAuditLog log : logs) {
+            if (tables == null || tables.isEmpty() || tables.contains(log.getTableName())) {
+                if (log.getId() == null) {
+                    log.setId(idGenerator.nextId());
+                }
+                groups.get(spoolCount == 1 ? 0 : router.route(log, spoolCount)).add(log);
+            } else {
+                others.add(log);
+            }
+        }
+
+        for (int i = 0; i < spoolCount; i++) {
+            if (!groups.get(i).isEmpty()) {
+                spools.get(i).append(groups.get(i));
+            }
+        }
+        if (!others.isEmpty()) {
+            delegate.write(others);
+        }
+    }
+
+    @Override
+    public List<LaneMetrics> getLaneMetrics() {
+        return delegate.getLaneMetrics();
+    }
+
+    @Scheduled(fixedDelayString = "${audit.bulk-load.load-interval-ms:1000}")
+    public void load() {
+        spools.forEach(AuditLogSpool::load);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        spools.forEach(AuditLogSpool::close);
+    }
+}
@@ -0,0 +1,85 @@
+package com.duan.writer;
+
+import com.duan.entity.DataAuditLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * 通过独立的审计数据源批量写入，审计写入不占用业务连接池
+ * <p>
+ * id 已在本地分配时不需要取回生成的 id，连接串加上 rewriteBatchedStatements=true 后整批合并为多值 INSERT
+ */
+@RequiredArgsConstructor
+public class JdbcAuditLogWriter implements AuditLogWriter {
+    private static final String INSERT_SQL = """
+            INSERT INTO sys_data_audit_log
+                (id, table_name, operation_type, primary_key_name, primary_key_value,
+                 old_value, new_value, operator, operate_time, row_sequence, changed_columns, remark)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void write(List<DataAuditLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        // 没有预先分配 id 的记录写入 NULL 由数据库自增，这时才需要取回生成的 id
+        boolean generateIds = logs.stream().anyMatch(log -> log.getId() == null);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = generateIds
+                    ? con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)
+                    : con.prepareStatement(INSERT_SQL)) {
+                for (DataAuditLog log : logs) {
+                    ps.setObject(1, log.getId(), Types.BIGINT);
+                    ps.setString(2, log.getTableName());
+                    ps.setString(3, log.getOperationType());
+                    ps.setString(4, log.getPrimaryKeyName());
+                    ps.setString(5, log.getPrimaryKeyValue());
+                    ps.setString(6, log.getOldValue());
+                    ps.setString(7, log.getNewValue());
+                    ps.setString(8, log.getOperator());
+                    ps.setTimestamp(9, log.getOperateTime() != null ? Timestamp.valueOf(log.getOperateTime()) : null);
+                    ps.setObject(10, log.getRowSequence(), Types.BIGINT);
+                    ps.setString(11, log.getChangedColumns());
+                    ps.setString(12, log.getRemark());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                if (generateIds) {
+                    backfillIds(ps, logs);
+                }
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * 回填自增 id，后续的索引等依赖 id；生成的 id 按顺序对应 id 为空的记录
+     */
+    private static void backfillIds(PreparedStatement ps, List<DataAuditLog> logs) throws SQLException {
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            for (DataAuditLog log : logs) {
+                if (log.getId() == null) {
+                    if (!keys.next()) {
+                        return;
+                    }
+                    log.setId(keys.getLong(1));
+                }
+            }
+        }
+    }
+}
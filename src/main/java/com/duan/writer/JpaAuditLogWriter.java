@@ -0,0 +1,33 @@
+package com.duan.writer;
+
+import com.duan.entity.DataAuditLog;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * 通过 JPA 写入业务数据源，未配置独立审计数据源时使用
+ */
+public class JpaAuditLogWriter implements AuditLogWriter {
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public JpaAuditLogWriter(EntityManagerFactory entityManagerFactory,
+                             PlatformTransactionManager transactionManager) {
+        this.entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        // 提交回调中仍绑定着已提交的业务事务，必须开启新事务才能真正写入
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public void write(List<DataAuditLog> logs) {
+        // id 已在本地分配，直接 persist，不像 save 那样先按 id 查询一次
+        transactionTemplate.executeWithoutResult(status -> logs.forEach(entityManager::persist));
+    }
+}
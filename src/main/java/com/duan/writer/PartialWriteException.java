@@ -0,0 +1,22 @@
+package com.duan.writer;
+
+import com.duan.entity.DataAuditLog;
+
+import java.util.List;
+
+/**
+ * 一批审计日志分多个事务写入（分片、写入线程）时只有部分写入成功，
+ * {@link #getFailed()} 之外的日志已经提交，重试时不能再写
+ */
+public class PartialWriteException extends RuntimeException {
+    private final transient List<DataAuditLog> failed;
+
+    public PartialWriteException(List<DataAuditLog> failed, Throwable cause) {
+        super("Failed to write " + failed.size() + " audit logs", cause);
+        this.failed = List.copyOf(failed);
+    }
+
+    public List<DataAuditLog> getFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,334 @@
+package com.duan.writer;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.metrics.LaneMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按（表名, 主键值）分区的并行写入：同一行的审计日志总是进入同一个写入线程的队列，按进入顺序写入，
+ * 不同的行分散到多个线程，各自占用一个审计写连接
+ * <p>
+ * 每个线程是队列的唯一消费者，连续的多个批次合并成一次写入，并在写入前为每条日志分配该行的变更序号。
+ * 调用方阻塞到自己的日志写完，写入失败时抛出异常，语义与直接写入相同
+ */
+@Slf4j
+public class PartitionedAuditLogWriter implements AuditLogWriter {
+    private static final Pending STOP = new Pending(List.of(), null);
+
+    private final AuditLogWriter delegate;
+    private final int maxBatchSize;
+    private final Lane[] lanes;
+    private volatile boolean closed;
+
+    public PartitionedAuditLogWriter(AuditLogWriter delegate,
+                                     int laneCount,
+                                     int queueCapacity,
+                                     int maxBatchSize,
+                                     int sequenceCacheSize) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, queueCapacity, sequenceCacheSize);
+            lanes[i].thread.start();
+        }
+    }
+
+    @Override
+    public void write(List<DataAuditLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        if (closed) {
+            delegate.write(logs);
+            return;
+        }
+
+        List<List<DataAuditLog>> groups = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (DataAuditLog log : logs) {
+            groups.get(laneOf(log)).add(log);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        List<List<DataAuditLog>> submitted = new ArrayList<>();
+        for (int i = 0; i < lanes.length; i++) {
+            if (!groups.get(i).isEmpty()) {
+                futures.add(lanes[i].submit(groups.get(i)));
+                submitted.add(groups.get(i));
+            }
+        }
+        // 各线程分别提交，等全部结束后只报告失败的日志，已写入的不再重试
+        List<DataAuditLog> failed = new ArrayList<>();
+        RuntimeException cause = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).join();
+            } catch (CompletionException e) {
+                RuntimeException error = e.getCause() instanceof RuntimeException runtime ? runtime : e;
+                failed.addAll(error instanceof PartialWriteException partial
+                        ? partial.getFailed()
+                        : submitted.get(i));
+                if (cause == null) {
+                    cause = error;
+                } else {
+                    cause.addSuppressed(error);
+                }
+            }
+        }
+        if (cause != null) {
+            throw failed.size() == logs.size() && !(cause instanceof PartialWriteException)
+                    ? cause
+                    : new PartialWriteException(failed, cause);
+        }
+    }
+
+    @Override
+    public List<LaneMetrics> getLaneMetrics() {
+        List<LaneMetrics> metrics = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            LaneMetrics m = new LaneMetrics();
+            m.setLane(lane.index);
+            m.setDepth(lane.depth.get());
+            m.setCapacity(lane.capacity);
+            m.setWritten(lane.written.get());
+            m.setBatches(lane.batches.get());
+            m.setFailures(lane.failures.get());
+            metrics.add(m);
+        }
+        return metrics;
+    }
+
+    /**
+     * 停止接收新的日志（之后直接同步写入），等待各线程写完队列中剩余的日志。
+     * 与关闭并发提交到线程的日志会被拒绝，作为失败日志报告给调用方重试
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        closed = true;
+        for (Lane lane : lanes) {
+            lane.stop();
+        }
+        for (Lane lane : lanes) {
+            lane.thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private int laneOf(DataAuditLog log) {
+        return Math.floorMod(Objects.hash(log.getTableName(), log.getPrimaryKeyValue()), lanes.length);
+    }
+
+    private record Pending(List<DataAuditLog> logs, CompletableFuture<Void> done) {
+    }
+
+    private final class Lane implements Runnable {
+        private final int index;
+        private final int capacity;
+        private final BlockingQueue<Pending> queue;
+        private final Thread thread;
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        // 行 -> 最近分配的序号，只在本线程中访问
+        private final Map<String, Long> sequences;
+        // 入队与停止互斥，STOP 之后不会再有日志入队
+        private final ReentrantLock enqueueLock = new ReentrantLock();
+        private boolean stopped;
+
+        Lane(int index, int capacity, int sequenceCacheSize) {
+            this.index = index;
+            this.capacity = capacity;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.sequences = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > sequenceCacheSize;
+                }
+            };
+            this.thread = new Thread(this, "audit-write-lane-" + index);
+        }
+
+        CompletableFuture<Void> submit(List<DataAuditLog> logs) {
+            Pending pending = new Pending(logs, new CompletableFuture<>());
+            try {
+                enqueueLock.lockInterruptibly();
+                try {
+                    if (stopped) {
+                        return CompletableFuture.failedFuture(
+                                new IllegalStateException("Audit write lane " + index + " is closed"));
+                    }
+                    depth.addAndGet(logs.size());
+                    try {
+                        queue.put(pending);
+                    } catch (InterruptedException e) {
+                        depth.addAndGet(-logs.size());
+                        throw e;
+                    }
+                } finally {
+                    enqueueLock.unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while queueing audit logs", e);
+            }
+            return pending.done();
+        }
+
+        void stop() throws InterruptedException {
+            enqueueLock.lockInterruptibly();
+            try {
+                if (!stopped) {
+                    stopped = true;
+                    queue.put(STOP);
+                }
+            } finally {
+                enqueueLock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                consume();
+            } finally {
+                // 线程被中断提前退出时，先拒绝后续提交，再让队列中剩余的提交失败，调用方不会一直等下去。
+                // 提交方可能持有锁阻塞在满队列上，边清空队列边尝试加锁
+                boolean interrupted = Thread.interrupted();
+                while (true) {
+                    failQueued();
+                    try {
+                        if (enqueueLock.tryLock(10, TimeUnit.MILLISECONDS)) {
+                            break;
+                        }
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                try {
+                    stopped = true;
+                } finally {
+                    enqueueLock.unlock();
+                }
+                failQueued();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void failQueued() {
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                if (pending != STOP) {
+                    depth.addAndGet(-pending.logs().size());
+                    pending.done().completeExceptionally(
+                            new IllegalStateException("Audit write lane " + index + " stopped"));
+                }
+            }
+        }
+
+        private void consume() {
+            while (true) {
+                Pending first;
+                try {
+                    first = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (first == STOP) {
+                    return;
+                }
+
+                // 合并紧随其后的批次，队列顺序即写入顺序
+                List<Pending> batch = new ArrayList<>();
+                batch.add(first);
+                int size = first.logs().size();
+                Pending next;
+                while ((next = queue.peek()) != null && next != STOP && size + next.logs().size() <= maxBatchSize) {
+                    batch.add(queue.poll());
+                    size += next.logs().size();
+                }
+                flush(batch, size);
+            }
+        }
+
+        private void flush(List<Pending> batch, int size) {
+            List<DataAuditLog> logs = new ArrayList<>(size);
+            for (Pending pending : batch) {
+                for (DataAuditLog log : pending.logs()) {
+                    assignSequence(log);
+                    logs.add(log);
+                }
+            }
+            try {
+                delegate.write(logs);
+                written.addAndGet(size);
+                batch.forEach(pending -> pending.done().complete(null));
+            } catch (PartialWriteException e) {
+                failures.incrementAndGet();
+                log.error("Audit write lane {} failed to write {} of {} logs", index, e.getFailed().size(), size, e);
+                // 同一批可能合并了多次提交的日志，每次提交只收到属于自己的失败日志
+                Set<DataAuditLog> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+                failed.addAll(e.getFailed());
+                written.addAndGet(size - e.getFailed().size());
+                for (Pending pending : batch) {
+                    List<DataAuditLog> pendingFailed = pending.logs().stream().filter(failed::contains).toList();
+                    if (pendingFailed.isEmpty()) {
+                        pending.done().complete(null);
+                    } else {
+                        pending.done().completeExceptionally(new PartialWriteException(pendingFailed, e.getCause()));
+                    }
+                }
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                log.error("Audit write lane {} failed to write {} logs", index, size, e);
+                batch.forEach(pending -> pending.done().completeExceptionally(e));
+            } finally {
+                batches.incrementAndGet();
+                depth.addAndGet(-size);
+            }
+        }
+
+        /**
+         * 序号以当前时间（微秒）为下限，重启或从缓存淘汰后仍然大于之前分配的序号。
+         * 已带序号的日志（部分失败后重试的日志）保留原序号，只用它推进该行的序号
+         */
+        private void assignSequence(DataAuditLog log) {
+            if (log.getPrimaryKeyValue() == null) {
+                return;
+            }
+            String row = log.getTableName() + '\u0000' + log.getPrimaryKeyValue();
+            Long last = sequences.get(row);
+            if (log.getRowSequence() != null) {
+                sequences.put(row, last != null ? Math.max(last, log.getRowSequence()) : log.getRowSequence());
+                return;
+            }
+            long floor = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+            long sequence = last != null ? Math.max(last + 1, floor) : floor;
+            sequences.put(row, sequence);
+            log.setRowSequence(sequence);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.duan.writer;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.shard.AuditShardRouter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 {@link AuditShardRouter} 把一批审计日志拆分到各分片，每个分片一次批量写入
+ * <p>
+ * 各分片在各自的事务中提交，某个分片失败时其余分片照常写入，最后以 {@link PartialWriteException} 报告失败的日志
+ */
+public class ShardedAuditLogWriter implements AuditLogWriter {
+    private final List<AuditLogWriter> shardWriters;
+    private final AuditShardRouter router;
+
+    public ShardedAuditLogWriter(List<AuditLogWriter> shardWriters, AuditShardRouter router) {
+        this.shardWriters = shardWriters;
+        this.router = router;
+    }
+
+    @Override
+    public void write(List<DataAuditLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        int shardCount = shardWriters.size();
+        List<List<DataAuditLog>> groups = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (DataAuditLog log : logs) {
+            groups.get(router.route(log, shardCount)).add(log);
+        }
+        List<DataAuditLog> failed = new ArrayList<>();
+        RuntimeException cause = null;
+        for (int i = 0; i < shardCount; i++) {
+            if (groups.get(i).isEmpty()) {
+                continue;
+            }
+            try {
+                shardWriters.get(i).write(groups.get(i));
+            } catch (RuntimeException e) {
+                failed.addAll(e instanceof PartialWriteException partial ? partial.getFailed() : groups.get(i));
+                if (cause == null) {
+                    cause = e;
+                } else {
+                    cause.addSuppressed(e);
+                }
+            }
+        }
+        if (cause != null) {
+            throw new PartialWriteException(failed, cause);
+        }
+    }
+}
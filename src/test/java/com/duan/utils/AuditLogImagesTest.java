@@ -0,0 +1,83 @@
+package com.duan.utils;
+
+import com.duan.entity.DataAuditLog;
+import com.duan.enums.OperationType;
+import com.duan.row.Row;
+import com.duan.row.RowSchema;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditLogImagesTest {
+    private static final RowSchema USERS = RowSchema.of("users",
+            List.of("id", "name", "email"), List.of("bigint", "varchar", "varchar"));
+
+    private static final AuditLogImages IMAGES = new AuditLogImages(version -> {
+        if (version != 7) {
+            throw new IllegalStateException("No schema version " + version);
+        }
+        return List.of("id", "name", "email");
+    });
+
+    @Test
+    void replaySetNullUpdateClearsColumn() {
+        Row after = new Row(USERS);
+        after.set("id", 1L);
+        after.set("email", null);
+
+        Map<String, Object> state = IMAGES.replay(initialState(),
+                update(JsonUtils.toJson(after, null), null));
+
+        assertTrue(state.containsKey("email"));
+        assertNull(state.get("email"));
+        assertEquals("alice", state.get("name"));
+    }
+
+    @Test
+    void replaySetNullUpdateFromPositionalImage() {
+        Row after = new Row(USERS);
+        after.set("id", 1L);
+        after.set("email", null);
+
+        Map<String, Object> state = IMAGES.replay(initialState(),
+                update(JsonUtils.toPositionalJson(after, 7, null), null));
+
+        assertTrue(state.containsKey("email"));
+        assertNull(state.get("email"));
+        assertEquals("alice", state.get("name"));
+    }
+
+    @Test
+    void replayLegacyImageClearsChangedColumnsMissingFromImage() {
+        // 早期的后镜像省略了 NULL 列
+        Map<String, Object> state = IMAGES.replay(initialState(),
+                update("{\"id\":1}", "[\"email\"]"));
+
+        assertTrue(state.containsKey("email"));
+        assertNull(state.get("email"));
+        assertEquals("alice", state.get("name"));
+    }
+
+    private static Map<String, Object> initialState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("id", 1);
+        state.put("name", "alice");
+        state.put("email", "alice@example.com");
+        return state;
+    }
+
+    private static DataAuditLog update(String newValue, String changedColumns) {
+        DataAuditLog log = new DataAuditLog();
+        log.setTableName("users");
+        log.setOperationType(OperationType.UPDATE.name());
+        log.setNewValue(newValue);
+        log.setChangedColumns(changedColumns);
+        return log;
+    }
+}